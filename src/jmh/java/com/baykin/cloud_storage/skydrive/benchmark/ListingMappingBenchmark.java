@@ -0,0 +1,39 @@
+package com.baykin.cloud_storage.skydrive.benchmark;
+
+import com.baykin.cloud_storage.skydrive.dto.FileResourceDto;
+import com.baykin.cloud_storage.skydrive.model.FileEntry;
+import com.baykin.cloud_storage.skydrive.service.FileIndexService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование листинга из индекса в DTO — то, что {@code FileStorageService.listDirectory}
+ * делает при каждом промахе кэша листингов и на каждой странице {@code listDirectoryPage}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ListingMappingBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int entries;
+
+    private List<FileEntry> listing;
+
+    @Setup
+    public void setUp() {
+        listing = SyntheticEntries.generate(entries, 42);
+    }
+
+    @Benchmark
+    public List<FileResourceDto> mapToDtos() {
+        List<FileResourceDto> result = new ArrayList<>(listing.size());
+        for (FileEntry entry : listing) {
+            result.add(FileIndexService.toDto(entry));
+        }
+        return result;
+    }
+}
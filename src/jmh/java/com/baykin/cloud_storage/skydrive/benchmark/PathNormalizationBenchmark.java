@@ -0,0 +1,64 @@
+package com.baykin.cloud_storage.skydrive.benchmark;
+
+import com.baykin.cloud_storage.skydrive.service.StoragePaths;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции над путями, которые выполняются на каждый запрос и на каждую запись при изменении индекса.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PathNormalizationBenchmark {
+
+    private static final int PATHS = 1024;
+
+    private List<String> paths;
+
+    @Setup
+    public void setUp() {
+        paths = SyntheticEntries.paths(PATHS, 13);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATHS)
+    public void toDirectory(Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(StoragePaths.toDirectory(path));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATHS)
+    public void parentAndName(Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(StoragePaths.parentOf(path));
+            blackhole.consume(StoragePaths.nameOf(path));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATHS)
+    public void likePrefix(Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(StoragePaths.likePrefix(path));
+        }
+    }
+
+    /**
+     * Все предки пути — так индекс обновляет размеры папок при каждой записи.
+     */
+    @Benchmark
+    @OperationsPerInvocation(PATHS)
+    public void ancestors(Blackhole blackhole) {
+        for (String path : paths) {
+            for (String dir = StoragePaths.parentOf(path); !dir.isEmpty(); dir = StoragePaths.parentOf(dir)) {
+                blackhole.consume(dir);
+            }
+        }
+    }
+}
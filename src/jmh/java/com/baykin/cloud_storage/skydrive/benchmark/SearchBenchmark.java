@@ -0,0 +1,54 @@
+package com.baykin.cloud_storage.skydrive.benchmark;
+
+import com.baykin.cloud_storage.skydrive.dto.FileResourceDto;
+import com.baykin.cloud_storage.skydrive.model.FileEntry;
+import com.baykin.cloud_storage.skydrive.service.FileIndexService;
+import com.baykin.cloud_storage.skydrive.service.StoragePaths;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Часть поиска, выполняемая в приложении: подготовка LIKE-шаблонов из запроса и преобразование
+ * найденных записей в DTO. Сам поиск выполняется в Postgres по триграммному индексу и измеряется
+ * нагрузочным тестом.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SearchBenchmark {
+
+    @Param({"report", "  Отчёт 2024_final%  "})
+    public String query;
+
+    @Param({"50", "200"})
+    public int results;
+
+    private List<FileEntry> found;
+
+    @Setup
+    public void setUp() {
+        found = SyntheticEntries.generate(results, 7);
+    }
+
+    @Benchmark
+    public void preparePatterns(Blackhole blackhole) {
+        String normalized = query.trim().toLowerCase(Locale.ROOT);
+        String escaped = StoragePaths.escapeLike(normalized);
+        blackhole.consume("%" + escaped + "%");
+        blackhole.consume(escaped + "%");
+    }
+
+    @Benchmark
+    public List<FileResourceDto> mapResults() {
+        List<FileResourceDto> dtos = new ArrayList<>(found.size());
+        for (FileEntry entry : found) {
+            dtos.add(FileIndexService.toDto(entry));
+        }
+        return dtos;
+    }
+}
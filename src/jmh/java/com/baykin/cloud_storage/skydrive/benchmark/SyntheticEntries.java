@@ -0,0 +1,77 @@
+package com.baykin.cloud_storage.skydrive.benchmark;
+
+import com.baykin.cloud_storage.skydrive.dto.ResourceType;
+import com.baykin.cloud_storage.skydrive.model.FileEntry;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Генерация синтетических записей индекса для бенчмарков: папки глубиной до четырёх уровней,
+ * файлы с типичными именами и размерами.
+ */
+final class SyntheticEntries {
+
+    private static final String[] EXTENSIONS = {".txt", ".pdf", ".jpg", ".mp4", ".docx", ".zip"};
+
+    private SyntheticEntries() {
+    }
+
+    /**
+     * Создаёт записи в порядке путей, как их возвращает индекс.
+     *
+     * @param count количество записей
+     * @param seed зерно генератора, чтобы набор был одинаковым между запусками
+     * @return записи индекса
+     */
+    static List<FileEntry> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<FileEntry> entries = new ArrayList<>(count);
+        Instant now = Instant.parse("2025-01-01T00:00:00Z");
+        for (int i = 0; i < count; i++) {
+            String parent = parentPath(random);
+            boolean directory = random.nextInt(10) == 0;
+            String name = directory
+                    ? "folder-" + i
+                    : "file-" + i + EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+            entries.add(FileEntry.builder()
+                    .id((long) i)
+                    .userId(1L)
+                    .path(parent + name + (directory ? "/" : ""))
+                    .parentPath(parent)
+                    .name(name)
+                    .size(directory ? random.nextInt(1 << 30) : (long) random.nextInt(64 << 20))
+                    .itemCount(directory ? random.nextInt(1000) : 0)
+                    .type(directory ? ResourceType.DIRECTORY : ResourceType.FILE)
+                    .contentType("application/octet-stream")
+                    .etag(Long.toHexString(random.nextLong()))
+                    .modifiedAt(now.plusSeconds(i))
+                    .build());
+        }
+        return entries;
+    }
+
+    /**
+     * Пути для бенчмарков нормализации: файлы и папки разной глубины, с пробелами и не-ASCII символами.
+     */
+    static List<String> paths(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> paths = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String path = parentPath(random) + (random.nextBoolean() ? "Отчёт " + i + ".pdf" : "dir_" + i + "%/");
+            paths.add(path);
+        }
+        return paths;
+    }
+
+    private static String parentPath(Random random) {
+        StringBuilder parent = new StringBuilder();
+        int depth = random.nextInt(5);
+        for (int d = 0; d < depth; d++) {
+            parent.append("level").append(d).append('-').append(random.nextInt(20)).append('/');
+        }
+        return parent.toString();
+    }
+}
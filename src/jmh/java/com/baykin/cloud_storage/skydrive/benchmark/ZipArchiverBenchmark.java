@@ -0,0 +1,106 @@
+package com.baykin.cloud_storage.skydrive.benchmark;
+
+import com.baykin.cloud_storage.skydrive.service.FolderZipArchiver;
+import com.baykin.cloud_storage.skydrive.storage.InMemoryStorageBackend;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность {@link FolderZipArchiver} на разных наборах файлов без сети:
+ * объекты отдаются из {@link InMemoryStorageBackend}, архив пишется в {@link OutputStream#nullOutputStream()}.
+ * Измеряется стоимость сжатия и предзагрузки, а не скорость хранилища. Параметр {@code latencyMs} добавляет
+ * задержку к каждому чтению, чтобы видеть, насколько предзагрузка её скрывает.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ZipArchiverBenchmark {
+
+    private static final int KIB = 1024;
+    private static final int MIB = 1024 * KIB;
+
+    /**
+     * small — 2000 файлов по 4 КиБ, mixed — 200 по 64 КиБ и 4 по 8 МиБ, large — 8 по 16 МиБ.
+     */
+    @Param({"small", "mixed", "large"})
+    public String mix;
+
+    /**
+     * Задержка каждого обращения к хранилищу в миллисекундах.
+     */
+    @Param({"0", "5"})
+    public int latencyMs;
+
+    private FolderZipArchiver archiver;
+    private List<FolderZipArchiver.Source> sources;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<Integer> sizes = switch (mix) {
+            case "small" -> repeat(2000, 4 * KIB);
+            case "mixed" -> {
+                List<Integer> list = repeat(200, 64 * KIB);
+                list.addAll(repeat(4, 8 * MIB));
+                yield list;
+            }
+            case "large" -> repeat(8, 16 * MIB);
+            default -> throw new IllegalArgumentException("Unknown mix: " + mix);
+        };
+        int maxSize = sizes.stream().mapToInt(Integer::intValue).max().orElse(0);
+        byte[] content = compressibleContent(maxSize);
+        InMemoryStorageBackend storage = new InMemoryStorageBackend(Duration.ofMillis(latencyMs), Duration.ZERO, 0);
+        sources = new ArrayList<>(sizes.size());
+        Set<String> stored = new HashSet<>();
+        for (int i = 0; i < sizes.size(); i++) {
+            int size = sizes.get(i);
+            // файлы одного размера имеют одинаковое содержимое, поэтому хранятся в одном объекте
+            String key = "bench/" + size;
+            if (stored.add(key)) {
+                storage.put(key, new ByteArrayInputStream(content, 0, size), size, null);
+            }
+            sources.add(new FolderZipArchiver.Source(key, "dir/file-" + i, size, 0));
+        }
+        archiver = new FolderZipArchiver(storage, 8, 64L * MIB);
+    }
+
+    @TearDown
+    public void tearDown() {
+        archiver.shutdown();
+    }
+
+    @Benchmark
+    public FolderZipArchiver.Stats writeArchive() throws Exception {
+        return archiver.write(sources.iterator(), OutputStream.nullOutputStream());
+    }
+
+    private static List<Integer> repeat(int count, int size) {
+        List<Integer> sizes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sizes.add(size);
+        }
+        return sizes;
+    }
+
+    /**
+     * Текстоподобные данные: сжимаются примерно как типичные документы, а не как нули или шум.
+     */
+    private static byte[] compressibleContent(int size) {
+        Random random = new Random(1);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ('a' + random.nextInt(random.nextInt(8) == 0 ? 26 : 6));
+        }
+        return data;
+    }
+}
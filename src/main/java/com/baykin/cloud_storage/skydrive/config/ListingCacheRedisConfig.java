@@ -0,0 +1,23 @@
+package com.baykin.cloud_storage.skydrive.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Подписка на Redis pub/sub, через которую экземпляры приложения сообщают друг другу о сбросе
+ * листингов в локальном кэше; создаётся, только если включён {@code storage.listing-cache.redis.enabled}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "storage.listing-cache.redis", name = "enabled", havingValue = "true")
+public class ListingCacheRedisConfig {
+
+    @Bean
+    public RedisMessageListenerContainer listingCacheListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+}
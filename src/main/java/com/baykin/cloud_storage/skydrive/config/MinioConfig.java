@@ -1,13 +1,31 @@
 package com.baykin.cloud_storage.skydrive.config;
 
+import com.baykin.cloud_storage.skydrive.storage.MultipartMinioClient;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
+import io.minio.http.HttpUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Клиенты MinIO; создаются, только если выбрано хранилище {@code storage.backend=minio}.
+ */
 @Configuration
+@ConditionalOnProperty(prefix = "storage", name = "backend", havingValue = "minio", matchIfMissing = true)
 public class MinioConfig {
 
+    /**
+     * Таймауты HTTP-клиента MinIO по умолчанию.
+     */
+    private static final long HTTP_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
     @Value("${minio.url}")
     private String minioUrl;
 
@@ -20,11 +38,50 @@ public class MinioConfig {
     @Value("${minio.bucket-name}")
     private String bucketName;
 
+    /**
+     * Общий HTTP-клиент MinIO: стандартные настройки SDK и замер каждого запроса
+     * через {@link MinioMetricsInterceptor}.
+     */
     @Bean
-    public MinioClient minioClient() {
+    public OkHttpClient minioHttpClient(MeterRegistry meterRegistry) {
+        return HttpUtils.newDefaultHttpClient(HTTP_TIMEOUT_MILLIS, HTTP_TIMEOUT_MILLIS, HTTP_TIMEOUT_MILLIS)
+                .newBuilder()
+                .addInterceptor(new MinioMetricsInterceptor(meterRegistry))
+                .build();
+    }
+
+    @Bean
+    @Primary
+    public MinioClient minioClient(OkHttpClient minioHttpClient) {
         return MinioClient.builder()
                 .endpoint(minioUrl)
                 .credentials(minioAccessKey, minioSecretKey)
+                .httpClient(minioHttpClient)
+                .build();
+    }
+
+    @Bean
+    public MultipartMinioClient multipartMinioClient(OkHttpClient minioHttpClient) {
+        return new MultipartMinioClient(MinioAsyncClient.builder()
+                .endpoint(minioUrl)
+                .credentials(minioAccessKey, minioSecretKey)
+                .httpClient(minioHttpClient)
+                .build());
+    }
+
+    /**
+     * Клиент для предподписанных ссылок. Подпись включает адрес MinIO, поэтому клиент строится
+     * для адреса, доступного браузерам ({@code minio.public-url}); регион задаётся явно,
+     * чтобы подпись не требовала обращения к этому адресу из приложения.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "storage.presign", name = "enabled", havingValue = "true")
+    public MinioClient presignMinioClient(@Value("${minio.public-url:${minio.url}}") String publicUrl,
+                                          @Value("${minio.region:us-east-1}") String region) {
+        return MinioClient.builder()
+                .endpoint(publicUrl)
+                .region(region)
+                .credentials(minioAccessKey, minioSecretKey)
                 .build();
     }
 
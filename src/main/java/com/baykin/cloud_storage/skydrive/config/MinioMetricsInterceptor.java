@@ -0,0 +1,101 @@
+package com.baykin.cloud_storage.skydrive.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замеряет каждый HTTP-запрос клиентов MinIO в таймере {@code minio.requests} с тегами операции S3,
+ * HTTP-статуса и исхода. Время измеряется до получения заголовков ответа, чтение тела
+ * (например, при скачивании) в него не входит.
+ */
+public class MinioMetricsInterceptor implements Interceptor {
+
+    public static final String METRIC_NAME = "minio.requests";
+
+    private final MeterRegistry meterRegistry;
+
+    public MinioMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        long started = System.nanoTime();
+        String status = "IO_ERROR";
+        String outcome = "UNKNOWN";
+        try {
+            Response response = chain.proceed(request);
+            status = String.valueOf(response.code());
+            outcome = outcomeOf(response.code());
+            return response;
+        } finally {
+            Timer.builder(METRIC_NAME)
+                    .description("Запросы к MinIO")
+                    .tag("operation", operationOf(request))
+                    .tag("status", status)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String outcomeOf(int code) {
+        if (code < 300) {
+            return "SUCCESS";
+        }
+        if (code < 400) {
+            return "REDIRECTION";
+        }
+        return code < 500 ? "CLIENT_ERROR" : "SERVER_ERROR";
+    }
+
+    /**
+     * Определяет операцию S3 по методу, пути (path-style: /bucket/key) и параметрам запроса.
+     */
+    static String operationOf(Request request) {
+        HttpUrl url = request.url();
+        List<String> segments = url.pathSegments();
+        boolean objectLevel = segments.size() > 1 && !(segments.size() == 2 && segments.get(1).isEmpty());
+        boolean bucketLevel = !objectLevel && !segments.isEmpty() && !segments.get(0).isEmpty();
+        String method = request.method();
+        if (!objectLevel) {
+            if (!bucketLevel) {
+                return "ListBuckets";
+            }
+            return switch (method) {
+                case "HEAD" -> "BucketExists";
+                case "PUT" -> "MakeBucket";
+                case "POST" -> url.queryParameterNames().contains("delete") ? "RemoveObjects" : "BucketPost";
+                case "GET" -> {
+                    if (url.queryParameterNames().contains("location")) yield "GetBucketLocation";
+                    if (url.queryParameterNames().contains("uploads")) yield "ListMultipartUploads";
+                    yield "ListObjects";
+                }
+                default -> "Bucket" + method;
+            };
+        }
+        boolean multipart = url.queryParameter("uploadId") != null;
+        boolean copy = request.header("x-amz-copy-source") != null;
+        return switch (method) {
+            case "HEAD" -> "StatObject";
+            case "GET" -> multipart ? "ListParts" : "GetObject";
+            case "PUT" -> {
+                if (url.queryParameter("partNumber") != null) yield copy ? "UploadPartCopy" : "UploadPart";
+                yield copy ? "CopyObject" : "PutObject";
+            }
+            case "POST" -> multipart ? "CompleteMultipartUpload" : "CreateMultipartUpload";
+            case "DELETE" -> multipart ? "AbortMultipartUpload" : "RemoveObject";
+            default -> "Object" + method;
+        };
+    }
+}
@@ -1,5 +1,6 @@
 package com.baykin.cloud_storage.skydrive.controller;
 
+import com.baykin.cloud_storage.skydrive.dto.DirectoryPageDto;
 import com.baykin.cloud_storage.skydrive.dto.FileResourceDto;
 import com.baykin.cloud_storage.skydrive.dto.ResourceType;
 import com.baykin.cloud_storage.skydrive.service.AuthService;
@@ -7,7 +8,10 @@ import com.baykin.cloud_storage.skydrive.service.FileStorageService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -15,12 +19,17 @@ import java.util.List;
 @RequestMapping("/api")
 public class DirectoryController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
     private final AuthService authService;
     private final FileStorageService fileStorageService;
+    private final NdjsonWriter ndjsonWriter;
 
-    public DirectoryController(AuthService authService, FileStorageService fileStorageService) {
+    public DirectoryController(AuthService authService, FileStorageService fileStorageService,
+                               NdjsonWriter ndjsonWriter) {
         this.authService = authService;
         this.fileStorageService = fileStorageService;
+        this.ndjsonWriter = ndjsonWriter;
     }
 
 
@@ -34,12 +43,43 @@ public class DirectoryController {
     @ApiResponse(responseCode = "200", description = "Содержимое папки получено")
     @GetMapping("/directory")
     public List<FileResourceDto> listDirectory(@RequestParam String path,
-                                           @RequestParam(defaultValue = "false") boolean recursive) throws Exception {
-        String username = authService.getCurrentUsername();
-        Long userId = authService.getUserIdByUsername(username);
+                                               @RequestParam(defaultValue = "false") boolean recursive) throws Exception {
+        Long userId = authService.getCurrentUserId();
         return fileStorageService.listDirectory(userId, path, recursive);
     }
 
+    /**
+     * Постраничное получение содержимого папки.
+     * GET /api/directory/page?path={directoryPath}&recursive={true|false}&limit={limit}&cursor={cursor}
+     * Параметр limit - размер страницы, по умолчанию 100
+     * Параметр cursor - значение nextCursor из предыдущей страницы; без него возвращается первая страница
+     */
+    @Operation(summary = "Постраничное получение содержимого папки")
+    @ApiResponse(responseCode = "200", description = "Страница получена")
+    @ApiResponse(responseCode = "400", description = "Некорректный размер страницы или курсор")
+    @GetMapping("/directory/page")
+    public DirectoryPageDto listDirectoryPage(@RequestParam String path,
+                                              @RequestParam(defaultValue = "false") boolean recursive,
+                                              @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+                                              @RequestParam(required = false) String cursor) {
+        Long userId = authService.getCurrentUserId();
+        return fileStorageService.listDirectoryPage(userId, path, recursive, limit, cursor);
+    }
+
+    /**
+     * Потоковое получение содержимого папки.
+     * GET /api/directory?path={directoryPath}&recursive={true|false} с заголовком Accept: application/x-ndjson
+     * Каждая запись передаётся отдельной строкой JSON сразу после чтения из индекса
+     */
+    @Operation(summary = "Потоковое получение содержимого папки")
+    @ApiResponse(responseCode = "200", description = "Содержимое папки передаётся в формате NDJSON")
+    @GetMapping(value = "/directory", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamDirectory(@RequestParam String path,
+                                                                 @RequestParam(defaultValue = "false") boolean recursive) {
+        Long userId = authService.getCurrentUserId();
+        return ndjsonWriter.write(fileStorageService.streamDirectory(userId, path, recursive));
+    }
+
     /**
      * Создание новой пустой папки.
      * POST /api/directory?path={directoryPath}
@@ -50,16 +90,16 @@ public class DirectoryController {
     @PostMapping("/directory")
     @ResponseStatus(HttpStatus.CREATED)
     public List<FileResourceDto> createDirectory(@RequestParam String path) throws Exception {
-        String username = authService.getCurrentUsername();
-        Long userId = authService.getUserIdByUsername(username);
+        Long userId = authService.getCurrentUserId();
         fileStorageService.createDirectory(userId, path);
         FileResourceDto dto = new FileResourceDto(
                 path.endsWith("/") ? path : path + "/",
                 path.endsWith("/")
                         ? path.substring(path.lastIndexOf("/", path.length() - 2) + 1, path.length() - 1)
                         : path.substring(path.lastIndexOf("/") + 1),
-                null,
-                ResourceType.DIRECTORY
+                0L,
+                ResourceType.DIRECTORY,
+                0L
         );
         return List.of(dto);
     }
@@ -0,0 +1,226 @@
+package com.baykin.cloud_storage.skydrive.controller;
+
+import com.baykin.cloud_storage.skydrive.service.FileStorageService;
+import com.baykin.cloud_storage.skydrive.service.FileStorageService.FileMetadata;
+import com.baykin.cloud_storage.skydrive.service.StorageMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Отдаёт содержимое файла с поддержкой условных запросов и запросов диапазонов (RFC 9110, разделы 13 и 14):
+ * {@code If-None-Match}/{@code If-Modified-Since} с ответом 304, {@code Range} с одним или несколькими
+ * диапазонами, {@code If-Range} и ответы 206/416.
+ * Каждый диапазон читается из хранилища отдельно, поэтому лишние байты не читаются.
+ * <p>
+ * Если файл лежит на локальном диске ({@code storage.backend=local}), а коннектор поддерживает sendfile
+ * ({@link SendfileSupport}), файл целиком или единственный диапазон отдаётся через sendfile: контейнер передаёт
+ * его в сокет средствами ядра, не копируя данные через приложение. На контейнерах без sendfile файл
+ * записывается в ответ обычным образом.
+ */
+@Component
+public class FileDownloadResponder {
+
+    private static final String BYTES = "bytes";
+
+    /**
+     * Файлы пользователя нельзя хранить в общих кэшах, а в частных — только с повторной проверкой.
+     */
+    private static final String CACHE_CONTROL = "private, no-cache";
+
+    /**
+     * Меньшие ответы дешевле записать обычным образом; тот же порог использует DefaultServlet Tomcat.
+     */
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    private final FileStorageService fileStorageService;
+    private final StorageMetrics storageMetrics;
+
+    public FileDownloadResponder(FileStorageService fileStorageService, StorageMetrics storageMetrics) {
+        this.fileStorageService = fileStorageService;
+        this.storageMetrics = storageMetrics;
+    }
+
+    /**
+     * Записывает в ответ файл целиком или запрошенные диапазоны.
+     * Заголовки Content-Disposition должны быть выставлены вызывающим кодом.
+     *
+     * @param userId идентификатор пользователя
+     * @param file метаданные файла
+     * @param request запрос
+     * @param response ответ
+     * @throws Exception при ошибках хранилища или ввода-вывода
+     */
+    public void write(Long userId, FileMetadata file, HttpServletRequest request, HttpServletResponse response)
+            throws Exception {
+        if (checkNotModified(file, request, response)) {
+            return;
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, BYTES);
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(request, file)) {
+            writeFull(userId, file, request, response);
+            return;
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+            validate(ranges, file.size());
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES + " */" + file.size());
+            return;
+        }
+        if (ranges.isEmpty()) {
+            writeFull(userId, file, request, response);
+        } else if (ranges.size() == 1) {
+            writeSingleRange(userId, file, ranges.get(0), request, response);
+        } else {
+            writeMultipleRanges(userId, file, ranges, response);
+        }
+    }
+
+    /**
+     * Выставляет ETag и Last-Modified файла и проверяет условные заголовки запроса.
+     * Если файл не изменился, ответ получает статус 304 (или 412 для If-Match/If-Unmodified-Since)
+     * и тело писать не нужно.
+     *
+     * @param file метаданные файла
+     * @param request запрос
+     * @param response ответ
+     * @return true, если ответ уже сформирован
+     */
+    public boolean checkNotModified(FileMetadata file, HttpServletRequest request, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        long lastModified = file.modifiedAt() != null ? file.modifiedAt().toEpochMilli() : -1;
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        if (file.etag() == null || file.etag().isEmpty()) {
+            return webRequest.checkNotModified(lastModified);
+        }
+        return webRequest.checkNotModified(file.etag(), lastModified);
+    }
+
+    private void writeFull(Long userId, FileMetadata file, HttpServletRequest request, HttpServletResponse response)
+            throws Exception {
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(file.size());
+        if (sendfile(userId, file, 0, file.size(), request)) {
+            return;
+        }
+        try (InputStream is = fileStorageService.downloadResource(userId, file.path())) {
+            storageMetrics.recordTransfer(StorageMetrics.DOWNLOAD, is.transferTo(response.getOutputStream()));
+        }
+    }
+
+    private void writeSingleRange(Long userId, FileMetadata file, HttpRange range, HttpServletRequest request,
+                                  HttpServletResponse response) throws Exception {
+        long start = range.getRangeStart(file.size());
+        long end = range.getRangeEnd(file.size());
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(start, end, file.size()));
+        response.setContentLengthLong(end - start + 1);
+        if (sendfile(userId, file, start, end + 1, request)) {
+            return;
+        }
+        try (InputStream is = fileStorageService.downloadResource(userId, file.path(), start, end - start + 1)) {
+            storageMetrics.recordTransfer(StorageMetrics.DOWNLOAD, is.transferTo(response.getOutputStream()));
+        }
+    }
+
+    /**
+     * Поручает контейнеру отдать байты {@code [start, end)} локального файла через sendfile.
+     * Тело ответа после этого писать нельзя: контейнер отправит файл сам, когда запрос будет обработан.
+     *
+     * @return false, если файл не локальный, ответ слишком мал или коннектор не поддерживает sendfile
+     */
+    private boolean sendfile(Long userId, FileMetadata file, long start, long end, HttpServletRequest request) {
+        if (end - start < SENDFILE_MIN_SIZE || !SendfileSupport.isSupported(request)) {
+            return false;
+        }
+        Optional<Path> localFile = fileStorageService.localFile(userId, file.path());
+        if (localFile.isEmpty()) {
+            return false;
+        }
+        SendfileSupport.send(request, localFile.get(), start, end);
+        // Контейнер отправит файл уже после возврата из обработчика: учитываем запланированный, а не отправленный объём
+        storageMetrics.recordTransfer(StorageMetrics.SENDFILE, end - start);
+        return true;
+    }
+
+    private void writeMultipleRanges(Long userId, FileMetadata file, List<HttpRange> ranges,
+                                     HttpServletResponse response) throws Exception {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        String partType = file.contentType() != null ? file.contentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        OutputStream out = response.getOutputStream();
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(file.size());
+            long end = range.getRangeEnd(file.size());
+            String partHeader = "\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + partType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(start, end, file.size()) + "\r\n\r\n";
+            out.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+            try (InputStream is = fileStorageService.downloadResource(userId, file.path(), start, end - start + 1)) {
+                storageMetrics.recordTransfer(StorageMetrics.DOWNLOAD, is.transferTo(out));
+            }
+        }
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * {@code If-Range} разрешает отдать диапазон, только если файл не изменился:
+     * значение сравнивается с ETag (строго) либо с датой изменения.
+     */
+    private static boolean ifRangeMatches(HttpServletRequest request, FileMetadata file) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return file.etag() != null && ifRange.equals("\"" + file.etag() + "\"");
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return file.modifiedAt() != null && date == file.modifiedAt().getEpochSecond() * 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Проверяет, что каждый диапазон попадает в файл и что в сумме они не больше самого файла.
+     *
+     * @throws IllegalArgumentException если запрос не может быть выполнен
+     */
+    private static void validate(List<HttpRange> ranges, long size) {
+        if (size == 0 && !ranges.isEmpty()) {
+            throw new IllegalArgumentException("Пустой файл не содержит диапазонов");
+        }
+        long total = 0;
+        for (HttpRange range : ranges) {
+            total += range.getRangeEnd(size) - range.getRangeStart(size) + 1;
+        }
+        if (total > size) {
+            throw new IllegalArgumentException("Сумма диапазонов больше размера файла");
+        }
+    }
+
+    private static String contentRange(long start, long end, long size) {
+        return BYTES + " " + start + "-" + end + "/" + size;
+    }
+}
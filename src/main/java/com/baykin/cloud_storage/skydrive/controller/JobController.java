@@ -0,0 +1,53 @@
+package com.baykin.cloud_storage.skydrive.controller;
+
+import com.baykin.cloud_storage.skydrive.dto.StorageJobDto;
+import com.baykin.cloud_storage.skydrive.service.AuthService;
+import com.baykin.cloud_storage.skydrive.service.StorageJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api")
+public class JobController {
+
+    private final AuthService authService;
+    private final StorageJobService storageJobService;
+
+    public JobController(AuthService authService, StorageJobService storageJobService) {
+        this.authService = authService;
+        this.storageJobService = storageJobService;
+    }
+
+    /**
+     * Получение списка последних фоновых операций пользователя.
+     * GET /api/jobs
+     */
+    @Operation(summary = "Получение списка фоновых операций")
+    @ApiResponse(responseCode = "200", description = "Список получен")
+    @GetMapping("/jobs")
+    public List<StorageJobDto> listJobs() {
+        Long userId = authService.getCurrentUserId();
+        return storageJobService.list(userId);
+    }
+
+    /**
+     * Получение состояния фоновой операции.
+     * GET /api/jobs/{id}
+     * Параметр id - идентификатор задания, полученный при запуске операции
+     */
+    @Operation(summary = "Получение состояния фоновой операции")
+    @ApiResponse(responseCode = "200", description = "Состояние получено")
+    @ApiResponse(responseCode = "404", description = "Задание не найдено")
+    @GetMapping("/jobs/{id}")
+    public StorageJobDto getJob(@PathVariable UUID id) {
+        Long userId = authService.getCurrentUserId();
+        return storageJobService.get(userId, id);
+    }
+}
@@ -0,0 +1,52 @@
+package com.baykin.cloud_storage.skydrive.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Потоковая выдача в формате NDJSON: каждая запись — отдельная строка JSON.
+ * Записи сериализуются по мере получения из итератора, ответ сбрасывается клиенту порциями.
+ */
+@Component
+public class NdjsonWriter {
+
+    /**
+     * Через сколько записей ответ сбрасывается клиенту.
+     */
+    private static final int FLUSH_EVERY = 500;
+
+    private final ObjectMapper objectMapper;
+
+    public NdjsonWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Формирует ответ, который пишет записи итератора по одной на строку.
+     *
+     * @param items записи
+     * @return ответ с типом application/x-ndjson
+     */
+    public ResponseEntity<StreamingResponseBody> write(Iterator<?> items) {
+        StreamingResponseBody body = out -> {
+            OutputStream buffered = new BufferedOutputStream(out);
+            int written = 0;
+            while (items.hasNext()) {
+                buffered.write(objectMapper.writeValueAsBytes(items.next()));
+                buffered.write('\n');
+                if (++written == 1 || written % FLUSH_EVERY == 0) {
+                    buffered.flush();
+                }
+            }
+            buffered.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+}
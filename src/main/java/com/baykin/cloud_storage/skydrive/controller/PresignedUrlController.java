@@ -0,0 +1,85 @@
+package com.baykin.cloud_storage.skydrive.controller;
+
+import com.baykin.cloud_storage.skydrive.dto.FileResourceDto;
+import com.baykin.cloud_storage.skydrive.dto.PresignedUrlDto;
+import com.baykin.cloud_storage.skydrive.service.AuthService;
+import com.baykin.cloud_storage.skydrive.service.FileStorageService;
+import com.baykin.cloud_storage.skydrive.service.PresignedUrlService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+/**
+ * Предподписанные ссылки для прямого скачивания и загрузки файлов через MinIO.
+ * Доступны только при {@code storage.presign.enabled=true}.
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnProperty(prefix = "storage.presign", name = "enabled", havingValue = "true")
+public class PresignedUrlController {
+
+    private final AuthService authService;
+    private final FileStorageService fileStorageService;
+    private final PresignedUrlService presignedUrlService;
+
+    public PresignedUrlController(AuthService authService,
+                                  FileStorageService fileStorageService,
+                                  PresignedUrlService presignedUrlService) {
+        this.authService = authService;
+        this.fileStorageService = fileStorageService;
+        this.presignedUrlService = presignedUrlService;
+    }
+
+    /**
+     * Получение ссылки на скачивание файла напрямую из MinIO.
+     * GET /api/resource/download-url?path={filePath}
+     */
+    @Operation(summary = "Получение ссылки на прямое скачивание файла")
+    @ApiResponse(responseCode = "200", description = "Ссылка создана")
+    @ApiResponse(responseCode = "404", description = "Файл не найден")
+    @GetMapping("/resource/download-url")
+    public PresignedUrlDto downloadUrl(@RequestParam String path) throws Exception {
+        Long userId = authService.getCurrentUserId();
+        return presignedUrlService.downloadUrl(userId, path);
+    }
+
+    /**
+     * Получение формы для загрузки файла напрямую в MinIO запросом POST multipart/form-data.
+     * POST /api/resource/upload-url?path={directoryPath}&name={fileName}&size={bytes}
+     * Размер обязателен: загрузить больше объявленного нельзя. Форма одноразовая и действует
+     * storage.presign.upload-ttl. После загрузки файл нужно подтвердить запросом
+     * POST /api/resource/upload-url/complete?id={uploadId}
+     */
+    @Operation(summary = "Получение ссылки на прямую загрузку файла")
+    @ApiResponse(responseCode = "201", description = "Форма создана")
+    @ApiResponse(responseCode = "409", description = "Файл уже существует")
+    @ApiResponse(responseCode = "507", description = "Файл не помещается в квоту")
+    @PostMapping("/resource/upload-url")
+    @ResponseStatus(HttpStatus.CREATED)
+    public PresignedUrlDto uploadUrl(@RequestParam(defaultValue = "") String path,
+                                     @RequestParam String name,
+                                     @RequestParam long size) throws Exception {
+        Long userId = authService.getCurrentUserId();
+        return presignedUrlService.uploadUrl(userId, path, name, size);
+    }
+
+    /**
+     * Подтверждение загрузки по предподписанной форме: файл добавляется в индекс.
+     * POST /api/resource/upload-url/complete?id={uploadId}
+     */
+    @Operation(summary = "Подтверждение прямой загрузки файла")
+    @ApiResponse(responseCode = "201", description = "Файл зарегистрирован")
+    @ApiResponse(responseCode = "404", description = "Загрузка не найдена, уже подтверждена или файл не был загружен")
+    @ApiResponse(responseCode = "409", description = "Файл с таким именем появился во время загрузки")
+    @ApiResponse(responseCode = "507", description = "Файл не помещается в квоту и удалён")
+    @PostMapping("/resource/upload-url/complete")
+    @ResponseStatus(HttpStatus.CREATED)
+    public FileResourceDto completeUpload(@RequestParam UUID id) throws Exception {
+        Long userId = authService.getCurrentUserId();
+        return fileStorageService.completeDirectUpload(userId, id);
+    }
+}
@@ -1,65 +1,104 @@
 package com.baykin.cloud_storage.skydrive.controller;
 
+import com.baykin.cloud_storage.skydrive.dto.DeleteResultDto;
 import com.baykin.cloud_storage.skydrive.dto.FileResourceDto;
 import com.baykin.cloud_storage.skydrive.dto.ResourceType;
+import com.baykin.cloud_storage.skydrive.dto.StorageJobDto;
+import com.baykin.cloud_storage.skydrive.dto.UploadResultDto;
 import com.baykin.cloud_storage.skydrive.exception.ResourceNotFoundException;
 import com.baykin.cloud_storage.skydrive.service.AuthService;
 import com.baykin.cloud_storage.skydrive.service.FileStorageService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUpload;
+import org.apache.commons.fileupload.UploadContext;
 import org.springframework.http.*;
-import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api")
 public class ResourceController {
     private final FileStorageService fileStorageService;
     private final AuthService authService;
+    private final FileDownloadResponder fileDownloadResponder;
+    private final NdjsonWriter ndjsonWriter;
 
-    public ResourceController(FileStorageService fileStorageService, AuthService authService) {
+    public ResourceController(FileStorageService fileStorageService,
+                              AuthService authService,
+                              FileDownloadResponder fileDownloadResponder,
+                              NdjsonWriter ndjsonWriter) {
         this.fileStorageService = fileStorageService;
         this.authService = authService;
+        this.fileDownloadResponder = fileDownloadResponder;
+        this.ndjsonWriter = ndjsonWriter;
     }
 
     /**
      * Получение информации о ресурсе.
      * GET /api/resource?path={resourcePath}
      * Параметр path - путь к ресурсу, например: "user-1-files/folder/file.txt"
+     * Для файлов возвращаются ETag и Last-Modified; запросы с If-None-Match/If-Modified-Since получают 304
      */
     @Operation(summary = "Получение информации о ресурсе")
     @ApiResponse(responseCode = "200", description = "Информация получена")
     @ApiResponse(responseCode = "400", description = "Невалидный или отсутствующий путь")
     @ApiResponse(responseCode = "401", description = "Пользователь не авторизован")
     @ApiResponse(responseCode = "404", description = "Ресурс не найден")
+    @ApiResponse(responseCode = "304", description = "Файл не изменился")
     @GetMapping("/resource")
-    public FileResourceDto getResource(@RequestParam String path) throws Exception {
-        String username = authService.getCurrentUsername();
-        Long userId = authService.getUserIdByUsername(username);
-        return fileStorageService.getResourceInfo(userId, path);
+    public FileResourceDto getResource(@RequestParam String path,
+                                       HttpServletRequest request,
+                                       HttpServletResponse response) throws Exception {
+        Long userId = authService.getCurrentUserId();
+        FileResourceDto resource = fileStorageService.getResourceInfo(userId, path);
+        if (resource.getType() == ResourceType.FILE) {
+            FileStorageService.FileMetadata file = fileStorageService.getFileMetadata(userId,
+                    resource.getPath() + resource.getName());
+            if (fileDownloadResponder.checkNotModified(file, request, response)) {
+                return null;
+            }
+        }
+        return resource;
     }
 
     /**
      * Удаление ресурса.
      * DELETE /api/resource?path={resourcePath}
      * Параметр path - путь к ресурсу, например: "user-1-files/folder/file.txt"
+     * Большие папки удаляются в фоне: возвращается 202 и задание, состояние которого доступно через /api/jobs/{id}
      */
     @Operation(summary = "Удаление ресурса")
     @ApiResponse(responseCode = "204", description = "Ресурс удалён")
+    @ApiResponse(responseCode = "202", description = "Удаление запущено в фоне")
+    @ApiResponse(responseCode = "207", description = "Часть объектов удалить не удалось")
     @DeleteMapping("/resource")
-    @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void deleteResource(@RequestParam String path) throws Exception {
-        String username = authService.getCurrentUsername();
-        Long userId = authService.getUserIdByUsername(username);
-        fileStorageService.deleteResource(userId, path);
+    public ResponseEntity<?> deleteResource(@RequestParam String path) throws Exception {
+        Long userId = authService.getCurrentUserId();
+        Optional<StorageJobDto> job = fileStorageService.startBackgroundDelete(userId, path);
+        if (job.isPresent()) {
+            return ResponseEntity.accepted().body(job.get());
+        }
+        DeleteResultDto result = fileStorageService.deleteResource(userId, path);
+        if (result.getFailed() == 0) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.status(HttpStatus.MULTI_STATUS).body(result);
     }
 
     /**
@@ -67,14 +106,20 @@ public class ResourceController {
      * GET /api/resource/download?path={resourcePath}&zip={true|false}
      * Параметр path - путь к ресурсу, например: "user-1-files/folder/file.txt"
      * Параметр zip - если true, то папка будет скачана в виде zip-архива
+     * Для файлов поддерживаются заголовки Range и If-Range, в том числе с несколькими диапазонами,
+     * и условные запросы по ETag и Last-Modified (ответ 304)
      */
     @Operation(summary = "Скачивание ресурса")
     @ApiResponse(responseCode = "200", description = "Ресурс скачан")
+    @ApiResponse(responseCode = "206", description = "Скачаны запрошенные диапазоны файла")
+    @ApiResponse(responseCode = "304", description = "Файл не изменился")
+    @ApiResponse(responseCode = "416", description = "Диапазон не может быть выдан")
     @GetMapping(value = "/resource/download")
     public void download(@RequestParam String path,
                          @RequestParam(defaultValue = "false") boolean zip,
+                         HttpServletRequest request,
                          HttpServletResponse response) throws Exception {
-        Long userId = authService.getUserIdByUsername(authService.getCurrentUsername());
+        Long userId = authService.getCurrentUserId();
         String originalPath = path;
         boolean isDirectory;
         try {
@@ -90,84 +135,181 @@ public class ResourceController {
             } else throw ex;
         }
         if (isDirectory || zip) {
-            try (InputStream is = fileStorageService.downloadFolderZip(userId, path)) {
-                String dirName = originalPath.endsWith("/")
-                        ? originalPath.substring(0, originalPath.length() - 1)
-                        : originalPath;
-                int slash = dirName.lastIndexOf('/');
-                if (slash >= 0) dirName = dirName.substring(slash + 1);
-                String archive = dirName + ".zip";
-                String encoded = URLEncoder.encode(archive, StandardCharsets.UTF_8)
-                        .replaceAll("\\+", "%20");
-                response.setContentType("application/zip");
-                response.setHeader("Content-Disposition",
-                        "attachment; filename=\"" + archive + "\"; " +
-                                "filename*=UTF-8''" + encoded);
-                StreamUtils.copy(is, response.getOutputStream());
-            }
-            return;
-        }
-        try (InputStream is = fileStorageService.downloadResource(userId, path)) {
-            String fileName = originalPath.contains("/")
-                    ? originalPath.substring(originalPath.lastIndexOf('/') + 1)
+            String dirName = originalPath.endsWith("/")
+                    ? originalPath.substring(0, originalPath.length() - 1)
                     : originalPath;
-            String encoded = URLEncoder.encode(fileName, StandardCharsets.UTF_8)
+            int slash = dirName.lastIndexOf('/');
+            if (slash >= 0) dirName = dirName.substring(slash + 1);
+            String archive = dirName + ".zip";
+            String encoded = URLEncoder.encode(archive, StandardCharsets.UTF_8)
                     .replaceAll("\\+", "%20");
-            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setContentType("application/zip");
             response.setHeader("Content-Disposition",
-                    "attachment; filename=\"" + fileName + "\"; " +
+                    "attachment; filename=\"" + archive + "\"; " +
                             "filename*=UTF-8''" + encoded);
-            StreamUtils.copy(is, response.getOutputStream());
+            fileStorageService.downloadFolderZip(userId, path, response.getOutputStream());
+            return;
         }
+        FileStorageService.FileMetadata file = fileStorageService.getFileMetadata(userId, path);
+        String fileName = originalPath.contains("/")
+                ? originalPath.substring(originalPath.lastIndexOf('/') + 1)
+                : originalPath;
+        String encoded = URLEncoder.encode(fileName, StandardCharsets.UTF_8)
+                .replaceAll("\\+", "%20");
+        response.setHeader("Content-Disposition",
+                "attachment; filename=\"" + fileName + "\"; " +
+                        "filename*=UTF-8''" + encoded);
+        fileDownloadResponder.write(userId, file, request, response);
     }
 
     /**
      * Переименование/перемещение ресурса.
      * GET /api/resource/move?from={oldPath}&to={newPath}
      * Параметры from и to - пути к ресурсу, например: "user-1-files/folder/file.txt" и "user-1-files/folder/new-file.txt"
+     * Большие папки перемещаются в фоне: возвращается 202 и задание, состояние которого доступно через /api/jobs/{id}
      */
     @Operation(summary = "Переименование/перемещение ресурса")
     @ApiResponse(responseCode = "200", description = "Ресурс перемещён")
+    @ApiResponse(responseCode = "202", description = "Перемещение запущено в фоне")
+    @ApiResponse(responseCode = "409", description = "Целевой ресурс уже существует")
     @GetMapping("/resource/move")
-    public FileResourceDto moveResource(@RequestParam String from, @RequestParam String to) throws Exception {
-        String username = authService.getCurrentUsername();
-        Long userId = authService.getUserIdByUsername(username);
-        return fileStorageService.moveResource(userId, from, to);
+    public ResponseEntity<?> moveResource(@RequestParam String from, @RequestParam String to) throws Exception {
+        Long userId = authService.getCurrentUserId();
+        Optional<StorageJobDto> job = fileStorageService.startBackgroundMove(userId, from, to);
+        if (job.isPresent()) {
+            return ResponseEntity.accepted().body(job.get());
+        }
+        return ResponseEntity.ok(fileStorageService.moveResource(userId, from, to));
+    }
+
+    /**
+     * Копирование файла или папки на стороне хранилища, без передачи данных через приложение.
+     * POST /api/resource/copy?from={sourcePath}&to={copyPath}
+     * Большие папки копируются в фоне: возвращается 202 и задание, состояние которого доступно через /api/jobs/{id}
+     */
+    @Operation(summary = "Копирование ресурса")
+    @ApiResponse(responseCode = "201", description = "Ресурс скопирован")
+    @ApiResponse(responseCode = "202", description = "Копирование запущено в фоне")
+    @ApiResponse(responseCode = "409", description = "Целевой ресурс уже существует")
+    @ApiResponse(responseCode = "507", description = "Копия не помещается в квоту")
+    @PostMapping("/resource/copy")
+    public ResponseEntity<?> copyResource(@RequestParam String from, @RequestParam String to) throws Exception {
+        Long userId = authService.getCurrentUserId();
+        Optional<StorageJobDto> job = fileStorageService.startBackgroundCopy(userId, from, to);
+        if (job.isPresent()) {
+            return ResponseEntity.accepted().body(job.get());
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(fileStorageService.copyResource(userId, from, to));
     }
 
     /**
      * Поиск ресурсов по запросу.
-     * GET /api/resource/search?query={searchQuery}
+     * GET /api/resource/search?query={searchQuery}&page={page}&size={size}
      * Параметр query - строка для поиска, например: "file.txt"
+     * Параметры page и size - номер страницы (с 0) и количество результатов на странице
      */
     @Operation(summary = "Поиск ресурсов")
     @ApiResponse(responseCode = "200", description = "Результаты поиска")
     @GetMapping("/resource/search")
-    public List<FileResourceDto> searchResources(@RequestParam String query) throws Exception {
-        String username = authService.getCurrentUsername();
-        Long userId = authService.getUserIdByUsername(username);
-        return fileStorageService.search(userId, query);
+    public List<FileResourceDto> searchResources(@RequestParam String query,
+                                                 @RequestParam(defaultValue = "0") int page,
+                                                 @RequestParam(defaultValue = "50") int size) throws Exception {
+        Long userId = authService.getCurrentUserId();
+        return fileStorageService.search(userId, query, page, size);
+    }
+
+    /**
+     * Потоковый поиск ресурсов.
+     * GET /api/resource/search?query={searchQuery} с заголовком Accept: application/x-ndjson
+     * Возвращает все совпадения (не больше storage.search.max-stream-results) по одному в строке
+     */
+    @Operation(summary = "Потоковый поиск ресурсов")
+    @ApiResponse(responseCode = "200", description = "Результаты поиска передаются в формате NDJSON")
+    @GetMapping(value = "/resource/search", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamSearch(@RequestParam String query) {
+        Long userId = authService.getCurrentUserId();
+        return ndjsonWriter.write(fileStorageService.streamSearch(userId, query));
     }
 
     /**
      * Загрузка файлов.
      * POST /api/resource
      * Параметр path - путь к папке, куда будут загружены файлы, например: "user-1-files/folder/"
-     * Файлы передаются в теле запроса как multipart/form-data
+     * Файлы передаются в теле запроса как multipart/form-data и загружаются параллельно;
+     * результат возвращается для каждого файла в исходном порядке
      */
     @Operation(summary = "Загрузка файла")
-    @ApiResponse(responseCode = "201", description = "Файл загружен")
+    @ApiResponse(responseCode = "201", description = "Файлы загружены")
+    @ApiResponse(responseCode = "207", description = "Часть или все файлы не загружены, результат указан для каждого файла")
     @PostMapping(value = "/resource", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    @ResponseStatus(HttpStatus.CREATED)
-    public List<FileResourceDto> uploadResource(
+    public ResponseEntity<List<UploadResultDto>> uploadResource(
             @RequestParam(value = "path", required = false, defaultValue = "") String path,
             @RequestPart("file") MultipartFile[] files) throws Exception {
-        String username = authService.getCurrentUsername();
-        Long userId = authService.getUserIdByUsername(username);
+        Long userId = authService.getCurrentUserId();
+        List<UploadResultDto> uploaded = fileStorageService.uploadFiles(userId, path, List.of(files));
+        boolean allUploaded = uploaded.stream().allMatch(r -> r.getStatus() == HttpStatus.CREATED.value());
+        return ResponseEntity.status(allUploaded ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS).body(uploaded);
+    }
+
+    /**
+     * Потоковая загрузка файлов.
+     * POST /api/resource/stream
+     * Параметр path передаётся в строке запроса, файлы — в теле как multipart/form-data.
+     * Части запроса не сохраняются во временные файлы: каждый файл по мере чтения передаётся в хранилище.
+     */
+    @Operation(summary = "Потоковая загрузка файла")
+    @ApiResponse(responseCode = "201", description = "Файл загружен")
+    @PostMapping(value = "/resource/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public List<FileResourceDto> uploadResourceStream(HttpServletRequest request) throws Exception {
+        Long userId = authService.getCurrentUserId();
+        // параметры читаются из строки запроса напрямую: getParameter() заставил бы контейнер разобрать тело
+        String path = ServletUriComponentsBuilder.fromRequest(request).build().getQueryParams().getFirst("path");
+        path = path != null ? URLDecoder.decode(path, StandardCharsets.UTF_8) : "";
+        FileItemIterator items = new FileUpload().getItemIterator(new ServletUploadContext(request));
         List<FileResourceDto> uploaded = new ArrayList<>();
-        for (MultipartFile file : files) {
-            uploaded.add(fileStorageService.uploadFile(userId, path, file));
+        while (items.hasNext()) {
+            FileItemStream item = items.next();
+            if (item.isFormField() || !"file".equals(item.getFieldName())) {
+                continue;
+            }
+            try (InputStream in = item.openStream()) {
+                uploaded.add(fileStorageService.uploadFile(userId, path, item.getName(), item.getContentType(), in));
+            }
         }
         return uploaded;
     }
+
+    /**
+     * Тело запроса для потокового разбора commons-fileupload. Серверный адаптер библиотеки рассчитан
+     * на javax.servlet, а потоковому API нужны только заголовки и поток тела.
+     */
+    private record ServletUploadContext(HttpServletRequest request) implements UploadContext {
+
+        @Override
+        public String getCharacterEncoding() {
+            return request.getCharacterEncoding();
+        }
+
+        @Override
+        public String getContentType() {
+            return request.getContentType();
+        }
+
+        @Override
+        @Deprecated
+        public int getContentLength() {
+            return request.getContentLength();
+        }
+
+        @Override
+        public long contentLength() {
+            return request.getContentLengthLong();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return request.getInputStream();
+        }
+    }
 }
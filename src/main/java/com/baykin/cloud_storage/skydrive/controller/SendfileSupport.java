@@ -0,0 +1,43 @@
+package com.baykin.cloud_storage.skydrive.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.nio.file.Path;
+
+/**
+ * Атрибуты запроса, через которые контейнер сервлетов отдаёт файл средствами ядра (sendfile).
+ * Имена совпадают с константами {@code org.apache.catalina.Globals}, но заданы строками, чтобы код
+ * не зависел от Tomcat: другие контейнеры не выставляют атрибут поддержки, и файл отдаётся обычным образом.
+ */
+final class SendfileSupport {
+
+    private static final String SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private SendfileSupport() {
+    }
+
+    /**
+     * @param request запрос
+     * @return true, если коннектор может отправить файл для этого запроса через sendfile
+     */
+    static boolean isSupported(HttpServletRequest request) {
+        return Boolean.TRUE.equals(request.getAttribute(SUPPORTED_ATTR));
+    }
+
+    /**
+     * Поручает контейнеру отправить байты {@code [start, end)} файла после завершения обработчика.
+     *
+     * @param request запрос, для которого {@link #isSupported} вернул true
+     * @param file локальный файл
+     * @param start смещение первого байта
+     * @param end смещение за последним байтом
+     */
+    static void send(HttpServletRequest request, Path file, long start, long end) {
+        request.setAttribute(FILENAME_ATTR, file.toAbsolutePath().toString());
+        request.setAttribute(START_ATTR, start);
+        request.setAttribute(END_ATTR, end);
+    }
+}
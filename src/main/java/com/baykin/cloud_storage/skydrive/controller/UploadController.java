@@ -0,0 +1,106 @@
+package com.baykin.cloud_storage.skydrive.controller;
+
+import com.baykin.cloud_storage.skydrive.dto.FileResourceDto;
+import com.baykin.cloud_storage.skydrive.dto.UploadPartDto;
+import com.baykin.cloud_storage.skydrive.dto.UploadSessionDto;
+import com.baykin.cloud_storage.skydrive.service.AuthService;
+import com.baykin.cloud_storage.skydrive.service.FileStorageService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api")
+public class UploadController {
+
+    private final AuthService authService;
+    private final FileStorageService fileStorageService;
+
+    public UploadController(AuthService authService, FileStorageService fileStorageService) {
+        this.authService = authService;
+        this.fileStorageService = fileStorageService;
+    }
+
+    /**
+     * Начало загрузки файла по частям.
+     * POST /api/uploads
+     * Параметры path - путь к папке, name - имя файла, contentType - MIME-тип файла
+     */
+    @Operation(summary = "Начало загрузки по частям")
+    @ApiResponse(responseCode = "201", description = "Сессия загрузки создана")
+    @ApiResponse(responseCode = "409", description = "Файл уже существует")
+    @PostMapping("/uploads")
+    @ResponseStatus(HttpStatus.CREATED)
+    public UploadSessionDto startUpload(@RequestParam(value = "path", required = false, defaultValue = "") String path,
+                                        @RequestParam String name,
+                                        @RequestParam(required = false) String contentType) throws Exception {
+        Long userId = authService.getCurrentUserId();
+        return fileStorageService.startChunkedUpload(userId, path, name, contentType);
+    }
+
+    /**
+     * Состояние загрузки: какие части уже получены.
+     * GET /api/uploads/{id}
+     */
+    @Operation(summary = "Состояние загрузки по частям")
+    @ApiResponse(responseCode = "200", description = "Состояние получено")
+    @ApiResponse(responseCode = "404", description = "Сессия не найдена")
+    @GetMapping("/uploads/{id}")
+    public UploadSessionDto getUpload(@PathVariable UUID id) {
+        Long userId = authService.getCurrentUserId();
+        return fileStorageService.getChunkedUpload(userId, id);
+    }
+
+    /**
+     * Передача части файла.
+     * PUT /api/uploads/{id}/chunks/{number}
+     * Тело запроса - содержимое части, заголовок Content-Length обязателен.
+     * Части можно передавать параллельно и повторно.
+     */
+    @Operation(summary = "Передача части файла")
+    @ApiResponse(responseCode = "200", description = "Часть получена")
+    @ApiResponse(responseCode = "400", description = "Не указан Content-Length или часть пуста")
+    @ApiResponse(responseCode = "413", description = "Часть слишком большая")
+    @ApiResponse(responseCode = "507", description = "Части не помещаются в квоту")
+    @PutMapping("/uploads/{id}/chunks/{number}")
+    public UploadPartDto uploadChunk(@PathVariable UUID id,
+                                     @PathVariable int number,
+                                     HttpServletRequest request) throws Exception {
+        Long userId = authService.getCurrentUserId();
+        try (InputStream in = request.getInputStream()) {
+            return fileStorageService.uploadChunk(userId, id, number, in, request.getContentLengthLong());
+        }
+    }
+
+    /**
+     * Завершение загрузки: файл собирается из полученных частей.
+     * POST /api/uploads/{id}/complete
+     */
+    @Operation(summary = "Завершение загрузки по частям")
+    @ApiResponse(responseCode = "201", description = "Файл загружен")
+    @ApiResponse(responseCode = "400", description = "Части переданы не полностью")
+    @PostMapping("/uploads/{id}/complete")
+    @ResponseStatus(HttpStatus.CREATED)
+    public FileResourceDto completeUpload(@PathVariable UUID id) throws Exception {
+        Long userId = authService.getCurrentUserId();
+        return fileStorageService.completeChunkedUpload(userId, id);
+    }
+
+    /**
+     * Отмена загрузки.
+     * DELETE /api/uploads/{id}
+     */
+    @Operation(summary = "Отмена загрузки по частям")
+    @ApiResponse(responseCode = "204", description = "Загрузка отменена")
+    @DeleteMapping("/uploads/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void abortUpload(@PathVariable UUID id) throws Exception {
+        Long userId = authService.getCurrentUserId();
+        fileStorageService.abortChunkedUpload(userId, id);
+    }
+}
@@ -1,10 +1,9 @@
 package com.baykin.cloud_storage.skydrive.controller;
 
 import com.baykin.cloud_storage.skydrive.service.AuthService;
-import com.baykin.cloud_storage.skydrive.model.User;
+import com.baykin.cloud_storage.skydrive.service.StorageUsageService;
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -15,21 +14,26 @@ import java.util.Map;
 @RequestMapping("/user")
 public class UserController {
     private final AuthService authService;
+    private final StorageUsageService storageUsageService;
 
-    public UserController(AuthService authService) {
+    public UserController(AuthService authService, StorageUsageService storageUsageService) {
         this.authService = authService;
+        this.storageUsageService = storageUsageService;
     }
 
     /**
-     * Получает информацию о текущем пользователе.
+     * Получает информацию о текущем пользователе, включая занятое место и квоту.
      *
      * @return ResponseEntity с информацией о пользователе
      */
     @Operation(summary = "Получение информации о текущем пользователе")
     @GetMapping("/me")
     public ResponseEntity<?> getCurrentUser() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = authService.getUserByUsername(username);
-        return ResponseEntity.ok(Map.of("username", user.getUsername(), "id", user.getId()));
+        Long userId = authService.getCurrentUserId();
+        return ResponseEntity.ok(Map.of(
+                "username", authService.getCurrentUsername(),
+                "id", userId,
+                "usage", storageUsageService.getUsage(userId)
+        ));
     }
 }
@@ -0,0 +1,19 @@
+package com.baykin.cloud_storage.skydrive.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO с результатом удаления: число удалённых объектов и ошибки по отдельным ключам.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DeleteResultDto {
+    private long deleted;
+    private long failed;
+    private List<ObjectFailureDto> failures;
+}
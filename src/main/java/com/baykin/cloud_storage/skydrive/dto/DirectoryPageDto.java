@@ -0,0 +1,19 @@
+package com.baykin.cloud_storage.skydrive.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO страницы содержимого папки.
+ * {@code nextCursor} передаётся в следующий запрос; {@code null} означает, что страниц больше нет.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DirectoryPageDto {
+    private List<FileResourceDto> items;
+    private String nextCursor;
+}
@@ -1,11 +1,13 @@
 package com.baykin.cloud_storage.skydrive.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 /**
  * DTO для передачи информации о файле/папке.
+ * Для папок {@code size} — суммарный размер вложенных файлов, {@code itemCount} — количество всех потомков.
  */
 @Data
 @AllArgsConstructor
@@ -15,4 +17,11 @@ public class FileResourceDto {
     private String name;
     private Long size;
     private ResourceType type;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long itemCount;
+
+    public FileResourceDto(String path, String name, Long size, ResourceType type) {
+        this(path, name, size, type, null);
+    }
 }
@@ -0,0 +1,17 @@
+package com.baykin.cloud_storage.skydrive.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO с ошибкой обработки отдельного объекта.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ObjectFailureDto {
+    private String path;
+    private String code;
+    private String message;
+}
@@ -0,0 +1,27 @@
+package com.baykin.cloud_storage.skydrive.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * DTO предподписанной ссылки для прямого обмена данными с MinIO.
+ * {@code path} — относительный путь файла, {@code method} — HTTP-метод, которым нужно обратиться по ссылке.
+ * Для загрузки ({@code POST}) {@code fields} — поля формы multipart/form-data, которые нужно передать
+ * перед полем {@code file}, а {@code uploadId} — идентификатор для подтверждения загрузки.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PresignedUrlDto {
+    private String path;
+    private String method;
+    private String url;
+    private Instant expiresAt;
+    private UUID uploadId;
+    private Map<String, String> fields;
+}
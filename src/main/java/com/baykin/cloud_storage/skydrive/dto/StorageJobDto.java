@@ -0,0 +1,34 @@
+package com.baykin.cloud_storage.skydrive.dto;
+
+import com.baykin.cloud_storage.skydrive.model.StorageJobPhase;
+import com.baykin.cloud_storage.skydrive.model.StorageJobStatus;
+import com.baykin.cloud_storage.skydrive.model.StorageJobType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO с состоянием фоновой операции.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StorageJobDto {
+    private UUID id;
+    private StorageJobType type;
+    private StorageJobStatus status;
+    private StorageJobPhase phase;
+    private String source;
+    private String target;
+    private long total;
+    private long processed;
+    private long failed;
+    private String error;
+    private Instant createdAt;
+    private Instant updatedAt;
+    private List<ObjectFailureDto> failures;
+}
@@ -0,0 +1,17 @@
+package com.baykin.cloud_storage.skydrive.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO с занятым пользователем местом. {@code quotaBytes} равен {@code null}, если квота не ограничена.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StorageUsageDto {
+    private long usedBytes;
+    private long objects;
+    private Long quotaBytes;
+}
@@ -0,0 +1,17 @@
+package com.baykin.cloud_storage.skydrive.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO переданной части файла.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadPartDto {
+    private int partNumber;
+    private long size;
+    private String etag;
+}
@@ -0,0 +1,22 @@
+package com.baykin.cloud_storage.skydrive.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO с результатом загрузки одного файла из пакета.
+ * У успешно загруженного файла {@code status} равен 201, а поля совпадают с {@link FileResourceDto};
+ * у незагруженного — код ошибки и сообщение в {@code error}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadResultDto {
+    private String path;
+    private String name;
+    private Long size;
+    private ResourceType type;
+    private int status;
+    private String error;
+}
@@ -0,0 +1,25 @@
+package com.baykin.cloud_storage.skydrive.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO с состоянием сессии загрузки по частям.
+ * По списку {@code parts} клиент определяет, какие части нужно досылать после обрыва.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadSessionDto {
+    private UUID id;
+    private String path;
+    private long maxChunkSize;
+    private long minChunkSize;
+    private Instant expiresAt;
+    private List<UploadPartDto> parts;
+}
@@ -0,0 +1,7 @@
+package com.baykin.cloud_storage.skydrive.exception;
+
+public class InvalidUploadException extends RuntimeException {
+    public InvalidUploadException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.baykin.cloud_storage.skydrive.exception;
+
+public class PayloadTooLargeException extends RuntimeException {
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+}
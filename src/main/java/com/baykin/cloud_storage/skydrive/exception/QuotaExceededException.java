@@ -0,0 +1,7 @@
+package com.baykin.cloud_storage.skydrive.exception;
+
+public class QuotaExceededException extends RuntimeException {
+    public QuotaExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,33 @@
+package com.baykin.cloud_storage.skydrive.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Содержимое файла, сохранённое один раз по SHA-256. Записи индекса ссылаются на него
+ * через {@link FileEntry#getContentHash()}, {@code refCount} — количество таких ссылок.
+ */
+@Entity
+@Table(name = "content_blobs")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ContentBlob {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private long refCount;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
@@ -0,0 +1,47 @@
+package com.baykin.cloud_storage.skydrive.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Ожидаемая загрузка файла клиентом напрямую в хранилище по предподписанной форме.
+ * Клиент загружает данные во временный объект {@code objectName}; файл появляется по пути {@code path}
+ * только после подтверждения, после чего запись удаляется и повторно подтвердить загрузку нельзя.
+ */
+@Entity
+@Table(name = "direct_uploads")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DirectUpload {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false, length = 1024)
+    private String path;
+
+    @Column(name = "object_name", nullable = false, length = 1024)
+    private String objectName;
+
+    /**
+     * Объявленный размер: форма не позволяет загрузить больше.
+     */
+    @Column(name = "max_size", nullable = false)
+    private long maxSize;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
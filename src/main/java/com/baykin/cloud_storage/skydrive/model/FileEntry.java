@@ -0,0 +1,66 @@
+package com.baykin.cloud_storage.skydrive.model;
+
+import com.baykin.cloud_storage.skydrive.dto.ResourceType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Запись индекса метаданных файла или папки пользователя.
+ * Путь хранится относительно корневой папки пользователя, у папок он оканчивается на "/".
+ */
+@Entity
+@Table(name = "file_entries", uniqueConstraints = {@UniqueConstraint(columnNames = {"user_id", "path"})})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FileEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false, length = 1024)
+    private String path;
+
+    @Column(name = "parent_path", nullable = false, length = 1024)
+    private String parentPath;
+
+    @Column(nullable = false, length = 1024)
+    private String name;
+
+    /**
+     * Размер файла; у папки — суммарный размер всех вложенных файлов.
+     */
+    private Long size;
+
+    /**
+     * Количество потомков папки на любой глубине; у файлов всегда 0.
+     */
+    @Column(name = "item_count", nullable = false)
+    private long itemCount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private ResourceType type;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    private String etag;
+
+    /**
+     * SHA-256 содержимого, если файл сохранён как ссылка на {@link ContentBlob}; иначе {@code null}.
+     */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "modified_at")
+    private Instant modifiedAt;
+}
@@ -0,0 +1,75 @@
+package com.baykin.cloud_storage.skydrive.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Фоновая операция с хранилищем (например, удаление большой папки) и её прогресс.
+ */
+@Entity
+@Table(name = "storage_jobs")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StorageJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private StorageJobType type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private StorageJobStatus status;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private StorageJobPhase phase;
+
+    @Column(name = "source_path", nullable = false, length = 1024)
+    private String sourcePath;
+
+    @Column(name = "target_path", length = 1024)
+    private String targetPath;
+
+    @Column(name = "total_objects", nullable = false)
+    private long totalObjects;
+
+    @Column(name = "processed_objects", nullable = false)
+    private long processedObjects;
+
+    @Column(name = "failed_objects", nullable = false)
+    private long failedObjects;
+
+    @Column(length = 2048)
+    private String error;
+
+    /**
+     * Экземпляр приложения, выполняющий задание.
+     */
+    @Column(length = 64)
+    private String owner;
+
+    /**
+     * Время последнего подтверждения, что владелец жив; по его устареванию задание забирает другой экземпляр.
+     */
+    @Column(name = "heartbeat_at")
+    private Instant heartbeatAt;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
@@ -0,0 +1,34 @@
+package com.baykin.cloud_storage.skydrive.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.UUID;
+
+/**
+ * Объект, который не удалось обработать в рамках фоновой операции.
+ */
+@Entity
+@Table(name = "storage_job_failures")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StorageJobFailure {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private UUID jobId;
+
+    @Column(nullable = false, length = 1024)
+    private String path;
+
+    private String code;
+
+    @Column(length = 2048)
+    private String message;
+}
@@ -0,0 +1,9 @@
+package com.baykin.cloud_storage.skydrive.model;
+
+/**
+ * Этап фоновой операции. По нему после перезапуска определяется, можно ли продолжить или откатить операцию.
+ */
+public enum StorageJobPhase {
+    COPYING,
+    DELETING
+}
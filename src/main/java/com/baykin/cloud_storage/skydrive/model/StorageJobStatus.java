@@ -0,0 +1,12 @@
+package com.baykin.cloud_storage.skydrive.model;
+
+/**
+ * Состояние фоновой операции с хранилищем.
+ */
+public enum StorageJobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    ROLLED_BACK
+}
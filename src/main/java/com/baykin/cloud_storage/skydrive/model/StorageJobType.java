@@ -0,0 +1,10 @@
+package com.baykin.cloud_storage.skydrive.model;
+
+/**
+ * Тип фоновой операции с хранилищем.
+ */
+public enum StorageJobType {
+    DELETE,
+    MOVE,
+    COPY
+}
@@ -0,0 +1,47 @@
+package com.baykin.cloud_storage.skydrive.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Объём хранилища, занятый пользователем, и его квота.
+ */
+@Entity
+@Table(name = "user_storage_usage")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserStorageUsage {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "used_bytes", nullable = false)
+    private long usedBytes;
+
+    @Column(name = "object_count", nullable = false)
+    private long objectCount;
+
+    /**
+     * Индивидуальная квота в байтах; {@code null} — действует {@code storage.quota.default-bytes}.
+     */
+    @Column(name = "quota_bytes")
+    private Long quotaBytes;
+
+    /**
+     * Место, зарезервированное незавершёнными загрузками и копированиями.
+     */
+    @Column(name = "reserved_bytes", nullable = false)
+    private long reservedBytes;
+
+    @Column(name = "reserved_at")
+    private Instant reservedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
@@ -0,0 +1,61 @@
+package com.baykin.cloud_storage.skydrive.repository;
+
+import com.baykin.cloud_storage.skydrive.model.ContentBlob;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Репозиторий дедуплицированного содержимого и счётчиков ссылок на него.
+ */
+public interface ContentBlobRepository extends JpaRepository<ContentBlob, String> {
+
+    /**
+     * Добавляет ссылку на содержимое, создавая запись при первой ссылке.
+     * Если запись заблокирована сборщиком мусора, ожидает её удаления и создаёт заново.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "insert into content_blobs (hash, size, ref_count, updated_at) values (:hash, :size, 1, now()) " +
+            "on conflict (hash) do update set ref_count = content_blobs.ref_count + 1, updated_at = now()",
+            nativeQuery = true)
+    void acquire(@Param("hash") String hash, @Param("size") long size);
+
+    /**
+     * Добавляет ссылки на уже сохранённое содержимое.
+     */
+    @Modifying
+    @Transactional
+    @Query("update ContentBlob b set b.refCount = b.refCount + :count, b.updatedAt = CURRENT_TIMESTAMP " +
+            "where b.hash = :hash")
+    int addReferences(@Param("hash") String hash, @Param("count") long count);
+
+    @Modifying
+    @Transactional
+    @Query("update ContentBlob b set b.refCount = b.refCount - :count, b.updatedAt = CURRENT_TIMESTAMP " +
+            "where b.hash = :hash")
+    int release(@Param("hash") String hash, @Param("count") long count);
+
+    /**
+     * Содержимое без ссылок, не менявшееся с {@code cutoff}.
+     */
+    @Query("select b.hash from ContentBlob b where b.refCount <= 0 and b.updatedAt < :cutoff order by b.updatedAt")
+    List<String> findUnreferenced(@Param("cutoff") Instant cutoff, Limit limit);
+
+    /**
+     * Блокирует запись, если на неё по-прежнему нет ссылок; занятые записи пропускаются.
+     */
+    @Query(value = "select hash from content_blobs where hash = :hash and ref_count <= 0 for update skip locked",
+            nativeQuery = true)
+    List<String> lockUnreferenced(@Param("hash") String hash);
+
+    @Modifying
+    @Query("delete from ContentBlob b where b.hash = :hash")
+    int deleteByHash(@Param("hash") String hash);
+}
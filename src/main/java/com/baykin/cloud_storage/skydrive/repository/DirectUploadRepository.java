@@ -0,0 +1,35 @@
+package com.baykin.cloud_storage.skydrive.repository;
+
+import com.baykin.cloud_storage.skydrive.model.DirectUpload;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Репозиторий ожидаемых прямых загрузок.
+ */
+public interface DirectUploadRepository extends JpaRepository<DirectUpload, UUID> {
+
+    Optional<DirectUpload> findByIdAndUserId(UUID id, Long userId);
+
+    List<DirectUpload> findByExpiresAtBefore(Instant threshold);
+
+    boolean existsByObjectName(String objectName);
+
+    /**
+     * Забирает загрузку для подтверждения: запись удаляется, поэтому подтвердить загрузку можно только один раз.
+     *
+     * @return 1, если загрузка забрана этим вызовом
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from DirectUpload u where u.id = :id and u.userId = :userId")
+    int claim(@Param("id") UUID id, @Param("userId") Long userId);
+}
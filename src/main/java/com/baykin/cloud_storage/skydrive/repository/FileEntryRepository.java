@@ -0,0 +1,234 @@
+package com.baykin.cloud_storage.skydrive.repository;
+
+import com.baykin.cloud_storage.skydrive.model.FileEntry;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Репозиторий индекса метаданных файлов и папок.
+ * Параметры {@code pattern} — LIKE-шаблоны с экранированием через "\".
+ */
+public interface FileEntryRepository extends JpaRepository<FileEntry, Long> {
+
+    Optional<FileEntry> findByUserIdAndPath(Long userId, String path);
+
+    boolean existsByUserIdAndPath(Long userId, String path);
+
+    List<FileEntry> findByUserIdAndParentPathOrderByPathAsc(Long userId, String parentPath);
+
+    List<FileEntry> findByUserIdOrderByPathAsc(Long userId);
+
+    long countByUserIdAndPathStartingWith(Long userId, String prefix);
+
+    List<FileEntry> findByUserIdAndParentPathAndPathGreaterThanOrderByPathAsc(Long userId, String parentPath,
+                                                                             String after, Limit limit);
+
+    List<FileEntry> findByUserIdAndPathGreaterThanOrderByPathAsc(Long userId, String after, Limit limit);
+
+    /**
+     * Страница потомков папки по возрастанию пути, начиная после {@code after}.
+     */
+    @Query("select e from FileEntry e where e.userId = :userId and e.path like :pattern escape '\\' " +
+            "and e.path > :after order by e.path")
+    List<FileEntry> findDescendantsAfter(@Param("userId") Long userId,
+                                         @Param("pattern") String pattern,
+                                         @Param("after") String after,
+                                         Limit limit);
+
+    @Query("select e from FileEntry e where e.userId = :userId and e.path like :pattern escape '\\' " +
+            "and e.path <> :prefix order by e.path")
+    List<FileEntry> findDescendants(@Param("userId") Long userId,
+                                    @Param("prefix") String prefix,
+                                    @Param("pattern") String pattern);
+
+    /**
+     * Поиск по вхождению строки в имя с использованием триграммного GIN-индекса.
+     * Сначала идут точные совпадения, затем совпадения по началу имени, затем остальные по убыванию сходства.
+     */
+    @Query(value = "select * from file_entries e " +
+            "where e.user_id = :userId and lower(e.name) like :pattern escape '\\' " +
+            "order by (lower(e.name) = :query) desc, " +
+            "(lower(e.name) like :prefixPattern escape '\\') desc, " +
+            "similarity(lower(e.name), :query) desc, e.path " +
+            "limit :limit offset :offset",
+            nativeQuery = true)
+    List<FileEntry> searchByName(@Param("userId") Long userId,
+                                 @Param("query") String query,
+                                 @Param("pattern") String pattern,
+                                 @Param("prefixPattern") String prefixPattern,
+                                 @Param("limit") int limit,
+                                 @Param("offset") long offset);
+
+    /**
+     * Тот же поиск с keyset-пагинацией для потоковой выдачи: возвращает записи, идущие в порядке ранжирования
+     * после записи с рангом ({@code afterTier}, {@code afterSimilarity}) и путём {@code afterPath}.
+     * Ранг — уровень совпадения (2 — точное, 1 — по началу имени, 0 — остальные) и сходство имени с запросом;
+     * для первой страницы передаётся {@code afterTier = 3}.
+     */
+    @Query(value = "select * from (select e.*, " +
+            "case when lower(e.name) = :query then 2 " +
+            "when lower(e.name) like :prefixPattern escape '\\' then 1 else 0 end as search_tier, " +
+            "cast(similarity(lower(e.name), :query) as float8) as search_similarity " +
+            "from file_entries e " +
+            "where e.user_id = :userId and lower(e.name) like :pattern escape '\\') r " +
+            "where r.search_tier < :afterTier or (r.search_tier = :afterTier and " +
+            "(r.search_similarity < :afterSimilarity or " +
+            "(r.search_similarity = :afterSimilarity and r.path > :afterPath))) " +
+            "order by r.search_tier desc, r.search_similarity desc, r.path " +
+            "limit :limit",
+            nativeQuery = true)
+    List<FileEntry> searchByNameAfter(@Param("userId") Long userId,
+                                      @Param("query") String query,
+                                      @Param("pattern") String pattern,
+                                      @Param("prefixPattern") String prefixPattern,
+                                      @Param("afterTier") int afterTier,
+                                      @Param("afterSimilarity") double afterSimilarity,
+                                      @Param("afterPath") String afterPath,
+                                      @Param("limit") int limit);
+
+    /**
+     * Ранг имени для {@link #searchByNameAfter}, вычисленный теми же выражениями, что и в поиске:
+     * одна строка из уровня совпадения и сходства.
+     */
+    @Query(value = "select case when lower(cast(:name as text)) = :query then 2 " +
+            "when lower(cast(:name as text)) like :prefixPattern escape '\\' then 1 else 0 end, " +
+            "cast(similarity(lower(cast(:name as text)), :query) as float8)",
+            nativeQuery = true)
+    List<Object[]> searchRank(@Param("name") String name,
+                              @Param("query") String query,
+                              @Param("prefixPattern") String prefixPattern);
+
+    /**
+     * Суммарный размер файлов с путём {@code path} или под шаблоном {@code pattern}.
+     */
+    @Query("select coalesce(sum(e.size), 0L) from FileEntry e where e.userId = :userId " +
+            "and e.type = com.baykin.cloud_storage.skydrive.dto.ResourceType.FILE " +
+            "and (e.path = :path or e.path like :pattern escape '\\')")
+    long sumFileSizes(@Param("userId") Long userId, @Param("path") String path, @Param("pattern") String pattern);
+
+    /**
+     * Количество файлов с путём {@code path} или под шаблоном {@code pattern}.
+     */
+    @Query("select count(e) from FileEntry e where e.userId = :userId " +
+            "and e.type = com.baykin.cloud_storage.skydrive.dto.ResourceType.FILE " +
+            "and (e.path = :path or e.path like :pattern escape '\\')")
+    long countFiles(@Param("userId") Long userId, @Param("path") String path, @Param("pattern") String pattern);
+
+    /**
+     * Количество ссылок на каждое дедуплицированное содержимое среди файлов с путём {@code path}
+     * или под шаблоном {@code pattern}: пары [хеш, количество].
+     */
+    @Query("select e.contentHash, count(e) from FileEntry e where e.userId = :userId " +
+            "and e.contentHash is not null and (e.path = :path or e.path like :pattern escape '\\') " +
+            "group by e.contentHash")
+    List<Object[]> countContentReferences(@Param("userId") Long userId,
+                                          @Param("path") String path,
+                                          @Param("pattern") String pattern);
+
+    @Modifying
+    @Query("delete from FileEntry e where e.userId = :userId and e.path like :pattern escape '\\'")
+    int deleteByPattern(@Param("userId") Long userId, @Param("pattern") String pattern);
+
+    @Modifying
+    @Query("delete from FileEntry e where e.userId = :userId and e.path = :path")
+    int deleteByPath(@Param("userId") Long userId, @Param("path") String path);
+
+    /**
+     * Переносит потомков папки: заменяет префикс {@code path} и {@code parentPath}.
+     * Сама папка под шаблон не попадает, так как её путь к этому моменту уже изменён.
+     */
+    @Modifying
+    @Query("update FileEntry e set e.path = concat(:target, substring(e.path, :offset)), " +
+            "e.parentPath = concat(:target, substring(e.parentPath, :offset)) " +
+            "where e.userId = :userId and e.path like :pattern escape '\\'")
+    int moveDescendants(@Param("userId") Long userId,
+                        @Param("pattern") String pattern,
+                        @Param("target") String target,
+                        @Param("offset") int offset);
+
+    /**
+     * Копирует потомков папки {@code source} в папку {@code target}: к путям и родительским путям
+     * применяется та же замена префикса, что и в {@link #moveDescendants}. Сама папка не копируется.
+     */
+    @Modifying
+    @Query(value = "insert into file_entries (user_id, path, parent_path, name, size, item_count, type, " +
+            "content_type, etag, content_hash, modified_at) " +
+            "select e.user_id, :target || substring(e.path, :offset), :target || substring(e.parent_path, :offset), " +
+            "e.name, e.size, e.item_count, e.type, e.content_type, e.etag, e.content_hash, now() " +
+            "from file_entries e where e.user_id = :userId and e.path like :pattern escape '\\' and e.path <> :source",
+            nativeQuery = true)
+    int copyDescendants(@Param("userId") Long userId,
+                        @Param("source") String source,
+                        @Param("pattern") String pattern,
+                        @Param("target") String target,
+                        @Param("offset") int offset);
+
+    @Modifying
+    @Query(value = "insert into file_entries (user_id, path, parent_path, name, size, type, content_type, etag, " +
+            "content_hash, modified_at) " +
+            "values (:userId, :path, :parentPath, :name, :size, 'FILE', :contentType, :etag, :contentHash, :modifiedAt) " +
+            "on conflict (user_id, path) do update set size = excluded.size, type = excluded.type, " +
+            "content_type = excluded.content_type, etag = excluded.etag, content_hash = excluded.content_hash, " +
+            "modified_at = excluded.modified_at",
+            nativeQuery = true)
+    void upsertFile(@Param("userId") Long userId,
+                    @Param("path") String path,
+                    @Param("parentPath") String parentPath,
+                    @Param("name") String name,
+                    @Param("size") long size,
+                    @Param("contentType") String contentType,
+                    @Param("etag") String etag,
+                    @Param("contentHash") String contentHash,
+                    @Param("modifiedAt") Instant modifiedAt);
+
+    /**
+     * @return 1, если папка добавлена, 0 — если она уже была
+     */
+    @Modifying
+    @Query(value = "insert into file_entries (user_id, path, parent_path, name, size, item_count, type, modified_at) " +
+            "values (:userId, :path, :parentPath, :name, 0, 0, 'DIRECTORY', :modifiedAt) " +
+            "on conflict (user_id, path) do nothing",
+            nativeQuery = true)
+    int insertDirectoryIfAbsent(@Param("userId") Long userId,
+                                 @Param("path") String path,
+                                 @Param("parentPath") String parentPath,
+                                 @Param("name") String name,
+                                 @Param("modifiedAt") Instant modifiedAt);
+
+    /**
+     * Изменяет суммарный размер и количество потомков у перечисленных папок.
+     * Строки сначала блокируются в порядке путей: параллельные транзакции, меняющие пересекающиеся
+     * наборы предков, захватывают блокировки в одном порядке и не попадают во взаимную блокировку.
+     */
+    @Modifying
+    @Query(value = "with locked as (select id from file_entries " +
+            "where user_id = :userId and path in (:paths) order by path for update) " +
+            "update file_entries e set size = coalesce(e.size, 0) + :bytes, item_count = e.item_count + :items " +
+            "from locked where e.id = locked.id",
+            nativeQuery = true)
+    int adjustDirectories(@Param("userId") Long userId,
+                          @Param("paths") Collection<String> paths,
+                          @Param("bytes") long bytes,
+                          @Param("items") long items);
+
+    /**
+     * Пересчитывает размер и количество потомков всех папок пользователя.
+     */
+    @Modifying
+    @Query(value = "update file_entries d set " +
+            "size = (select coalesce(sum(f.size), 0) from file_entries f " +
+            "where f.user_id = d.user_id and f.type = 'FILE' and starts_with(f.path, d.path)), " +
+            "item_count = (select count(*) from file_entries f " +
+            "where f.user_id = d.user_id and f.path <> d.path and starts_with(f.path, d.path)) " +
+            "where d.user_id = :userId and d.type = 'DIRECTORY'",
+            nativeQuery = true)
+    int recalculateDirectories(@Param("userId") Long userId);
+}
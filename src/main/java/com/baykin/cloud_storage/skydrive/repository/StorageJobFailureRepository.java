@@ -0,0 +1,16 @@
+package com.baykin.cloud_storage.skydrive.repository;
+
+import com.baykin.cloud_storage.skydrive.model.StorageJobFailure;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Репозиторий объектов, не обработанных фоновыми операциями.
+ */
+public interface StorageJobFailureRepository extends JpaRepository<StorageJobFailure, Long> {
+
+    List<StorageJobFailure> findByJobIdOrderByIdAsc(UUID jobId, Limit limit);
+}
@@ -0,0 +1,85 @@
+package com.baykin.cloud_storage.skydrive.repository;
+
+import com.baykin.cloud_storage.skydrive.model.StorageJob;
+import com.baykin.cloud_storage.skydrive.model.StorageJobPhase;
+import com.baykin.cloud_storage.skydrive.model.StorageJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Репозиторий фоновых операций с хранилищем.
+ */
+public interface StorageJobRepository extends JpaRepository<StorageJob, UUID> {
+
+    Optional<StorageJob> findByIdAndUserId(UUID id, Long userId);
+
+    List<StorageJob> findTop50ByUserIdOrderByCreatedAtDesc(Long userId);
+
+    List<StorageJob> findByStatusIn(Collection<StorageJobStatus> statuses);
+
+    @Transactional
+    @Modifying
+    @Query("update StorageJob j set j.processedObjects = j.processedObjects + :processed, " +
+            "j.failedObjects = j.failedObjects + :failed, j.updatedAt = :now where j.id = :id")
+    int addProgress(@Param("id") UUID id,
+                    @Param("processed") long processed,
+                    @Param("failed") long failed,
+                    @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("update StorageJob j set j.status = :status, j.error = :error, j.updatedAt = :now where j.id = :id")
+    int updateStatus(@Param("id") UUID id,
+                     @Param("status") StorageJobStatus status,
+                     @Param("error") String error,
+                     @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("update StorageJob j set j.phase = :phase, j.updatedAt = :now where j.id = :id")
+    int updatePhase(@Param("id") UUID id,
+                    @Param("phase") StorageJobPhase phase,
+                    @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("update StorageJob j set j.processedObjects = 0, j.failedObjects = 0, j.updatedAt = :now where j.id = :id")
+    int resetProgress(@Param("id") UUID id, @Param("now") Instant now);
+
+    /**
+     * Забирает незавершённое задание, если его владелец не подавал признаков жизни с {@code staleBefore}.
+     * Условие проверяется и владелец меняется одним запросом, поэтому задание достаётся только одному экземпляру.
+     *
+     * @return 1, если задание забрано
+     */
+    @Transactional
+    @Modifying
+    @Query("update StorageJob j set j.owner = :owner, j.heartbeatAt = :now, j.updatedAt = :now " +
+            "where j.id = :id and j.status in :statuses and (j.heartbeatAt is null or j.heartbeatAt < :staleBefore)")
+    int claim(@Param("id") UUID id,
+              @Param("owner") String owner,
+              @Param("statuses") Collection<StorageJobStatus> statuses,
+              @Param("staleBefore") Instant staleBefore,
+              @Param("now") Instant now);
+
+    /**
+     * Продлевает аренду перечисленных заданий, если они по-прежнему принадлежат {@code owner}.
+     */
+    @Transactional
+    @Modifying
+    @Query("update StorageJob j set j.heartbeatAt = :now " +
+            "where j.id in :ids and j.owner = :owner and j.status in :statuses")
+    int heartbeat(@Param("ids") Collection<UUID> ids,
+                  @Param("owner") String owner,
+                  @Param("statuses") Collection<StorageJobStatus> statuses,
+                  @Param("now") Instant now);
+}
@@ -0,0 +1,45 @@
+package com.baykin.cloud_storage.skydrive.repository;
+
+import com.baykin.cloud_storage.skydrive.model.UploadSessionPart;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Репозиторий переданных частей сессий загрузки.
+ */
+public interface UploadSessionPartRepository extends JpaRepository<UploadSessionPart, Long> {
+
+    List<UploadSessionPart> findBySessionIdOrderByPartNumberAsc(UUID sessionId);
+
+    /**
+     * Суммарный размер частей во всех незавершённых сессиях пользователя, кроме указанной части
+     * (её повторная отправка заменяет прежнее содержимое).
+     */
+    @Query(value = "select coalesce(sum(p.size), 0) from upload_session_parts p " +
+            "join upload_sessions s on s.id = p.session_id " +
+            "where s.user_id = :userId and not (p.session_id = :sessionId and p.part_number = :partNumber)",
+            nativeQuery = true)
+    long sumStagedBytes(@Param("userId") Long userId,
+                        @Param("sessionId") UUID sessionId,
+                        @Param("partNumber") int partNumber);
+
+    /**
+     * Сохраняет часть; повторная отправка той же части заменяет прежнюю, как и в хранилище.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "insert into upload_session_parts (session_id, part_number, etag, size) " +
+            "values (:sessionId, :partNumber, :etag, :size) " +
+            "on conflict (session_id, part_number) do update set etag = excluded.etag, size = excluded.size",
+            nativeQuery = true)
+    void upsert(@Param("sessionId") UUID sessionId,
+                @Param("partNumber") int partNumber,
+                @Param("etag") String etag,
+                @Param("size") long size);
+}
@@ -0,0 +1,28 @@
+package com.baykin.cloud_storage.skydrive.repository;
+
+import com.baykin.cloud_storage.skydrive.model.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Репозиторий сессий загрузки по частям.
+ */
+public interface UploadSessionRepository extends JpaRepository<UploadSession, UUID> {
+
+    Optional<UploadSession> findByIdAndUserId(UUID id, Long userId);
+
+    List<UploadSession> findByUpdatedAtBefore(Instant threshold);
+
+    @Transactional
+    @Modifying
+    @Query("update UploadSession s set s.updatedAt = :now where s.id = :id")
+    int touch(@Param("id") UUID id, @Param("now") Instant now);
+}
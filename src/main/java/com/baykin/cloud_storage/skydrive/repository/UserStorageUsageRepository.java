@@ -0,0 +1,97 @@
+package com.baykin.cloud_storage.skydrive.repository;
+
+import com.baykin.cloud_storage.skydrive.model.UserStorageUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+/**
+ * Репозиторий счётчиков занятого пользователями места.
+ */
+public interface UserStorageUsageRepository extends JpaRepository<UserStorageUsage, Long> {
+
+    /**
+     * Прибавляет к счётчикам пользователя изменение (может быть отрицательным).
+     */
+    @Modifying
+    @Query(value = "insert into user_storage_usage (user_id, used_bytes, object_count, updated_at) " +
+            "values (:userId, :bytes, :objects, now()) " +
+            "on conflict (user_id) do update set " +
+            "used_bytes = user_storage_usage.used_bytes + excluded.used_bytes, " +
+            "object_count = user_storage_usage.object_count + excluded.object_count, " +
+            "updated_at = excluded.updated_at",
+            nativeQuery = true)
+    void add(@Param("userId") Long userId, @Param("bytes") long bytes, @Param("objects") long objects);
+
+    /**
+     * Пересчитывает счётчики пользователя по индексу метаданных.
+     */
+    @Modifying
+    @Query(value = "insert into user_storage_usage (user_id, used_bytes, object_count, updated_at) " +
+            "select :userId, coalesce(sum(e.size), 0), count(*), now() from file_entries e " +
+            "where e.user_id = :userId and e.type = 'FILE' " +
+            "on conflict (user_id) do update set used_bytes = excluded.used_bytes, " +
+            "object_count = excluded.object_count, updated_at = excluded.updated_at",
+            nativeQuery = true)
+    int recalculate(@Param("userId") Long userId);
+
+    /**
+     * Пересчитывает счётчики всех пользователей по индексу метаданных.
+     */
+    @Modifying
+    @Query(value = "insert into user_storage_usage (user_id, used_bytes, object_count, updated_at) " +
+            "select u.id, coalesce(sum(e.size), 0), count(e.id), now() from users u " +
+            "left join file_entries e on e.user_id = u.id and e.type = 'FILE' group by u.id " +
+            "on conflict (user_id) do update set used_bytes = excluded.used_bytes, " +
+            "object_count = excluded.object_count, updated_at = excluded.updated_at",
+            nativeQuery = true)
+    int recalculateAll();
+
+    /**
+     * Создаёт пустую строку счётчиков пользователя, если её ещё нет.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "insert into user_storage_usage (user_id, used_bytes, object_count, updated_at) " +
+            "values (:userId, 0, 0, now()) on conflict (user_id) do nothing",
+            nativeQuery = true)
+    void ensureExists(@Param("userId") Long userId);
+
+    /**
+     * Резервирует место, если вместе с занятым и уже зарезервированным оно помещается в квоту.
+     * Проверка и изменение выполняются одним запросом, поэтому параллельные резервирования не превышают квоту.
+     *
+     * @param defaultQuota квота для пользователей без индивидуальной; 0 — без ограничений
+     * @return 1, если место зарезервировано
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update user_storage_usage set reserved_bytes = reserved_bytes + :bytes, reserved_at = now() " +
+            "where user_id = :userId and (coalesce(quota_bytes, :defaultQuota) <= 0 " +
+            "or used_bytes + reserved_bytes + :bytes <= coalesce(quota_bytes, :defaultQuota))",
+            nativeQuery = true)
+    int reserve(@Param("userId") Long userId, @Param("bytes") long bytes, @Param("defaultQuota") long defaultQuota);
+
+    /**
+     * Снимает резервирование.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update user_storage_usage set reserved_bytes = greatest(reserved_bytes - :bytes, 0) " +
+            "where user_id = :userId",
+            nativeQuery = true)
+    void release(@Param("userId") Long userId, @Param("bytes") long bytes);
+
+    /**
+     * Сбрасывает резервирования, которые не обновлялись с {@code before}: их владелец остановился, не сняв их.
+     */
+    @Modifying
+    @Query(value = "update user_storage_usage set reserved_bytes = 0 " +
+            "where reserved_bytes > 0 and reserved_at < :before",
+            nativeQuery = true)
+    int releaseStale(@Param("before") Instant before);
+}
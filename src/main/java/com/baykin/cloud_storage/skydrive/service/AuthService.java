@@ -7,12 +7,19 @@ import com.baykin.cloud_storage.skydrive.exception.UserNotFoundException;
 import com.baykin.cloud_storage.skydrive.model.Role;
 import com.baykin.cloud_storage.skydrive.model.User;
 import com.baykin.cloud_storage.skydrive.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+
 /**
  * Сервис для регистрации и работы с пользователями.
  */
@@ -22,9 +29,25 @@ public class AuthService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
 
-    public AuthService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    /**
+     * Идентификаторы пользователей по имени для сессий, principal которых не содержит идентификатор.
+     * Ограничен по размеру и времени жизни записи; статистика публикуется как метрики cache.* с cache=user-ids.
+     */
+    private final Cache<String, Long> userIds;
+
+    public AuthService(UserRepository userRepository,
+                       PasswordEncoder passwordEncoder,
+                       MeterRegistry meterRegistry,
+                       @Value("${storage.auth.user-id-cache.max-size:10000}") long cacheSize,
+                       @Value("${storage.auth.user-id-cache.ttl:10m}") Duration cacheTtl) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userIds = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, userIds, "user-ids");
     }
 
     /**
@@ -54,7 +77,9 @@ public class AuthService {
                 .password(passwordEncoder.encode(request.getPassword()))
                 .role(Role.USER)
                 .build();
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        evictUserId(saved.getUsername());
+        return saved;
     }
 
     /**
@@ -77,8 +102,42 @@ public class AuthService {
      * @throws UserNotFoundException если пользователь не найден
      */
     public Long getUserIdByUsername(String username) {
-        User user = getUserByUsername(username);
-        return user.getId();
+        return userIds.get(username, name -> getUserByUsername(name).getId());
+    }
+
+    /**
+     * Возвращает идентификатор текущего пользователя. Обычно он берётся из principal без обращения к базе;
+     * для сессий, созданных до появления идентификатора в principal, используется кэш по имени.
+     *
+     * @return идентификатор пользователя
+     * @throws AccessDeniedException если пользователь не авторизован
+     * @throws UserNotFoundException если пользователь не найден
+     */
+    public Long getCurrentUserId() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof SkyDriveUserDetails details && details.getId() != null) {
+            return details.getId();
+        }
+        return getUserIdByUsername(getCurrentUsername());
+    }
+
+    /**
+     * Запоминает идентификатор пользователя, уже полученный из базы.
+     *
+     * @param username имя пользователя
+     * @param userId идентификатор пользователя
+     */
+    public void cacheUserId(String username, Long userId) {
+        userIds.put(username, userId);
+    }
+
+    /**
+     * Убирает пользователя из кэша идентификаторов; вызывается при изменении пользователя.
+     *
+     * @param username имя пользователя
+     */
+    public void evictUserId(String username) {
+        userIds.invalidate(username);
     }
 
     /**
@@ -0,0 +1,138 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import com.baykin.cloud_storage.skydrive.dto.DeleteResultDto;
+import com.baykin.cloud_storage.skydrive.dto.ObjectFailureDto;
+import com.baykin.cloud_storage.skydrive.storage.StorageBackend;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пакетное удаление объектов через {@link StorageBackend#deleteAll} (в MinIO — multi-object delete API).
+ * Ключи группируются по {@code storage.delete.batch-size} (не больше 1000 — ограничение S3),
+ * до {@code storage.delete.parallelism} пакетов удаляются одновременно.
+ */
+@Component
+public class BatchObjectRemover {
+
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private final StorageBackend storageBackend;
+    private final ExecutorService deleteExecutor;
+    private final int batchSize;
+    private final int parallelism;
+
+    public BatchObjectRemover(StorageBackend storageBackend,
+                              @Value("${storage.delete.batch-size:1000}") int batchSize,
+                              @Value("${storage.delete.parallelism:4}") int parallelism) {
+        if (batchSize < 1 || batchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("storage.delete.batch-size must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("storage.delete.parallelism must be positive");
+        }
+        this.storageBackend = storageBackend;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.deleteExecutor = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("batch-delete-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deleteExecutor.shutdownNow();
+    }
+
+    /**
+     * Удаляет объекты пакетами. Одновременно в памяти находится не больше {@code parallelism} пакетов.
+     *
+     * @param objectNames ключи объектов для удаления
+     * @param userRoot корневая папка пользователя, отбрасывается в путях ошибок
+     * @param progress получатель прогресса по каждому пакету
+     * @return количество удалённых объектов и ошибки по отдельным ключам
+     * @throws Exception если пакет не удалось отправить
+     */
+    public DeleteResultDto removeAll(Iterator<String> objectNames, String userRoot, JobProgress progress) throws Exception {
+        Semaphore inFlight = new Semaphore(parallelism);
+        List<Future<List<ObjectFailureDto>>> pending = new ArrayList<>();
+        AtomicLong processed = new AtomicLong();
+        List<ObjectFailureDto> failures = new ArrayList<>();
+        long failed = 0;
+        try {
+            while (objectNames.hasNext()) {
+                List<String> batch = new ArrayList<>(batchSize);
+                while (batch.size() < batchSize && objectNames.hasNext()) {
+                    batch.add(objectNames.next());
+                }
+                inFlight.acquire();
+                pending.add(deleteExecutor.submit(() -> {
+                    try {
+                        List<ObjectFailureDto> batchFailures = removeBatch(batch, userRoot);
+                        processed.addAndGet(batch.size());
+                        progress.advance(batch.size(), batchFailures);
+                        return batchFailures;
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+                failed += collectCompleted(pending, failures);
+            }
+            for (Future<List<ObjectFailureDto>> future : pending) {
+                failed += collect(future, failures);
+            }
+            pending.clear();
+        } finally {
+            pending.forEach(f -> f.cancel(true));
+        }
+        return new DeleteResultDto(processed.get() - failed, failed, failures);
+    }
+
+    private List<ObjectFailureDto> removeBatch(List<String> batch, String userRoot) throws Exception {
+        List<ObjectFailureDto> batchFailures = new ArrayList<>();
+        for (StorageBackend.DeleteError error : storageBackend.deleteAll(batch)) {
+            String name = error.key();
+            String path = name != null && name.startsWith(userRoot) ? name.substring(userRoot.length()) : name;
+            batchFailures.add(new ObjectFailureDto(path, error.code(), error.message()));
+        }
+        return batchFailures;
+    }
+
+    /**
+     * Забирает результаты уже завершившихся пакетов, чтобы список ожидания не рос вместе с числом пакетов.
+     */
+    private static long collectCompleted(List<Future<List<ObjectFailureDto>>> pending,
+                                         List<ObjectFailureDto> failures) throws Exception {
+        long failed = 0;
+        Iterator<Future<List<ObjectFailureDto>>> it = pending.iterator();
+        while (it.hasNext()) {
+            Future<List<ObjectFailureDto>> future = it.next();
+            if (future.isDone()) {
+                failed += collect(future, failures);
+                it.remove();
+            }
+        }
+        return failed;
+    }
+
+    private static long collect(Future<List<ObjectFailureDto>> future, List<ObjectFailureDto> failures) throws Exception {
+        List<ObjectFailureDto> batchFailures;
+        try {
+            batchFailures = future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        for (ObjectFailureDto failure : batchFailures) {
+            if (failures.size() < StorageJobService.MAX_STORED_FAILURES) {
+                failures.add(failure);
+            }
+        }
+        return batchFailures.size();
+    }
+}
@@ -0,0 +1,249 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import com.baykin.cloud_storage.skydrive.repository.ContentBlobRepository;
+import com.baykin.cloud_storage.skydrive.storage.StorageBackend;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Дедупликация содержимого: файл сохраняется в хранилище один раз под ключом {@code blobs/<sha256>},
+ * а записи индекса ссылаются на него по хешу. Содержимое без ссылок удаляется сборщиком мусора
+ * спустя {@code storage.dedup.gc-grace}.
+ * <p>
+ * Содержимое читается один раз: хеш вычисляется на лету, пока данные пишутся под временным ключом
+ * {@code blobs/tmp/<uuid>}, после чего объект переносится под ключ содержимого или, если такое содержимое
+ * уже есть, удаляется. Временные объекты, оставшиеся после сбоя, удаляет тот же сборщик мусора.
+ * <p>
+ * Загрузка сначала добавляет ссылку и только потом проверяет наличие объекта, а сборщик удаляет объект,
+ * удерживая блокировку строки без ссылок. Поэтому объект не может быть удалён после того,
+ * как загрузка решила его не отправлять.
+ */
+@Service
+public class ContentBlobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentBlobService.class);
+
+    private static final String BLOB_PREFIX = "blobs/";
+    private static final String TEMP_PREFIX = BLOB_PREFIX + "tmp/";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    private static final int GC_BATCH_SIZE = 1000;
+
+    private final StorageBackend storageBackend;
+    private final ContentBlobRepository contentBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${storage.dedup.gc-grace:1h}")
+    private Duration gcGrace;
+
+    public ContentBlobService(StorageBackend storageBackend,
+                              ContentBlobRepository contentBlobRepository,
+                              TransactionTemplate transactionTemplate) {
+        this.storageBackend = storageBackend;
+        this.contentBlobRepository = contentBlobRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Сохранённое содержимое.
+     *
+     * @param hash SHA-256 в шестнадцатеричном виде
+     * @param etag ETag объекта в хранилище
+     * @param size размер в байтах
+     */
+    public record Stored(String hash, String etag, long size) {
+    }
+
+    /**
+     * Ключ объекта хранилища для содержимого с указанным хешем.
+     *
+     * @param hash SHA-256 в шестнадцатеричном виде
+     * @return ключ объекта
+     */
+    public static String blobKey(String hash) {
+        return BLOB_PREFIX + hash.substring(0, 2) + "/" + hash;
+    }
+
+    /**
+     * Сохраняет содержимое и добавляет на него ссылку. Поток читается один раз: данные пишутся
+     * под временным ключом, а SHA-256 вычисляется по пути.
+     *
+     * @param content содержимое (не закрывается)
+     * @param size размер в байтах или {@code -1}, если он заранее неизвестен
+     * @param contentType MIME-тип
+     * @return хеш, ETag и размер сохранённого содержимого
+     * @throws Exception при ошибках хранилища или ввода-вывода; временный объект при этом удаляется
+     */
+    public Stored store(InputStream content, long size, String contentType) throws Exception {
+        String tempKey = TEMP_PREFIX + UUID.randomUUID();
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        InputStream hashing = new DigestInputStream(content, digest);
+        StorageBackend.Written written;
+        try {
+            written = size >= 0
+                    ? storageBackend.put(tempKey, hashing, size, contentType)
+                    : storageBackend.putStream(tempKey, hashing, contentType);
+        } catch (Exception e) {
+            deleteQuietly(tempKey);
+            throw e;
+        }
+        return promote(tempKey, HexFormat.of().formatHex(digest.digest()), written.size());
+    }
+
+    /**
+     * Переводит под дедупликацию объект, уже записанный в хранилище другим способом (по частям
+     * или напрямую клиентом): объект читается для вычисления хеша и переносится под ключ содержимого
+     * либо удаляется, если такое содержимое уже есть.
+     *
+     * @param key ключ записанного объекта; после вызова объекта под этим ключом нет
+     * @param size размер объекта
+     * @return хеш, ETag и размер сохранённого содержимого
+     * @throws Exception при ошибках хранилища или ввода-вывода; объект при этом остаётся на месте
+     */
+    public Stored adopt(String key, long size) throws Exception {
+        String hash;
+        try (InputStream in = storageBackend.get(key, null, null)) {
+            hash = sha256(in);
+        }
+        return promote(key, hash, size);
+    }
+
+    /**
+     * Добавляет ссылку и переносит объект {@code key} под ключ содержимого или удаляет его как дубликат.
+     * Ссылка добавляется до проверки наличия объекта — так сборщик мусора не удалит найденное содержимое.
+     */
+    private Stored promote(String key, String hash, long size) throws Exception {
+        contentBlobRepository.acquire(hash, size);
+        try {
+            String target = blobKey(hash);
+            Optional<StorageBackend.ObjectInfo> existing = storageBackend.stat(target);
+            if (existing.isEmpty()) {
+                storageBackend.copy(key, target, size);
+                existing = storageBackend.stat(target);
+            }
+            String etag = existing.map(StorageBackend.ObjectInfo::etag)
+                    .orElseThrow(() -> new IllegalStateException("Объект не сохранён: " + target));
+            deleteQuietly(key);
+            return new Stored(hash, etag, size);
+        } catch (Exception e) {
+            contentBlobRepository.release(hash, 1);
+            if (key.startsWith(TEMP_PREFIX)) {
+                deleteQuietly(key);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Снимает ссылки на содержимое.
+     *
+     * @param hash SHA-256 содержимого
+     * @param count количество снимаемых ссылок
+     */
+    public void release(String hash, long count) {
+        if (count > 0) {
+            contentBlobRepository.release(hash, count);
+        }
+    }
+
+    /**
+     * Добавляет ссылки на уже сохранённое содержимое, например при копировании файлов-ссылок.
+     *
+     * @param hash SHA-256 содержимого
+     * @param count количество добавляемых ссылок
+     */
+    public void addReferences(String hash, long count) {
+        if (count > 0) {
+            contentBlobRepository.addReferences(hash, count);
+        }
+    }
+
+    /**
+     * Удаляет из хранилища содержимое, на которое нет ссылок дольше {@code storage.dedup.gc-grace}.
+     */
+    @Scheduled(fixedDelayString = "${storage.dedup.gc-interval:PT1H}")
+    public void collectGarbage() {
+        int removed = 0;
+        for (String hash : contentBlobRepository.findUnreferenced(Instant.now().minus(gcGrace), Limit.of(GC_BATCH_SIZE))) {
+            try {
+                Boolean deleted = transactionTemplate.execute(status -> removeIfUnreferenced(hash));
+                if (Boolean.TRUE.equals(deleted)) {
+                    removed++;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to remove unreferenced blob {}", hash, e);
+            }
+        }
+        if (removed > 0) {
+            log.info("Removed {} unreferenced blobs", removed);
+        }
+        try {
+            removeAbandonedTemporaries();
+        } catch (RuntimeException e) {
+            log.warn("Failed to remove abandoned temporary blobs", e);
+        }
+    }
+
+    /**
+     * Удаляет временные объекты, запись которых прервалась сбоем приложения.
+     */
+    private void removeAbandonedTemporaries() {
+        Instant cutoff = Instant.now().minus(gcGrace);
+        Iterator<StorageBackend.ObjectInfo> temporaries = storageBackend.list(TEMP_PREFIX);
+        while (temporaries.hasNext()) {
+            StorageBackend.ObjectInfo temp = temporaries.next();
+            if (temp.lastModified() != null && temp.lastModified().isBefore(cutoff)) {
+                deleteQuietly(temp.key());
+            }
+        }
+    }
+
+    private void deleteQuietly(String key) {
+        try {
+            storageBackend.delete(key);
+        } catch (Exception e) {
+            log.warn("Failed to delete temporary object {}", key, e);
+        }
+    }
+
+    /**
+     * Удаляет объект и запись, удерживая блокировку строки до конца транзакции.
+     */
+    private boolean removeIfUnreferenced(String hash) {
+        if (contentBlobRepository.lockUnreferenced(hash).isEmpty()) {
+            return false;
+        }
+        try {
+            storageBackend.delete(blobKey(hash));
+        } catch (Exception e) {
+            throw new IllegalStateException("Не удалось удалить объект " + blobKey(hash), e);
+        }
+        contentBlobRepository.deleteByHash(hash);
+        return true;
+    }
+
+    private static String sha256(InputStream in) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (DigestInputStream dis = new DigestInputStream(in, digest)) {
+            byte[] buf = new byte[HASH_BUFFER_SIZE];
+            while (dis.read(buf) >= 0) {
+                // содержимое нужно только для вычисления хеша
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -16,13 +16,16 @@ import java.util.List;
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
     private final UserRepository userRepository;
+    private final AuthService authService;
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository, AuthService authService) {
         this.userRepository = userRepository;
+        this.authService = authService;
     }
 
     /**
-     * Загружает пользователя по имени пользователя.
+     * Загружает пользователя по имени пользователя. Идентификатор сохраняется в principal,
+     * чтобы последующие запросы сессии не обращались к базе.
      *
      * @param username имя пользователя
      * @return UserDetails объект с информацией о пользователе
@@ -32,7 +35,9 @@ public class CustomUserDetailsService implements UserDetailsService {
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-        return new org.springframework.security.core.userdetails.User(
+        authService.cacheUserId(user.getUsername(), user.getId());
+        return new SkyDriveUserDetails(
+                user.getId(),
                 user.getUsername(),
                 user.getPassword(),
                 List.of(new SimpleGrantedAuthority("ROLE_" + user.getRole().name()))
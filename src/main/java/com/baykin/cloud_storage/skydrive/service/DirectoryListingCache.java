@@ -0,0 +1,294 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import com.baykin.cloud_storage.skydrive.dto.FileResourceDto;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кэш содержимого папок. Первый уровень — Caffeine в памяти процесса с записью на пользователя,
+ * ограниченный суммарным числом элементов во всех листингах ({@code storage.listing-cache.max-items});
+ * второй, необязательный — хэш в Redis на пользователя ({@code storage.listing-cache.redis.enabled}),
+ * общий для всех экземпляров. Со включённым Redis сброс рассылается через pub/sub, и каждый экземпляр
+ * очищает свой первый уровень.
+ * <p>
+ * Изменение ресурса сбрасывает только листинги папок, в которые он входит: его предков и, для папки,
+ * её саму и вложенные папки. Сброс выполняется после фиксации транзакции индекса. Запись пользователя
+ * неизменяема и несёт версию: каждый сброс заменяет её записью с новой версией, а прочитанный листинг
+ * добавляется атомарно через {@code compute}, только если версия за время чтения не изменилась.
+ */
+@Component
+public class DirectoryListingCache implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectoryListingCache.class);
+
+    private static final String REDIS_KEY_PREFIX = "skydrive:listing:";
+    private static final String INVALIDATION_CHANNEL = "skydrive:listing:invalidate";
+    private static final TypeReference<List<FileResourceDto>> LISTING_TYPE = new TypeReference<>() {
+    };
+
+    private record Key(Long userId, String directory, boolean recursive) {
+    }
+
+    private record Listing(String directory, boolean recursive) {
+    }
+
+    /**
+     * Листинги одного пользователя. Неизменяема: изменения создают новую запись.
+     *
+     * @param version версия, меняющаяся при каждом сбросе
+     * @param listings закэшированные листинги
+     */
+    private record UserListings(long version, Map<Listing, List<FileResourceDto>> listings) {
+
+        int weight() {
+            int weight = 1;
+            for (List<FileResourceDto> listing : listings.values()) {
+                weight += listing.size() + 1;
+            }
+            return weight;
+        }
+    }
+
+    private final Cache<Long, UserListings> listings;
+    private final AtomicLong versions = new AtomicLong();
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean redisEnabled;
+    private final Duration redisTtl;
+    private final Counter redisHits;
+    private final Counter redisMisses;
+
+    public DirectoryListingCache(StringRedisTemplate redisTemplate,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 ObjectProvider<RedisMessageListenerContainer> listenerContainer,
+                                 @Value("${storage.listing-cache.max-items:200000}") long maxItems,
+                                 @Value("${storage.listing-cache.ttl:5m}") Duration ttl,
+                                 @Value("${storage.listing-cache.redis.enabled:false}") boolean redisEnabled,
+                                 @Value("${storage.listing-cache.redis.ttl:10m}") Duration redisTtl) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.redisEnabled = redisEnabled;
+        this.redisTtl = redisTtl;
+        this.listings = Caffeine.newBuilder()
+                .maximumWeight(maxItems)
+                .weigher((Long userId, UserListings value) -> value.weight())
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        if (redisEnabled) {
+            listenerContainer.getObject().addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        }
+        CaffeineCacheMetrics.monitor(meterRegistry, listings, "directory-listings");
+        this.redisHits = Counter.builder("listing.cache.redis").tag("result", "hit").register(meterRegistry);
+        this.redisMisses = Counter.builder("listing.cache.redis").tag("result", "miss").register(meterRegistry);
+    }
+
+    /**
+     * Возвращает листинг из кэша или загружает его.
+     *
+     * @param userId идентификатор пользователя
+     * @param directory путь к папке ("" — корень, иначе с завершающим "/")
+     * @param recursive рекурсивный ли листинг
+     * @param loader загрузка листинга из индекса
+     * @return содержимое папки
+     */
+    public List<FileResourceDto> get(Long userId, String directory, boolean recursive,
+                                     Supplier<List<FileResourceDto>> loader) {
+        Key key = new Key(userId, directory, recursive);
+        Listing listingKey = new Listing(directory, recursive);
+        UserListings current = listings.getIfPresent(userId);
+        if (current != null) {
+            List<FileResourceDto> cached = current.listings().get(listingKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        long version = current != null ? current.version() : -1;
+        List<FileResourceDto> loaded = redisEnabled ? readRedis(key) : null;
+        boolean fromRedis = loaded != null;
+        List<FileResourceDto> listing = fromRedis ? loaded : List.copyOf(loader.get());
+        boolean[] stored = new boolean[1];
+        listings.asMap().compute(userId, (id, entry) -> {
+            long entryVersion = entry != null ? entry.version() : -1;
+            if (entryVersion != version) {
+                return entry;
+            }
+            Map<Listing, List<FileResourceDto>> updated = entry != null ? new HashMap<>(entry.listings()) : new HashMap<>();
+            updated.put(listingKey, listing);
+            stored[0] = true;
+            return new UserListings(entry != null ? entryVersion : versions.incrementAndGet(), Map.copyOf(updated));
+        });
+        if (stored[0] && redisEnabled && !fromRedis) {
+            writeRedis(key, listing);
+        }
+        return listing;
+    }
+
+    /**
+     * Сбрасывает листинги, затронутые изменением ресурса, после фиксации текущей транзакции.
+     *
+     * @param userId идентификатор пользователя
+     * @param path относительный путь изменённого файла или папки
+     */
+    public void invalidate(Long userId, String path) {
+        afterCommit(() -> evict(userId, path));
+    }
+
+    /**
+     * Сбрасывает все листинги пользователя после фиксации текущей транзакции.
+     *
+     * @param userId идентификатор пользователя
+     */
+    public void invalidateAll(Long userId) {
+        afterCommit(() -> evict(userId, ""));
+    }
+
+    /**
+     * Сброс, полученный от другого экземпляра (или от себя же) через Redis pub/sub: сообщение
+     * имеет вид {@code "<userId>\n<path>"}, очищается только локальный первый уровень.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('\n');
+        try {
+            evictLocal(Long.valueOf(body.substring(0, separator)), body.substring(separator + 1));
+        } catch (RuntimeException e) {
+            log.warn("Ignoring malformed listing invalidation message: {}", body, e);
+        }
+    }
+
+    private void evict(Long userId, String path) {
+        evictLocal(userId, path);
+        if (redisEnabled) {
+            try {
+                redisTemplate.convertAndSend(INVALIDATION_CHANNEL, userId + "\n" + path);
+            } catch (RuntimeException e) {
+                log.warn("Failed to publish listing invalidation of user {}", userId, e);
+            }
+            try {
+                String redisKey = REDIS_KEY_PREFIX + userId;
+                List<Object> stale = new ArrayList<>();
+                for (Object field : redisTemplate.opsForHash().keys(redisKey)) {
+                    if (affects(path, directory, directoryOf(field.toString()))) {
+                        stale.add(field);
+                    }
+                }
+                if (!stale.isEmpty()) {
+                    redisTemplate.opsForHash().delete(redisKey, stale.toArray());
+                }
+            } catch (RuntimeException e) {
+                // без сброса Redis может отдавать устаревший листинг — пробуем очистить его у пользователя целиком
+                log.warn("Failed to invalidate cached listings of user {} in Redis", userId, e);
+                try {
+                    redisTemplate.delete(REDIS_KEY_PREFIX + userId);
+                } catch (RuntimeException ignored) {
+                    // запись в Redis истечёт через storage.listing-cache.redis.ttl
+                }
+            }
+        }
+    }
+
+    /**
+     * Заменяет запись пользователя новой версией без затронутых листингов; листинги других пользователей
+     * не просматриваются.
+     */
+    private void evictLocal(Long userId, String path) {
+        String directory = StoragePaths.toDirectory(path);
+        listings.asMap().compute(userId, (id, entry) -> {
+            Map<Listing, List<FileResourceDto>> kept = new HashMap<>();
+            if (entry != null) {
+                entry.listings().forEach((listing, content) -> {
+                    if (!affects(path, directory, listing.directory())) {
+                        kept.put(listing, content);
+                    }
+                });
+            }
+            return new UserListings(versions.incrementAndGet(), Map.copyOf(kept));
+        });
+    }
+
+    /**
+     * Листинг папки {@code cached} меняется, если ресурс лежит в ней или глубже
+     * либо если сам ресурс — папка, внутри которой находится {@code cached}.
+     */
+    private static boolean affects(String path, String directory, String cached) {
+        return path.startsWith(cached) || cached.startsWith(directory);
+    }
+
+    private List<FileResourceDto> readRedis(Key key) {
+        try {
+            Object json = redisTemplate.opsForHash().get(REDIS_KEY_PREFIX + key.userId(), field(key));
+            if (json == null) {
+                redisMisses.increment();
+                return null;
+            }
+            redisHits.increment();
+            return List.copyOf(objectMapper.readValue(json.toString(), LISTING_TYPE));
+        } catch (Exception e) {
+            log.warn("Failed to read cached listing from Redis", e);
+            return null;
+        }
+    }
+
+    private void writeRedis(Key key, List<FileResourceDto> listing) {
+        try {
+            String redisKey = REDIS_KEY_PREFIX + key.userId();
+            redisTemplate.opsForHash().put(redisKey, field(key), objectMapper.writeValueAsString(listing));
+            redisTemplate.expire(redisKey, redisTtl);
+        } catch (Exception e) {
+            log.warn("Failed to write cached listing to Redis", e);
+        }
+    }
+
+    /**
+     * Поле хэша: признак рекурсивности и путь папки, например {@code "r:docs/"}.
+     */
+    private static String field(Key key) {
+        return (key.recursive() ? "r:" : "d:") + key.directory();
+    }
+
+    private static String directoryOf(String field) {
+        return field.substring(2);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import com.baykin.cloud_storage.skydrive.dto.ResourceType;
+import com.baykin.cloud_storage.skydrive.model.FileEntry;
+import com.baykin.cloud_storage.skydrive.model.User;
+import com.baykin.cloud_storage.skydrive.repository.UserRepository;
+import com.baykin.cloud_storage.skydrive.storage.StorageBackend;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Периодически перестраивает индекс метаданных по фактическому содержимому хранилища,
+ * устраняя расхождения после сбоев или изменений в обход приложения.
+ */
+@Component
+public class FileIndexReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(FileIndexReconciler.class);
+
+    private final StorageBackend storageBackend;
+    private final UserRepository userRepository;
+    private final AuthService authService;
+    private final FileIndexService fileIndexService;
+    private final StorageMetrics storageMetrics;
+
+    @Value("${storage.index.reconcile-on-startup:true}")
+    private boolean reconcileOnStartup;
+
+    public FileIndexReconciler(StorageBackend storageBackend,
+                               UserRepository userRepository,
+                               AuthService authService,
+                               FileIndexService fileIndexService,
+                               StorageMetrics storageMetrics) {
+        this.storageBackend = storageBackend;
+        this.userRepository = userRepository;
+        this.authService = authService;
+        this.fileIndexService = fileIndexService;
+        this.storageMetrics = storageMetrics;
+    }
+
+    /**
+     * Заполняет индекс при старте приложения, чтобы данные, загруженные до его появления, стали видны.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        if (reconcileOnStartup) {
+            reconcileAll();
+        }
+    }
+
+    /**
+     * Сверяет индекс всех пользователей с хранилищем по расписанию.
+     */
+    @Scheduled(cron = "${storage.index.reconcile-cron:0 0 3 * * *}")
+    public void reconcileAll() {
+        for (User user : userRepository.findAll()) {
+            try {
+                reconcile(user.getId());
+            } catch (Exception e) {
+                log.warn("Failed to reconcile file index for user {}", user.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * Перестраивает индекс одного пользователя по рекурсивному листингу его корневой папки.
+     *
+     * @param userId идентификатор пользователя
+     * @return количество исправленных записей
+     * @throws Exception при ошибках хранилища
+     */
+    public int reconcile(Long userId) throws Exception {
+        String userRoot = authService.getUserRoot(userId);
+        Instant startedAt = Instant.now();
+        Map<String, FileEntry> actual = new LinkedHashMap<>();
+        Iterator<StorageBackend.ObjectInfo> items = storageBackend.list(userRoot);
+        long listed = 0;
+        while (items.hasNext()) {
+            StorageBackend.ObjectInfo item = items.next();
+            listed++;
+            String path = item.key().substring(userRoot.length());
+            if (path.isEmpty()) continue;
+            Instant modifiedAt = item.lastModified();
+            addParents(actual, path, modifiedAt);
+            if (path.endsWith("/")) {
+                actual.putIfAbsent(path, directory(path, modifiedAt));
+            } else {
+                actual.put(path, FileEntry.builder()
+                        .path(path)
+                        .parentPath(StoragePaths.parentOf(path))
+                        .name(StoragePaths.nameOf(path))
+                        .size(item.size())
+                        .type(ResourceType.FILE)
+                        .etag(item.etag())
+                        .modifiedAt(modifiedAt)
+                        .build());
+            }
+        }
+        storageMetrics.recordListing(StorageMetrics.SOURCE_STORAGE, listed);
+        int changed = fileIndexService.replaceAll(userId, actual, startedAt);
+        if (changed > 0) {
+            log.info("File index for user {} reconciled: {} entries changed", userId, changed);
+        }
+        return changed;
+    }
+
+    private static void addParents(Map<String, FileEntry> actual, String path, Instant modifiedAt) {
+        String parent = StoragePaths.parentOf(path);
+        while (!parent.isEmpty() && !actual.containsKey(parent)) {
+            actual.put(parent, directory(parent, modifiedAt));
+            parent = StoragePaths.parentOf(parent);
+        }
+    }
+
+    private static FileEntry directory(String path, Instant modifiedAt) {
+        return FileEntry.builder()
+                .path(path)
+                .parentPath(StoragePaths.parentOf(path))
+                .name(StoragePaths.nameOf(path))
+                .type(ResourceType.DIRECTORY)
+                .modifiedAt(modifiedAt)
+                .build();
+    }
+}
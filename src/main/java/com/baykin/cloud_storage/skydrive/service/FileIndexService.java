@@ -0,0 +1,475 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import com.baykin.cloud_storage.skydrive.dto.FileResourceDto;
+import com.baykin.cloud_storage.skydrive.dto.ResourceType;
+import com.baykin.cloud_storage.skydrive.model.FileEntry;
+import com.baykin.cloud_storage.skydrive.repository.FileEntryRepository;
+import com.baykin.cloud_storage.skydrive.storage.StorageBackend;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Сервис индекса метаданных в Postgres. Хранит файлы и папки пользователей, чтобы листинг,
+ * получение информации и поиск не обращались к хранилищу. Пути задаются относительно корневой
+ * папки пользователя. У папок поддерживаются суммарный размер и количество потомков:
+ * каждое изменение сразу переносится на всех предков.
+ */
+@Service
+public class FileIndexService {
+
+    private final FileEntryRepository fileEntryRepository;
+    private final DirectoryListingCache directoryListingCache;
+    private final StorageUsageService storageUsageService;
+    private final ContentBlobService contentBlobService;
+
+    public FileIndexService(FileEntryRepository fileEntryRepository,
+                            DirectoryListingCache directoryListingCache,
+                            StorageUsageService storageUsageService,
+                            ContentBlobService contentBlobService) {
+        this.fileEntryRepository = fileEntryRepository;
+        this.directoryListingCache = directoryListingCache;
+        this.storageUsageService = storageUsageService;
+        this.contentBlobService = contentBlobService;
+    }
+
+    /**
+     * Преобразует запись индекса в DTO.
+     *
+     * @param entry запись индекса
+     * @return DTO с информацией о ресурсе
+     */
+    public static FileResourceDto toDto(FileEntry entry) {
+        boolean isDir = entry.getType() == ResourceType.DIRECTORY;
+        return new FileResourceDto(
+                entry.getParentPath(),
+                entry.getName(),
+                isDir && entry.getSize() == null ? 0L : entry.getSize(),
+                entry.getType(),
+                isDir ? entry.getItemCount() : null
+        );
+    }
+
+    /**
+     * Ищет запись по точному пути.
+     *
+     * @param userId идентификатор пользователя
+     * @param path относительный путь (у папок — с завершающим "/")
+     * @return запись индекса, если она есть
+     */
+    @Transactional(readOnly = true)
+    public Optional<FileEntry> find(Long userId, String path) {
+        return fileEntryRepository.findByUserIdAndPath(userId, path);
+    }
+
+    /**
+     * Проверяет наличие файла или папки по пути.
+     *
+     * @param userId идентификатор пользователя
+     * @param path относительный путь
+     * @return true, если запись существует
+     */
+    @Transactional(readOnly = true)
+    public boolean exists(Long userId, String path) {
+        return fileEntryRepository.existsByUserIdAndPath(userId, path);
+    }
+
+    /**
+     * Считает записи внутри папки, включая её саму.
+     *
+     * @param userId идентификатор пользователя
+     * @param directory путь к папке с завершающим "/"
+     * @return количество записей
+     */
+    @Transactional(readOnly = true)
+    public long countDescendants(Long userId, String directory) {
+        return fileEntryRepository.countByUserIdAndPathStartingWith(userId, directory);
+    }
+
+    /**
+     * Возвращает содержимое папки.
+     *
+     * @param userId идентификатор пользователя
+     * @param directory путь к папке ("" — корень)
+     * @param recursive если true — возвращает всех потомков
+     * @return записи в порядке путей
+     */
+    @Transactional(readOnly = true)
+    public List<FileEntry> list(Long userId, String directory, boolean recursive) {
+        String dir = StoragePaths.toDirectory(directory);
+        if (!recursive) {
+            return fileEntryRepository.findByUserIdAndParentPathOrderByPathAsc(userId, dir);
+        }
+        if (dir.isEmpty()) {
+            return fileEntryRepository.findByUserIdOrderByPathAsc(userId);
+        }
+        return fileEntryRepository.findDescendants(userId, dir, StoragePaths.likePrefix(dir));
+    }
+
+    /**
+     * Возвращает страницу содержимого папки по возрастанию пути (keyset-пагинация).
+     *
+     * @param userId идентификатор пользователя
+     * @param directory путь к папке ("" — корень)
+     * @param recursive если true — возвращает всех потомков
+     * @param after путь последней записи предыдущей страницы или {@code null} для первой страницы
+     * @param limit размер страницы
+     * @return записи, следующие за {@code after}
+     */
+    @Transactional(readOnly = true)
+    public List<FileEntry> listPage(Long userId, String directory, boolean recursive, String after, int limit) {
+        String dir = StoragePaths.toDirectory(directory);
+        String from = after != null && after.compareTo(dir) > 0 ? after : dir;
+        if (!recursive) {
+            return fileEntryRepository.findByUserIdAndParentPathAndPathGreaterThanOrderByPathAsc(
+                    userId, dir, from, Limit.of(limit));
+        }
+        if (dir.isEmpty()) {
+            return fileEntryRepository.findByUserIdAndPathGreaterThanOrderByPathAsc(userId, from, Limit.of(limit));
+        }
+        return fileEntryRepository.findDescendantsAfter(userId, StoragePaths.likePrefix(dir), from, Limit.of(limit));
+    }
+
+    /**
+     * Ищет файлы и папки, имя которых содержит строку (без учёта регистра), с ранжированием по качеству совпадения.
+     *
+     * @param userId идентификатор пользователя
+     * @param query строка поиска
+     * @param page номер страницы, начиная с 0
+     * @param size размер страницы
+     * @return найденные записи
+     */
+    @Transactional(readOnly = true)
+    public List<FileEntry> searchByName(Long userId, String query, int page, int size) {
+        String normalized = query.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        String escaped = StoragePaths.escapeLike(normalized);
+        return fileEntryRepository.searchByName(userId, normalized, "%" + escaped + "%", escaped + "%",
+                size, (long) page * size);
+    }
+
+    /**
+     * Позиция в выдаче поиска: ранг последней выданной записи и её путь.
+     *
+     * @param tier уровень совпадения: 2 — точное, 1 — по началу имени, 0 — остальные
+     * @param similarity сходство имени с запросом
+     * @param path путь записи
+     */
+    public record SearchCursor(int tier, double similarity, String path) {
+    }
+
+    /**
+     * Страница поиска с keyset-пагинацией по (рангу, пути): в отличие от {@link #searchByName},
+     * пропущенные записи не ранжируются заново, а записи, добавленные или удалённые между страницами,
+     * не сдвигают выдачу.
+     *
+     * @param userId идентификатор пользователя
+     * @param query строка поиска
+     * @param after позиция после последней записи предыдущей страницы или {@code null} для первой страницы
+     * @param limit размер страницы
+     * @return найденные записи в порядке ранжирования
+     */
+    @Transactional(readOnly = true)
+    public List<FileEntry> searchByNameAfter(Long userId, String query, SearchCursor after, int limit) {
+        String normalized = query.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        String escaped = StoragePaths.escapeLike(normalized);
+        SearchCursor from = after != null ? after : new SearchCursor(3, 0, "");
+        return fileEntryRepository.searchByNameAfter(userId, normalized, "%" + escaped + "%", escaped + "%",
+                from.tier(), from.similarity(), from.path(), limit);
+    }
+
+    /**
+     * Позиция записи в выдаче {@link #searchByNameAfter}. Ранг зависит только от имени и запроса,
+     * поэтому вычисляется и для записи, удалённой после того, как она попала на страницу.
+     *
+     * @param query строка поиска
+     * @param entry последняя выданная запись
+     * @return позиция для запроса следующей страницы
+     */
+    public SearchCursor searchCursor(String query, FileEntry entry) {
+        String normalized = query.trim().toLowerCase(Locale.ROOT);
+        Object[] rank = fileEntryRepository.searchRank(entry.getName(), normalized,
+                StoragePaths.escapeLike(normalized) + "%").get(0);
+        return new SearchCursor(((Number) rank[0]).intValue(), ((Number) rank[1]).doubleValue(), entry.getPath());
+    }
+
+    /**
+     * Добавляет или обновляет файл и создаёт недостающие родительские папки.
+     * Счётчики занятого места изменяются на разницу с прежним размером файла.
+     *
+     * @param userId идентификатор пользователя
+     * @param path относительный путь к файлу
+     * @param size размер в байтах
+     * @param contentType MIME-тип
+     * @param etag ETag объекта в хранилище
+     * @param modifiedAt время изменения
+     */
+    @Transactional
+    public void recordFile(Long userId, String path, long size, String contentType, String etag, Instant modifiedAt) {
+        recordFile(userId, path, size, contentType, etag, modifiedAt, null);
+    }
+
+    /**
+     * Добавляет или обновляет файл, который может ссылаться на дедуплицированное содержимое.
+     * Ссылка на содержимое, которое файл хранил раньше, снимается; новая ссылка должна быть
+     * уже добавлена через {@link ContentBlobService}.
+     *
+     * @param userId идентификатор пользователя
+     * @param path относительный путь к файлу
+     * @param size размер в байтах
+     * @param contentType MIME-тип
+     * @param etag ETag объекта в хранилище
+     * @param modifiedAt время изменения
+     * @param contentHash SHA-256 содержимого или {@code null}, если файл хранится по своему пути
+     */
+    @Transactional
+    public void recordFile(Long userId, String path, long size, String contentType, String etag, Instant modifiedAt,
+                           String contentHash) {
+        Optional<FileEntry> previous = fileEntryRepository.findByUserIdAndPath(userId, path);
+        ensureParents(userId, path, modifiedAt);
+        fileEntryRepository.upsertFile(userId, path, StoragePaths.parentOf(path), StoragePaths.nameOf(path),
+                size,
+                contentType != null ? contentType : "application/octet-stream",
+                etag != null ? StorageBackend.normalizeEtag(etag) : "",
+                contentHash,
+                modifiedAt);
+        previous.map(FileEntry::getContentHash).ifPresent(hash -> contentBlobService.release(hash, 1));
+        long previousSize = previous.map(FileEntry::getSize).orElse(0L);
+        adjustAncestors(userId, path, size - previousSize, previous.isPresent() ? 0 : 1);
+        storageUsageService.add(userId, size - previousSize, previous.isPresent() ? 0 : 1);
+        directoryListingCache.invalidate(userId, path);
+    }
+
+    /**
+     * Добавляет папку и недостающих родителей, если их ещё нет.
+     *
+     * @param userId идентификатор пользователя
+     * @param path относительный путь к папке
+     */
+    @Transactional
+    public void recordDirectory(Long userId, String path) {
+        String dir = StoragePaths.toDirectory(path);
+        Instant now = Instant.now();
+        ensureParents(userId, dir, now);
+        insertDirectory(userId, dir, now);
+        directoryListingCache.invalidate(userId, dir);
+    }
+
+    /**
+     * Удаляет файл либо папку вместе со всем содержимым и уменьшает счётчики занятого места.
+     *
+     * @param userId идентификатор пользователя
+     * @param path относительный путь
+     * @return количество удалённых записей
+     */
+    @Transactional
+    public int remove(Long userId, String path) {
+        if (path.isEmpty()) {
+            return 0;
+        }
+        String pattern = StoragePaths.likePrefix(StoragePaths.toDirectory(path));
+        long bytes = fileEntryRepository.sumFileSizes(userId, path, pattern);
+        long files = fileEntryRepository.countFiles(userId, path, pattern);
+        List<Object[]> references = fileEntryRepository.countContentReferences(userId, path, pattern);
+        directoryListingCache.invalidate(userId, path);
+        int removed = fileEntryRepository.deleteByPath(userId, path);
+        removed += fileEntryRepository.deleteByPattern(userId, pattern);
+        adjustAncestors(userId, path, -bytes, -removed);
+        storageUsageService.add(userId, -bytes, -files);
+        for (Object[] reference : references) {
+            contentBlobService.release((String) reference[0], (Long) reference[1]);
+        }
+        return removed;
+    }
+
+    /**
+     * Переносит файл или папку со всем содержимым в индексе.
+     *
+     * @param userId идентификатор пользователя
+     * @param from исходный относительный путь
+     * @param to целевой относительный путь
+     */
+    @Transactional
+    public void move(Long userId, String from, String to) {
+        Optional<FileEntry> source = fileEntryRepository.findByUserIdAndPath(userId, from);
+        if (source.isEmpty()) {
+            return;
+        }
+        directoryListingCache.invalidate(userId, from);
+        directoryListingCache.invalidate(userId, to);
+        FileEntry entry = source.get();
+        long bytes = entry.getSize() != null ? entry.getSize() : 0;
+        long items = entry.getItemCount() + 1;
+        adjustAncestors(userId, from, -bytes, -items);
+        ensureParents(userId, to, Instant.now());
+        entry.setPath(to);
+        entry.setParentPath(StoragePaths.parentOf(to));
+        entry.setName(StoragePaths.nameOf(to));
+        fileEntryRepository.saveAndFlush(entry);
+        if (entry.getType() == ResourceType.DIRECTORY) {
+            fileEntryRepository.moveDescendants(userId, StoragePaths.likePrefix(from), to, from.length() + 1);
+        }
+        adjustAncestors(userId, to, bytes, items);
+    }
+
+    /**
+     * Копирует файл или папку со всем содержимым в индексе. Размеры папок-предков, счётчики
+     * занятого места и ссылки на дедуплицированное содержимое увеличиваются на размер копии.
+     *
+     * @param userId идентификатор пользователя
+     * @param from исходный относительный путь
+     * @param to целевой относительный путь
+     */
+    @Transactional
+    public void copy(Long userId, String from, String to) {
+        Optional<FileEntry> source = fileEntryRepository.findByUserIdAndPath(userId, from);
+        if (source.isEmpty()) {
+            return;
+        }
+        FileEntry entry = source.get();
+        Instant now = Instant.now();
+        ensureParents(userId, to, now);
+        fileEntryRepository.save(FileEntry.builder()
+                .userId(userId)
+                .path(to)
+                .parentPath(StoragePaths.parentOf(to))
+                .name(StoragePaths.nameOf(to))
+                .size(entry.getSize())
+                .itemCount(entry.getItemCount())
+                .type(entry.getType())
+                .contentType(entry.getContentType())
+                .etag(entry.getEtag())
+                .contentHash(entry.getContentHash())
+                .modifiedAt(now)
+                .build());
+        String pattern = StoragePaths.likePrefix(StoragePaths.toDirectory(from));
+        if (entry.getType() == ResourceType.DIRECTORY) {
+            fileEntryRepository.copyDescendants(userId, from, pattern, to, from.length() + 1);
+        }
+        long bytes = entry.getSize() != null ? entry.getSize() : 0;
+        adjustAncestors(userId, to, bytes, entry.getItemCount() + 1);
+        storageUsageService.add(userId, bytes, fileEntryRepository.countFiles(userId, from, pattern));
+        for (Object[] reference : fileEntryRepository.countContentReferences(userId, from, pattern)) {
+            contentBlobService.addReferences((String) reference[0], (Long) reference[1]);
+        }
+        directoryListingCache.invalidate(userId, to);
+    }
+
+    /**
+     * Приводит индекс пользователя к фактическому состоянию хранилища: добавляет и обновляет
+     * переданные записи, удаляет отсутствующие. Записи, изменённые после начала сверки,
+     * не удаляются — они могли появиться уже после получения листинга. Счётчики занятого места
+     * после сверки пересчитываются по индексу, размеры папок — если индекс изменился.
+     * Файлы-ссылки на дедуплицированное содержимое в листинге папки пользователя отсутствуют,
+     * поэтому они и их родительские папки сохраняются.
+     *
+     * @param userId идентификатор пользователя
+     * @param actual фактические записи по путям (включая неявные папки)
+     * @param startedAt момент получения листинга
+     * @return количество изменённых записей
+     */
+    @Transactional
+    public int replaceAll(Long userId, Map<String, FileEntry> actual, Instant startedAt) {
+        Map<String, FileEntry> existing = new HashMap<>();
+        for (FileEntry entry : fileEntryRepository.findByUserIdOrderByPathAsc(userId)) {
+            existing.put(entry.getPath(), entry);
+        }
+        for (FileEntry entry : List.copyOf(existing.values())) {
+            if (entry.getContentHash() != null && !actual.containsKey(entry.getPath())) {
+                existing.remove(entry.getPath());
+                for (String dir = entry.getParentPath(); !dir.isEmpty(); dir = StoragePaths.parentOf(dir)) {
+                    existing.remove(dir);
+                }
+            }
+        }
+        List<FileEntry> changed = new ArrayList<>();
+        for (FileEntry fact : actual.values()) {
+            FileEntry current = existing.remove(fact.getPath());
+            if (current == null) {
+                fact.setUserId(userId);
+                changed.add(fact);
+            } else if (differs(current, fact)) {
+                current.setType(fact.getType());
+                current.setSize(fact.getSize());
+                current.setEtag(fact.getEtag());
+                current.setModifiedAt(fact.getModifiedAt());
+                if (fact.getContentType() != null) {
+                    current.setContentType(fact.getContentType());
+                }
+                changed.add(current);
+            }
+        }
+        List<FileEntry> stale = existing.values().stream()
+                .filter(e -> e.getModifiedAt() == null || e.getModifiedAt().isBefore(startedAt))
+                .toList();
+        fileEntryRepository.saveAll(changed);
+        fileEntryRepository.deleteAllInBatch(stale);
+        fileEntryRepository.flush();
+        if (!changed.isEmpty() || !stale.isEmpty()) {
+            fileEntryRepository.recalculateDirectories(userId);
+            directoryListingCache.invalidateAll(userId);
+        }
+        storageUsageService.recalculate(userId);
+        return changed.size() + stale.size();
+    }
+
+    /**
+     * Размер папки вычисляется по содержимому, поэтому у папок сравнивается только тип.
+     */
+    private static boolean differs(FileEntry current, FileEntry fact) {
+        if (current.getType() != fact.getType()) {
+            return true;
+        }
+        return (fact.getType() == ResourceType.FILE && !Objects.equals(current.getSize(), fact.getSize()))
+                || !Objects.equals(current.getEtag(), fact.getEtag());
+    }
+
+    /**
+     * Создаёт записи для всех родительских папок пути, которых ещё нет в индексе.
+     */
+    private void ensureParents(Long userId, String path, Instant modifiedAt) {
+        String parent = StoragePaths.parentOf(path);
+        Deque<String> missing = new ArrayDeque<>();
+        while (!parent.isEmpty() && !fileEntryRepository.existsByUserIdAndPath(userId, parent)) {
+            missing.push(parent);
+            parent = StoragePaths.parentOf(parent);
+        }
+        for (String dir : missing) {
+            insertDirectory(userId, dir, modifiedAt);
+        }
+    }
+
+    /**
+     * Добавляет папку, если её ещё нет, и учитывает её в количестве потомков у предков.
+     */
+    private void insertDirectory(Long userId, String dir, Instant modifiedAt) {
+        if (fileEntryRepository.insertDirectoryIfAbsent(userId, dir, StoragePaths.parentOf(dir),
+                StoragePaths.nameOf(dir), modifiedAt) > 0) {
+            adjustAncestors(userId, dir, 0, 1);
+        }
+    }
+
+    /**
+     * Переносит изменение размера и количества потомков на все папки-предки пути (кроме корня).
+     */
+    private void adjustAncestors(Long userId, String path, long bytes, long items) {
+        if (bytes == 0 && items == 0) {
+            return;
+        }
+        List<String> ancestors = new ArrayList<>();
+        for (String dir = StoragePaths.parentOf(path); !dir.isEmpty(); dir = StoragePaths.parentOf(dir)) {
+            ancestors.add(dir);
+        }
+        if (!ancestors.isEmpty()) {
+            fileEntryRepository.adjustDirectories(userId, ancestors, bytes, items);
+        }
+    }
+}
@@ -1,48 +1,145 @@
 package com.baykin.cloud_storage.skydrive.service;
 
+import com.baykin.cloud_storage.skydrive.dto.DeleteResultDto;
+import com.baykin.cloud_storage.skydrive.dto.DirectoryPageDto;
 import com.baykin.cloud_storage.skydrive.dto.FileResourceDto;
+import com.baykin.cloud_storage.skydrive.dto.ObjectFailureDto;
 import com.baykin.cloud_storage.skydrive.dto.ResourceType;
+import com.baykin.cloud_storage.skydrive.dto.StorageJobDto;
+import com.baykin.cloud_storage.skydrive.dto.UploadPartDto;
+import com.baykin.cloud_storage.skydrive.dto.UploadResultDto;
+import com.baykin.cloud_storage.skydrive.dto.UploadSessionDto;
 import com.baykin.cloud_storage.skydrive.exception.AccessDeniedException;
 import com.baykin.cloud_storage.skydrive.exception.InvalidPathException;
+import com.baykin.cloud_storage.skydrive.exception.QuotaExceededException;
 import com.baykin.cloud_storage.skydrive.exception.ResourceAlreadyExistsException;
 import com.baykin.cloud_storage.skydrive.exception.ResourceNotFoundException;
-import io.minio.*;
-import io.minio.errors.ErrorResponseException;
-import io.minio.messages.Item;
+import com.baykin.cloud_storage.skydrive.exception.InvalidUploadException;
+import com.baykin.cloud_storage.skydrive.model.DirectUpload;
+import com.baykin.cloud_storage.skydrive.model.FileEntry;
+import com.baykin.cloud_storage.skydrive.model.StorageJob;
+import com.baykin.cloud_storage.skydrive.model.StorageJobPhase;
+import com.baykin.cloud_storage.skydrive.model.StorageJobStatus;
+import com.baykin.cloud_storage.skydrive.model.StorageJobType;
+import com.baykin.cloud_storage.skydrive.repository.DirectUploadRepository;
+import com.baykin.cloud_storage.skydrive.storage.ObjectNotFoundException;
+import com.baykin.cloud_storage.skydrive.storage.StorageBackend;
 import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Service
 public class FileStorageService {
 
-    private final MinioClient minioClient;
+    private static final Logger log = LoggerFactory.getLogger(FileStorageService.class);
+
+    /**
+     * Префикс временных объектов прямых загрузок; вне корневых папок пользователей, поэтому
+     * неподтверждённые загрузки не попадают в индекс при сверке.
+     */
+    private static final String DIRECT_UPLOAD_PREFIX = "direct-uploads/";
+
+    private final StorageBackend storageBackend;
     private final AuthService authService;
+    private final FolderZipArchiver folderZipArchiver;
+    private final FileIndexService fileIndexService;
+    private final BatchObjectRemover batchObjectRemover;
+    private final StorageJobService storageJobService;
+    private final FolderMoveEngine folderMoveEngine;
+    private final UploadSessionService uploadSessionService;
+    private final UploadBatchExecutor uploadBatchExecutor;
+    private final DirectoryListingCache directoryListingCache;
+    private final StorageUsageService storageUsageService;
+    private final ContentBlobService contentBlobService;
+    private final StorageMetrics storageMetrics;
+    private final TransactionTemplate transactionTemplate;
+    private final DirectUploadRepository directUploadRepository;
+
+    @Value("${storage.listing.max-page-size:1000}")
+    private int maxPageSize;
+
+    @Value("${storage.search.max-stream-results:100000}")
+    private int maxStreamSearchResults;
+
+    @Value("${storage.search.max-results:200}")
+    private int maxSearchResults;
 
-    @Value("${minio.bucket-name}")
-    private String bucket;
+    @Value("${storage.delete.async-threshold:1000}")
+    private long asyncDeleteThreshold;
 
-    public FileStorageService(MinioClient minioClient, AuthService authService) {
-        this.minioClient = minioClient;
+    @Value("${storage.move.async-threshold:1000}")
+    private long asyncMoveThreshold;
+
+    @Value("${storage.move.recovery:resume}")
+    private String moveRecovery;
+
+    @Value("${storage.copy.async-threshold:1000}")
+    private long asyncCopyThreshold;
+
+    @Value("${storage.dedup.enabled:false}")
+    private boolean dedupEnabled;
+
+    @Value("${storage.presign.upload-ttl:5m}")
+    private Duration directUploadTtl;
+
+    public FileStorageService(StorageBackend storageBackend,
+                              AuthService authService,
+                              FolderZipArchiver folderZipArchiver,
+                              FileIndexService fileIndexService,
+                              BatchObjectRemover batchObjectRemover,
+                              StorageJobService storageJobService,
+                              FolderMoveEngine folderMoveEngine,
+                              UploadSessionService uploadSessionService,
+                              UploadBatchExecutor uploadBatchExecutor,
+                              DirectoryListingCache directoryListingCache,
+                              StorageUsageService storageUsageService,
+                              ContentBlobService contentBlobService,
+                              StorageMetrics storageMetrics,
+                              TransactionTemplate transactionTemplate,
+                              DirectUploadRepository directUploadRepository) {
+        this.storageBackend = storageBackend;
         this.authService = authService;
+        this.folderZipArchiver = folderZipArchiver;
+        this.fileIndexService = fileIndexService;
+        this.batchObjectRemover = batchObjectRemover;
+        this.storageJobService = storageJobService;
+        this.folderMoveEngine = folderMoveEngine;
+        this.uploadSessionService = uploadSessionService;
+        this.uploadBatchExecutor = uploadBatchExecutor;
+        this.directoryListingCache = directoryListingCache;
+        this.storageUsageService = storageUsageService;
+        this.contentBlobService = contentBlobService;
+        this.storageMetrics = storageMetrics;
+        this.transactionTemplate = transactionTemplate;
+        this.directUploadRepository = directUploadRepository;
     }
 
     /**
-     * Инициализация сервиса: проверка существования бакета и его создание при необходимости.
+     * Инициализация сервиса: подготовка хранилища (создание бакета или корневого каталога).
      */
     @PostConstruct
     public void init() throws Exception {
-        boolean found = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucket).build());
-        if (!found) {
-            minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucket).build());
-        }
+        storageBackend.initialize();
     }
 
     /**
@@ -69,7 +166,10 @@ public class FileStorageService {
     }
 
     /**
-     * Загружает файл в облачное хранилище пользователя.
+     * Загружает файл в облачное хранилище пользователя. При {@code storage.dedup.enabled} содержимое
+     * сохраняется через {@link ContentBlobService}: повторно загруженный файл не хранится второй раз,
+     * а становится ещё одной ссылкой на уже сохранённое содержимое. Так же сохраняются файлы,
+     * загруженные потоком, по частям и по предподписанной ссылке.
      *
      * @param userId идентификатор пользователя
      * @param relativePath относительный путь к папке
@@ -78,37 +178,20 @@ public class FileStorageService {
      * @throws AccessDeniedException если путь не принадлежит пользователю
      * @throws InvalidPathException если путь некорректен
      * @throws ResourceAlreadyExistsException если файл уже существует
-     * @throws Exception при ошибках MinIO или ввода-вывода
+     * @throws QuotaExceededException если файл не помещается в квоту пользователя
+     * @throws Exception при ошибках хранилища или ввода-вывода
      */
     public FileResourceDto uploadFile(Long userId, String relativePath, MultipartFile file) throws Exception {
-        checkUserAuthorization(relativePath);
-        String userRoot = getUserRoot(userId);
-        String dir = (relativePath == null || relativePath.isBlank()) ? "" : (relativePath.endsWith("/") ? relativePath : relativePath + "/");
-        String objectName = userRoot + dir + file.getOriginalFilename();
-        if (!objectName.startsWith(userRoot)) {
-            throw new AccessDeniedException("Доступ запрещён: некорректный путь");
-        }
-        try {
-            minioClient.statObject(StatObjectArgs.builder()
-                    .bucket(bucket)
-                    .object(objectName)
-                    .build());
-            throw new ResourceAlreadyExistsException("Файл с таким именем уже существует");
-        } catch (ErrorResponseException e) {
-            if (!e.errorResponse().code().equals("NoSuchKey") &&
-                    !e.errorResponse().code().equals("NotFound")) {
-                throw e;
+        String dir = resolveUploadDirectory(userId, relativePath, file.getOriginalFilename());
+        String filePath = dir + file.getOriginalFilename();
+        try (StorageUsageService.Reservation reservation = storageUsageService.reserve(userId, file.getSize())) {
+            StoredFile stored;
+            try (InputStream is = file.getInputStream()) {
+                stored = write(userId, filePath, is, file.getSize(), file.getContentType());
             }
+            record(userId, filePath, stored, file.getContentType(), Instant.now());
         }
-
-        try (InputStream is = file.getInputStream()) {
-            minioClient.putObject(PutObjectArgs.builder()
-                    .bucket(bucket)
-                    .object(objectName)
-                    .stream(is, file.getSize(), -1)
-                    .contentType(file.getContentType())
-                    .build());
-        }
+        storageMetrics.recordTransfer(StorageMetrics.UPLOAD, file.getSize());
         return new FileResourceDto(
                 dir,
                 file.getOriginalFilename(),
@@ -118,120 +201,759 @@ public class FileStorageService {
     }
 
     /**
-     * Получает информацию о ресурсе (файл или папка) по относительному пути.
+     * Загружает несколько файлов параллельно через {@link UploadBatchExecutor}.
+     * Ошибка одного файла не прерывает загрузку остальных: для пакета из нескольких файлов всегда
+     * возвращается отчёт по каждому, даже если не загрузился ни один. Ошибка пробрасывается только
+     * при загрузке одного файла — так одиночная загрузка ведёт себя как раньше.
      *
      * @param userId идентификатор пользователя
-     * @param relativePath относительный путь к ресурсу
-     * @return DTO с информацией о ресурсе
-     * @throws ResourceNotFoundException если ресурс не найден
-     * @throws Exception при ошибках MinIO
+     * @param relativePath относительный путь к папке
+     * @param files файлы для загрузки
+     * @return результаты по каждому файлу в исходном порядке
+     * @throws Exception ошибка загрузки, если загружался единственный файл
      */
-    public FileResourceDto getResourceInfo(Long userId, String relativePath) throws Exception {
-        checkUserAuthorization(relativePath);
-        String userRoot = getUserRoot(userId);
-        String fullPath = relativePath.startsWith(userRoot) ? relativePath : userRoot + relativePath;
+    public List<UploadResultDto> uploadFiles(Long userId, String relativePath, List<MultipartFile> files) throws Exception {
+        Set<String> names = new HashSet<>();
+        List<Callable<FileResourceDto>> tasks = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            boolean duplicate = !names.add(String.valueOf(file.getOriginalFilename()));
+            tasks.add(() -> {
+                if (duplicate) {
+                    throw new ResourceAlreadyExistsException("Файл с таким именем уже есть в загрузке");
+                }
+                return uploadFile(userId, relativePath, file);
+            });
+        }
+        List<Future<FileResourceDto>> futures = uploadBatchExecutor.submitAll(tasks);
+        List<UploadResultDto> results = new ArrayList<>(files.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                FileResourceDto uploaded = futures.get(i).get();
+                results.add(new UploadResultDto(uploaded.getPath(), uploaded.getName(), uploaded.getSize(),
+                        uploaded.getType(), HttpStatus.CREATED.value(), null));
+            } catch (ExecutionException e) {
+                Exception cause = e.getCause() instanceof Exception c ? c : e;
+                if (files.size() == 1) {
+                    throw cause;
+                }
+                results.add(new UploadResultDto(relativePath, files.get(i).getOriginalFilename(), null,
+                        ResourceType.FILE, uploadFailureStatus(cause).value(), cause.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    private static HttpStatus uploadFailureStatus(Exception e) {
+        if (e instanceof ResourceAlreadyExistsException) {
+            return HttpStatus.CONFLICT;
+        }
+        if (e instanceof InvalidPathException) {
+            return HttpStatus.BAD_REQUEST;
+        }
+        if (e instanceof AccessDeniedException) {
+            return HttpStatus.FORBIDDEN;
+        }
+        if (e instanceof QuotaExceededException) {
+            return HttpStatus.INSUFFICIENT_STORAGE;
+        }
+        return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
+    /**
+     * Загружает файл из потока, не сохраняя его целиком ни на диск, ни в память:
+     * данные частями передаются в хранилище. Размер заранее неизвестен,
+     * поэтому загрузка прерывается, как только прочитанные данные перестают помещаться в квоту,
+     * а место резервируется по фактическому размеру перед добавлением в индекс.
+     *
+     * @param userId идентификатор пользователя
+     * @param relativePath относительный путь к папке
+     * @param filename имя файла
+     * @param contentType MIME-тип
+     * @param content содержимое файла (не закрывается)
+     * @return DTO с информацией о загруженном файле
+     * @throws AccessDeniedException если путь не принадлежит пользователю
+     * @throws InvalidPathException если путь некорректен
+     * @throws ResourceAlreadyExistsException если файл уже существует
+     * @throws QuotaExceededException если файл не помещается в квоту пользователя
+     * @throws Exception при ошибках хранилища или ввода-вывода
+     */
+    public FileResourceDto uploadFile(Long userId, String relativePath, String filename, String contentType,
+                                      InputStream content) throws Exception {
+        String dir = resolveUploadDirectory(userId, relativePath, filename);
+        String filePath = dir + filename;
+        storageUsageService.checkQuota(userId, 0);
+        InputStream limited = new QuotaLimitedInputStream(content, storageUsageService.getRemainingBytes(userId));
+        StoredFile stored = write(userId, filePath, limited, -1, contentType);
+        StorageUsageService.Reservation reservation;
         try {
-            StatObjectResponse stat = minioClient.statObject(
-                    StatObjectArgs.builder()
-                            .bucket(bucket)
-                            .object(fullPath)
-                            .build()
-            );
-            String normalizedPath = relativePath.startsWith(userRoot) ?
-                    relativePath.substring(userRoot.length()) : relativePath;
-            int lastSlash = normalizedPath.lastIndexOf("/");
-            String path = lastSlash >= 0 ? normalizedPath.substring(0, lastSlash + 1) : "";
-            String name = lastSlash >= 0 ? normalizedPath.substring(lastSlash + 1) : normalizedPath;
-
-            return new FileResourceDto(path, name, stat.size(), ResourceType.FILE);
-        } catch (ErrorResponseException e) {
-            if (!e.errorResponse().code().equals("NoSuchKey") &&
-                    !e.errorResponse().code().equals("NotFound")) {
-                throw e;
+            reservation = storageUsageService.reserve(userId, stored.size());
+        } catch (QuotaExceededException e) {
+            discard(userId, filePath, stored);
+            throw e;
+        }
+        try (reservation) {
+            record(userId, filePath, stored, contentType, Instant.now());
+        }
+        storageMetrics.recordTransfer(StorageMetrics.UPLOAD, stored.size());
+        return new FileResourceDto(dir, filename, stored.size(), ResourceType.FILE);
+    }
+
+    /**
+     * Начинает загрузку файла по частям.
+     *
+     * @param userId идентификатор пользователя
+     * @param relativePath относительный путь к папке
+     * @param filename имя файла
+     * @param contentType MIME-тип
+     * @return DTO сессии загрузки
+     * @throws ResourceAlreadyExistsException если файл уже существует
+     * @throws QuotaExceededException если квота пользователя уже исчерпана
+     * @throws Exception при ошибках хранилища
+     */
+    public UploadSessionDto startChunkedUpload(Long userId, String relativePath, String filename,
+                                               String contentType) throws Exception {
+        String filePath = resolveUploadDirectory(userId, relativePath, filename) + filename;
+        storageUsageService.checkQuota(userId, 0);
+        return uploadSessionService.create(userId, filePath, getUserRoot(userId) + filePath,
+                contentType != null ? contentType : "application/octet-stream");
+    }
+
+    /**
+     * Возвращает состояние загрузки по частям.
+     *
+     * @param userId идентификатор пользователя
+     * @param sessionId идентификатор сессии
+     * @return DTO сессии с полученными частями
+     */
+    public UploadSessionDto getChunkedUpload(Long userId, UUID sessionId) {
+        return uploadSessionService.get(userId, sessionId);
+    }
+
+    /**
+     * Принимает часть файла.
+     *
+     * @param userId идентификатор пользователя
+     * @param sessionId идентификатор сессии
+     * @param partNumber номер части, начиная с 1
+     * @param content содержимое части
+     * @param size размер части из Content-Length или {@code -1}, если он не передан
+     * @return DTO принятой части
+     * @throws QuotaExceededException если переданные части не помещаются в квоту пользователя
+     * @throws Exception при ошибках хранилища или ввода-вывода
+     */
+    public UploadPartDto uploadChunk(Long userId, UUID sessionId, int partNumber, InputStream content,
+                                     long size) throws Exception {
+        UploadPartDto part = uploadSessionService.uploadPart(userId, sessionId, partNumber, content, size);
+        storageMetrics.recordTransfer(StorageMetrics.UPLOAD, part.getSize());
+        return part;
+    }
+
+    /**
+     * Завершает загрузку по частям и добавляет файл в индекс.
+     *
+     * @param userId идентификатор пользователя
+     * @param sessionId идентификатор сессии
+     * @return DTO с информацией о загруженном файле
+     * @throws ResourceAlreadyExistsException если файл с таким именем появился во время загрузки
+     * @throws QuotaExceededException если собранный файл не помещается в квоту; сессия при этом сохраняется
+     * @throws Exception при ошибках хранилища
+     */
+    public FileResourceDto completeChunkedUpload(Long userId, UUID sessionId) throws Exception {
+        UploadSessionDto pending = uploadSessionService.get(userId, sessionId);
+        if (fileIndexService.exists(userId, pending.getPath())) {
+            throw new ResourceAlreadyExistsException("Файл с таким именем уже существует");
+        }
+        long size = pending.getParts().stream().mapToLong(UploadPartDto::getSize).sum();
+        UploadSessionService.Completed completed;
+        try (StorageUsageService.Reservation reservation = storageUsageService.reserve(userId, size)) {
+            completed = uploadSessionService.complete(userId, sessionId);
+            String path = completed.session().getPath();
+            StoredFile stored = adopt(completed.session().getObjectName(), completed.size(), completed.etag());
+            record(userId, path, stored, completed.session().getContentType(), Instant.now());
+        }
+        String filePath = completed.session().getPath();
+        return new FileResourceDto(StoragePaths.parentOf(filePath), StoragePaths.nameOf(filePath),
+                completed.size(), ResourceType.FILE);
+    }
+
+    /**
+     * Отменяет загрузку по частям.
+     *
+     * @param userId идентификатор пользователя
+     * @param sessionId идентификатор сессии
+     * @throws Exception при ошибках хранилища
+     */
+    public void abortChunkedUpload(Long userId, UUID sessionId) throws Exception {
+        uploadSessionService.abort(userId, sessionId);
+    }
+
+    /**
+     * Готовит прямую загрузку файла клиентом в MinIO по предподписанной форме: проверяет путь,
+     * отсутствие файла и квоту и регистрирует одноразовый временный объект, в который клиент
+     * загрузит данные. Форма действует {@code storage.presign.upload-ttl}.
+     *
+     * @param userId идентификатор пользователя
+     * @param relativePath относительный путь к папке
+     * @param filename имя файла
+     * @param size объявленный клиентом размер файла — верхняя граница размера в форме
+     * @return ожидаемая загрузка
+     * @throws InvalidUploadException если размер отрицательный
+     * @throws ResourceAlreadyExistsException если файл уже существует
+     * @throws QuotaExceededException если файл не помещается в квоту пользователя
+     */
+    public DirectUpload prepareDirectUpload(Long userId, String relativePath, String filename, long size) {
+        if (size < 0) {
+            throw new InvalidUploadException("Размер файла не может быть отрицательным");
+        }
+        String filePath = resolveUploadDirectory(userId, relativePath, filename) + filename;
+        storageUsageService.checkQuota(userId, size);
+        Instant now = Instant.now();
+        return directUploadRepository.save(DirectUpload.builder()
+                .userId(userId)
+                .path(filePath)
+                .objectName(DIRECT_UPLOAD_PREFIX + UUID.randomUUID())
+                .maxSize(size)
+                .createdAt(now)
+                .expiresAt(now.plus(directUploadTtl))
+                .build());
+    }
+
+    /**
+     * Регистрирует файл, загруженный клиентом напрямую в MinIO: временный объект переносится по пути файла
+     * (или под дедупликацию), а место резервируется по фактическому размеру. Загрузку можно подтвердить
+     * только один раз; не поместившийся в квоту файл удаляется.
+     *
+     * @param userId идентификатор пользователя
+     * @param uploadId идентификатор загрузки, выданный вместе с формой
+     * @return DTO с информацией о загруженном файле
+     * @throws ResourceNotFoundException если загрузка не найдена, уже подтверждена или объект так и не был загружен
+     * @throws ResourceAlreadyExistsException если файл с таким именем появился во время загрузки
+     * @throws QuotaExceededException если файл не помещается в квоту пользователя
+     * @throws Exception при ошибках хранилища
+     */
+    public FileResourceDto completeDirectUpload(Long userId, UUID uploadId) throws Exception {
+        DirectUpload upload = directUploadRepository.findByIdAndUserId(uploadId, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Загрузка не найдена: " + uploadId));
+        String path = upload.getPath();
+        String staged = upload.getObjectName();
+        StorageBackend.ObjectInfo stat = storageBackend.stat(staged)
+                .orElseThrow(() -> new ResourceNotFoundException("Файл не загружен: " + path));
+        if (directUploadRepository.claim(uploadId, userId) == 0) {
+            throw new ResourceNotFoundException("Загрузка не найдена: " + uploadId);
+        }
+        try {
+            if (fileIndexService.exists(userId, path)) {
+                throw new ResourceAlreadyExistsException("Файл с таким именем уже существует");
             }
+            try (StorageUsageService.Reservation reservation = storageUsageService.reserve(userId, stat.size())) {
+                StoredFile stored;
+                if (dedupEnabled) {
+                    stored = adopt(staged, stat.size(), stat.etag());
+                } else {
+                    String objectName = getUserRoot(userId) + path;
+                    storageBackend.copy(staged, objectName, stat.size());
+                    String etag = storageBackend.stat(objectName).map(StorageBackend.ObjectInfo::etag).orElse(stat.etag());
+                    stored = new StoredFile(stat.size(), etag, null);
+                }
+                record(userId, path, stored, stat.contentType(), modifiedAt(stat));
+            }
+        } finally {
+            storageBackend.delete(staged);
         }
-        String dirPrefix = fullPath.endsWith("/") ? fullPath : fullPath + "/";
-        Iterable<Result<Item>> results = minioClient.listObjects(
-                ListObjectsArgs.builder()
-                        .bucket(bucket)
-                        .prefix(dirPrefix)
-                        .recursive(false)
-                        .build()
-        );
-        boolean hasObjects = results.iterator().hasNext();
-        if (hasObjects) {
-            String normalizedPath = relativePath.startsWith(userRoot) ?
-                    relativePath.substring(userRoot.length()) : relativePath;
-            if (normalizedPath.endsWith("/")) {
-                normalizedPath = normalizedPath.substring(0, normalizedPath.length() - 1);
+        return new FileResourceDto(StoragePaths.parentOf(path), StoragePaths.nameOf(path), stat.size(), ResourceType.FILE);
+    }
+
+    /**
+     * Удаляет неподтверждённые прямые загрузки: истёкшие записи вместе с временными объектами,
+     * а также временные объекты без записи — например, загруженные по форме повторно после подтверждения.
+     * Форма к этому моменту уже недействительна, поэтому новых объектов под этими ключами не появится.
+     */
+    @Scheduled(fixedDelayString = "${storage.upload.sweep-interval:PT15M}")
+    public void removeUnconfirmedDirectUploads() {
+        Instant now = Instant.now();
+        for (DirectUpload upload : directUploadRepository.findByExpiresAtBefore(now)) {
+            try {
+                storageBackend.delete(upload.getObjectName());
+                directUploadRepository.delete(upload);
+            } catch (Exception e) {
+                log.warn("Failed to remove unconfirmed direct upload {}", upload.getId(), e);
             }
-            int lastSlash = normalizedPath.lastIndexOf("/");
-            String path = lastSlash >= 0 ? normalizedPath.substring(0, lastSlash + 1) : "";
-            String name = lastSlash >= 0 ? normalizedPath.substring(lastSlash + 1) : normalizedPath;
+        }
+        try {
+            Iterator<StorageBackend.ObjectInfo> staged = storageBackend.list(DIRECT_UPLOAD_PREFIX);
+            while (staged.hasNext()) {
+                StorageBackend.ObjectInfo object = staged.next();
+                boolean expired = object.lastModified() == null
+                        || object.lastModified().isBefore(now.minus(directUploadTtl));
+                if (expired && !directUploadRepository.existsByObjectName(object.key())) {
+                    storageBackend.delete(object.key());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to remove orphaned direct uploads", e);
+        }
+    }
+
+    /**
+     * Возвращает ключ объекта хранилища, из которого читается файл, в том числе для дедуплицированных файлов.
+     *
+     * @param userId идентификатор пользователя
+     * @param relativePath относительный путь к файлу
+     * @return ключ объекта в хранилище
+     * @throws InvalidPathException если путь некорректен или указывает на папку
+     * @throws ResourceNotFoundException если файл не найден
+     */
+    public String resolveFileObject(Long userId, String relativePath) {
+        checkDownloadPath(relativePath);
+        FileEntry entry = fileIndexService.find(userId, relativePath)
+                .filter(e -> e.getType() == ResourceType.FILE)
+                .orElseThrow(() -> new ResourceNotFoundException("Файл не найден: " + relativePath));
+        return entry.getContentHash() != null
+                ? ContentBlobService.blobKey(entry.getContentHash())
+                : getUserRoot(userId) + relativePath;
+    }
+
+    /**
+     * Записанный файл, ещё не добавленный в индекс.
+     *
+     * @param size размер в байтах
+     * @param etag ETag объекта
+     * @param hash SHA-256 содержимого, если файл сохранён через дедупликацию, иначе {@code null}
+     */
+    private record StoredFile(long size, String etag, String hash) {
+    }
+
+    /**
+     * Записывает файл под его ключом или, если включена дедупликация, через {@link ContentBlobService}.
+     *
+     * @param size размер в байтах или {@code -1}, если он заранее неизвестен
+     */
+    private StoredFile write(Long userId, String filePath, InputStream content, long size,
+                             String contentType) throws Exception {
+        if (dedupEnabled) {
+            ContentBlobService.Stored stored = contentBlobService.store(content, size, contentType);
+            return new StoredFile(stored.size(), stored.etag(), stored.hash());
+        }
+        String objectName = getUserRoot(userId) + filePath;
+        StorageBackend.Written written = size >= 0
+                ? storageBackend.put(objectName, content, size, contentType)
+                : storageBackend.putStream(objectName, content, contentType);
+        return new StoredFile(written.size(), written.etag(), null);
+    }
+
+    /**
+     * Переводит под дедупликацию объект, уже записанный в хранилище (по частям или напрямую клиентом),
+     * если она включена.
+     */
+    private StoredFile adopt(String objectName, long size, String etag) throws Exception {
+        if (!dedupEnabled) {
+            return new StoredFile(size, etag, null);
+        }
+        ContentBlobService.Stored stored = contentBlobService.adopt(objectName, size);
+        return new StoredFile(stored.size(), stored.etag(), stored.hash());
+    }
 
-            return new FileResourceDto(path, name, null, ResourceType.DIRECTORY);
+    /**
+     * Добавляет записанный файл в индекс; при ошибке снимает ссылку на дедуплицированное содержимое.
+     */
+    private void record(Long userId, String filePath, StoredFile stored, String contentType, Instant modifiedAt) {
+        try {
+            fileIndexService.recordFile(userId, filePath, stored.size(), contentType, stored.etag(), modifiedAt,
+                    stored.hash());
+        } catch (RuntimeException e) {
+            if (stored.hash() != null) {
+                contentBlobService.release(stored.hash(), 1);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Удаляет записанный файл, который не попал в индекс.
+     */
+    private void discard(Long userId, String filePath, StoredFile stored) throws Exception {
+        if (stored.hash() != null) {
+            contentBlobService.release(stored.hash(), 1);
         } else {
-            throw new ResourceNotFoundException("Ресурс не найден: " + relativePath);
+            storageBackend.delete(getUserRoot(userId) + filePath);
         }
     }
 
+    /**
+     * Проверяет путь загрузки и отсутствие файла с таким же именем.
+     *
+     * @return папка загрузки относительно корня пользователя ("" или с завершающим "/")
+     */
+    private String resolveUploadDirectory(Long userId, String relativePath, String filename) {
+        checkUserAuthorization(relativePath);
+        checkUserAuthorization(filename);
+        if (filename == null || filename.isBlank()) {
+            throw new InvalidPathException("Недопустимое имя файла");
+        }
+        String userRoot = getUserRoot(userId);
+        String dir = (relativePath == null || relativePath.isBlank()) ? "" : (relativePath.endsWith("/") ? relativePath : relativePath + "/");
+        String objectName = userRoot + dir + filename;
+        if (!objectName.startsWith(userRoot)) {
+            throw new AccessDeniedException("Доступ запрещён: некорректный путь");
+        }
+        if (fileIndexService.exists(userId, dir + filename)) {
+            throw new ResourceAlreadyExistsException("Файл с таким именем уже существует");
+        }
+        return dir;
+    }
 
     /**
-     * Удаляет ресурс (файл или папку) пользователя.
+     * Получает информацию о ресурсе (файл или папка) по относительному пути.
+     * Данные берутся из индекса метаданных без обращения к хранилищу; для папок возвращаются
+     * суммарный размер и количество потомков.
      *
      * @param userId идентификатор пользователя
      * @param relativePath относительный путь к ресурсу
+     * @return DTO с информацией о ресурсе
      * @throws ResourceNotFoundException если ресурс не найден
-     * @throws Exception при ошибках MinIO
      */
-    public void deleteResource(Long userId, String relativePath) throws Exception {
+    public FileResourceDto getResourceInfo(Long userId, String relativePath) {
         checkUserAuthorization(relativePath);
         String userRoot = getUserRoot(userId);
+        String normalizedPath = relativePath.startsWith(userRoot) ?
+                relativePath.substring(userRoot.length()) : relativePath;
+        if (normalizedPath.isEmpty() || normalizedPath.equals("/")) {
+            return new FileResourceDto("", "", storageUsageService.getUsage(userId).getUsedBytes(),
+                    ResourceType.DIRECTORY, fileIndexService.countDescendants(userId, ""));
+        }
+        Optional<FileEntry> entry = normalizedPath.endsWith("/")
+                ? Optional.empty()
+                : fileIndexService.find(userId, normalizedPath);
+        if (entry.isEmpty()) {
+            entry = fileIndexService.find(userId, StoragePaths.toDirectory(normalizedPath));
+        }
+        return entry.map(FileIndexService::toDto)
+                .orElseThrow(() -> new ResourceNotFoundException("Ресурс не найден: " + relativePath));
+    }
+
+    /**
+     * Удаляет ресурс (файл или папку) пользователя. Объекты папки удаляются пакетами
+     * через multi-object delete API, ошибки возвращаются по каждому ключу.
+     *
+     * @param userId идентификатор пользователя
+     * @param relativePath относительный путь к ресурсу
+     * @return количество удалённых объектов и ошибки по отдельным ключам
+     * @throws InvalidPathException если путь некорректен или указывает на корневую папку
+     * @throws Exception при ошибках хранилища
+     */
+    public DeleteResultDto deleteResource(Long userId, String relativePath) throws Exception {
+        return deleteResource(userId, relativePath, JobProgress.NONE);
+    }
+
+    /**
+     * Запускает удаление в фоне, если папка содержит не меньше {@code storage.delete.async-threshold} объектов.
+     *
+     * @param userId идентификатор пользователя
+     * @param relativePath относительный путь к ресурсу
+     * @return созданное фоновое задание или пустое значение, если удаление можно выполнить сразу
+     * @throws InvalidPathException если путь некорректен или указывает на корневую папку
+     */
+    public Optional<StorageJobDto> startBackgroundDelete(Long userId, String relativePath) {
+        checkUserAuthorization(relativePath);
+        checkNotRoot(relativePath);
+        long count = fileIndexService.countDescendants(userId, StoragePaths.toDirectory(relativePath));
+        if (count < asyncDeleteThreshold) {
+            return Optional.empty();
+        }
+        return Optional.of(storageJobService.start(userId, StorageJobType.DELETE, relativePath, null, count,
+                (jobId, progress) -> deleteResource(userId, relativePath, progress)));
+    }
+
+    private DeleteResultDto deleteResource(Long userId, String relativePath, JobProgress progress) throws Exception {
+        checkUserAuthorization(relativePath);
+        checkNotRoot(relativePath);
+        String userRoot = getUserRoot(userId);
 
         String fileKey = userRoot + relativePath;
+        String dirPrefix = userRoot + StoragePaths.toDirectory(relativePath);
+        Stream<String> keys = StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(listItems(dirPrefix), Spliterator.ORDERED), false)
+                .map(StorageBackend.ObjectInfo::key);
+        if (!relativePath.endsWith("/")) {
+            keys = Stream.concat(Stream.of(fileKey), keys);
+        }
+        DeleteResultDto result = batchObjectRemover.removeAll(keys.iterator(), userRoot, progress);
+        fileIndexService.remove(userId, relativePath);
+        for (ObjectFailureDto failure : result.getFailures()) {
+            restoreIndexEntry(userId, failure.getPath());
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает в индекс объект, который не удалось удалить из хранилища.
+     */
+    private void restoreIndexEntry(Long userId, String path) {
+        if (path == null) {
+            return;
+        }
+        if (path.endsWith("/")) {
+            fileIndexService.recordDirectory(userId, path);
+            return;
+        }
         try {
-            minioClient.removeObject(
-                    RemoveObjectArgs.builder()
-                            .bucket(bucket)
-                            .object(fileKey)
-                            .build()
-            );
-        } catch (ErrorResponseException e) {
-            if (!"NoSuchKey".equals(e.errorResponse().code())) {
-                throw e;
-            }
+            storageBackend.stat(getUserRoot(userId) + path).ifPresent(stat ->
+                    fileIndexService.recordFile(userId, path, stat.size(), stat.contentType(), stat.etag(),
+                            modifiedAt(stat)));
+        } catch (Exception e) {
+            // объект всё-таки удалён или недоступен — индекс будет исправлен при сверке
         }
-        String dirSuffix = relativePath.endsWith("/") ? relativePath : relativePath + "/";
-        String dirPrefix = userRoot + dirSuffix;
-        Iterable<Result<Item>> results = minioClient.listObjects(
-                ListObjectsArgs.builder()
-                        .bucket(bucket)
-                        .prefix(dirPrefix)
-                        .recursive(true)
-                        .build()
-        );
-        for (Result<Item> res : results) {
-            String objName = res.get().objectName();
-            minioClient.removeObject(
-                    RemoveObjectArgs.builder()
-                            .bucket(bucket)
-                            .object(objName)
-                            .build()
-            );
+    }
+
+    private void checkNotRoot(String relativePath) {
+        if (relativePath == null || relativePath.isBlank() || relativePath.equals("/")) {
+            throw new InvalidPathException("Нельзя удалить корневую папку");
         }
     }
 
     /**
      * Перемещает или переименовывает ресурс пользователя.
+     * Папки, содержащие не меньше {@code storage.move.async-threshold} объектов, перемещаются в фоне —
+     * в этом случае используйте {@link #startBackgroundMove}. Перемещение папки всегда записывается
+     * в журнал заданий, чтобы прерванную операцию можно было продолжить.
      *
      * @param userId идентификатор пользователя
      * @param from исходный путь
      * @param to целевой путь
      * @return DTO с информацией о перемещённом ресурсе
      * @throws AccessDeniedException если путь не принадлежит пользователю
-     * @throws Exception при ошибках MinIO
+     * @throws ResourceAlreadyExistsException если целевой ресурс уже существует
+     * @throws Exception при ошибках хранилища
      */
     public FileResourceDto moveResource(Long userId, String from, String to) throws Exception {
+        MovePaths paths = resolveMove(userId, from, to);
+        if (paths.source().endsWith("/")) {
+            long count = fileIndexService.countDescendants(userId, paths.source());
+            storageJobService.execute(userId, StorageJobType.MOVE, paths.source(), paths.target(), count,
+                    (jobId, progress) -> moveDirectory(userId, paths.source(), paths.target(), jobId, null, progress));
+        } else if (isContentReference(userId, paths.source())) {
+            fileIndexService.move(userId, paths.source(), paths.target());
+        } else {
+            String userRoot = getUserRoot(userId);
+            storageBackend.copy(userRoot + paths.source(), userRoot + paths.target(),
+                    sizeOf(userId, paths.source()));
+            storageBackend.delete(userRoot + paths.source());
+            fileIndexService.move(userId, paths.source(), paths.target());
+        }
+        return getResourceInfo(userId, paths.target());
+    }
+
+    /**
+     * Запускает перемещение папки в фоне, если она содержит не меньше {@code storage.move.async-threshold} объектов.
+     *
+     * @param userId идентификатор пользователя
+     * @param from исходный путь
+     * @param to целевой путь
+     * @return созданное фоновое задание или пустое значение, если перемещение можно выполнить сразу
+     * @throws ResourceAlreadyExistsException если целевой ресурс уже существует
+     */
+    public Optional<StorageJobDto> startBackgroundMove(Long userId, String from, String to) {
+        MovePaths paths = resolveMove(userId, from, to);
+        if (!paths.source().endsWith("/")) {
+            return Optional.empty();
+        }
+        long count = fileIndexService.countDescendants(userId, paths.source());
+        if (count < asyncMoveThreshold) {
+            return Optional.empty();
+        }
+        return Optional.of(storageJobService.start(userId, StorageJobType.MOVE, paths.source(), paths.target(), count,
+                (jobId, progress) -> moveDirectory(userId, paths.source(), paths.target(), jobId, null, progress)));
+    }
+
+    /**
+     * Копирует файл или папку средствами хранилища: данные через приложение не проходят.
+     * Папки копируются параллельно через {@link FolderMoveEngine}; папки, содержащие не меньше
+     * {@code storage.copy.async-threshold} объектов, копируются в фоне — в этом случае используйте
+     * {@link #startBackgroundCopy}. Дедуплицированные файлы копируются без обращения к хранилищу.
+     *
+     * @param userId идентификатор пользователя
+     * @param from исходный путь
+     * @param to путь копии
+     * @return DTO с информацией о копии
+     * @throws ResourceNotFoundException если исходный ресурс не найден
+     * @throws ResourceAlreadyExistsException если целевой ресурс уже существует
+     * @throws QuotaExceededException если копия не помещается в квоту пользователя
+     * @throws Exception при ошибках хранилища
+     */
+    public FileResourceDto copyResource(Long userId, String from, String to) throws Exception {
+        MovePaths paths = resolveCopy(userId, from, to);
+        try (StorageUsageService.Reservation reservation =
+                     storageUsageService.reserve(userId, sizeOf(userId, paths.source()))) {
+            if (paths.source().endsWith("/")) {
+                copyDirectory(userId, paths.source(), paths.target(), false, JobProgress.NONE);
+            } else {
+                if (!isContentReference(userId, paths.source())) {
+                    String userRoot = getUserRoot(userId);
+                    storageBackend.copy(userRoot + paths.source(), userRoot + paths.target(),
+                            sizeOf(userId, paths.source()));
+                }
+                fileIndexService.copy(userId, paths.source(), paths.target());
+            }
+        }
+        return getResourceInfo(userId, paths.target());
+    }
+
+    /**
+     * Запускает копирование папки в фоне, если она содержит не меньше {@code storage.copy.async-threshold} объектов.
+     *
+     * @param userId идентификатор пользователя
+     * @param from исходный путь
+     * @param to путь копии
+     * @return созданное фоновое задание или пустое значение, если копирование можно выполнить сразу
+     * @throws ResourceNotFoundException если исходный ресурс не найден
+     * @throws ResourceAlreadyExistsException если целевой ресурс уже существует
+     * @throws QuotaExceededException если копия не помещается в квоту пользователя
+     */
+    public Optional<StorageJobDto> startBackgroundCopy(Long userId, String from, String to) {
+        MovePaths paths = resolveCopy(userId, from, to);
+        if (!paths.source().endsWith("/")) {
+            return Optional.empty();
+        }
+        long count = fileIndexService.countDescendants(userId, paths.source());
+        if (count < asyncCopyThreshold) {
+            return Optional.empty();
+        }
+        StorageUsageService.Reservation reservation = storageUsageService.reserve(userId, sizeOf(userId, paths.source()));
+        try {
+            return Optional.of(storageJobService.start(userId, StorageJobType.COPY, paths.source(), paths.target(),
+                    count, (jobId, progress) -> {
+                        try (reservation) {
+                            copyDirectory(userId, paths.source(), paths.target(), false, progress);
+                        }
+                    }));
+        } catch (RuntimeException e) {
+            reservation.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Копирует папку: параллельно копирует объекты в хранилище, затем одной транзакцией копирует записи индекса.
+     * При ошибке копирования уже сделанные копии удаляются.
+     *
+     * @param resume true при продолжении прерванного задания — уже скопированные объекты пропускаются
+     */
+    private void copyDirectory(Long userId, String source, String target, boolean resume,
+                               JobProgress progress) throws Exception {
+        String userRoot = getUserRoot(userId);
+        try {
+            folderMoveEngine.copyAll(userRoot + source, userRoot + target, resume, progress);
+        } catch (Exception e) {
+            folderMoveEngine.rollback(userRoot + source, userRoot + target, userRoot);
+            throw e;
+        }
+        if (!fileIndexService.exists(userId, target)) {
+            fileIndexService.copy(userId, source, target);
+        }
+    }
+
+    /**
+     * Проверяет пути копирования и наличие источника. Квота дополнительно проверяется заранее,
+     * чтобы не запускать заведомо неудачное копирование; место резервирует вызывающий метод.
+     */
+    private MovePaths resolveCopy(Long userId, String from, String to) {
+        MovePaths paths = resolveMove(userId, from, to);
+        if (paths.source().isEmpty() || paths.target().isEmpty()) {
+            throw new InvalidPathException("Нельзя скопировать корневую папку");
+        }
+        if (paths.source().endsWith("/") != paths.target().endsWith("/")) {
+            throw new InvalidPathException("Папку можно скопировать только в папку, файл — только в файл");
+        }
+        storageUsageService.checkQuota(userId, sizeOf(userId, paths.source()));
+        return paths;
+    }
+
+    /**
+     * Размер файла или суммарный размер папки по индексу.
+     */
+    private long sizeOf(Long userId, String path) {
+        FileEntry entry = fileIndexService.find(userId, path)
+                .orElseThrow(() -> new ResourceNotFoundException("Ресурс не найден: " + path));
+        return entry.getSize() != null ? entry.getSize() : 0;
+    }
+
+    /**
+     * Продолжает или откатывает задания, прерванные остановкой приложения.
+     * Удаление просто повторяется; перемещение на этапе копирования продолжается или откатывается
+     * в зависимости от {@code storage.move.recovery}, на этапе удаления — всегда продолжается;
+     * копирование продолжается с пропуском уже скопированных объектов.
+     * <p>
+     * Кроме запуска, проверка повторяется каждые {@code storage.jobs.recovery-interval}: так задания
+     * упавшего экземпляра подхватывает один из оставшихся, когда истекает аренда владельца.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${storage.jobs.recovery-interval:PT1M}")
+    public void resumeInterruptedJobs() {
+        for (StorageJob job : storageJobService.claimInterrupted()) {
+            Long userId = job.getUserId();
+            String source = job.getSourcePath();
+            String target = job.getTargetPath();
+            switch (job.getType()) {
+                case DELETE -> storageJobService.resume(job,
+                        (jobId, progress) -> deleteResource(userId, source, progress),
+                        StorageJobStatus.COMPLETED);
+                case MOVE -> {
+                    if (job.getPhase() == StorageJobPhase.COPYING && "rollback".equalsIgnoreCase(moveRecovery)) {
+                        storageJobService.resume(job,
+                                (jobId, progress) -> rollbackMove(userId, source, target),
+                                StorageJobStatus.ROLLED_BACK);
+                    } else {
+                        storageJobService.resume(job,
+                                (jobId, progress) -> moveDirectory(userId, source, target, jobId, job.getPhase(), progress),
+                                StorageJobStatus.COMPLETED);
+                    }
+                }
+                case COPY -> storageJobService.resume(job,
+                        (jobId, progress) -> copyDirectory(userId, source, target, true, progress),
+                        StorageJobStatus.COMPLETED);
+            }
+        }
+    }
+
+    /**
+     * Перемещает папку: параллельно копирует объекты, переносит записи индекса и пакетно удаляет исходные объекты.
+     * Этапы сохраняются в журнал задания; при ошибке копирования уже сделанные копии удаляются.
+     * Перенос индекса и переход к этапу удаления фиксируются одной транзакцией: откат после сбоя
+     * никогда не удалит объекты, на которые уже ссылается индекс.
+     *
+     * @param resumeFrom этап, с которого продолжается прерванное задание, или {@code null} для нового перемещения
+     */
+    private void moveDirectory(Long userId, String source, String target, UUID jobId,
+                               StorageJobPhase resumeFrom, JobProgress progress) throws Exception {
+        String userRoot = getUserRoot(userId);
+        if (resumeFrom != StorageJobPhase.DELETING) {
+            storageJobService.updatePhase(jobId, StorageJobPhase.COPYING);
+            try {
+                folderMoveEngine.copyAll(userRoot + source, userRoot + target, resumeFrom != null, progress);
+            } catch (Exception e) {
+                rollbackMove(userId, source, target);
+                throw e;
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                fileIndexService.move(userId, source, target);
+                storageJobService.updatePhase(jobId, StorageJobPhase.DELETING);
+            });
+        }
+        DeleteResultDto removed = folderMoveEngine.removeSources(userRoot + source, userRoot);
+        if (removed.getFailed() > 0) {
+            progress.advance(0, removed.getFailures());
+        }
+    }
+
+    private void rollbackMove(Long userId, String source, String target) throws Exception {
+        String userRoot = getUserRoot(userId);
+        folderMoveEngine.rollback(userRoot + source, userRoot + target, userRoot);
+    }
+
+    /**
+     * Проверяет пути перемещения и приводит их к виду относительно корневой папки пользователя.
+     */
+    private MovePaths resolveMove(Long userId, String from, String to) {
         checkUserAuthorization(from);
         checkUserAuthorization(to);
         String userRoot = getUserRoot(userId);
@@ -242,48 +964,49 @@ public class FileStorageService {
         if (!sourceObject.startsWith(userRoot) || !targetObject.startsWith(userRoot)) {
             throw new AccessDeniedException("Пути должны находиться в корневой папке пользователя");
         }
-        if (sourceRelative.endsWith("/")) {
-            Iterable<Result<Item>> results = minioClient.listObjects(
-                    ListObjectsArgs.builder()
-                            .bucket(bucket)
-                            .prefix(sourceObject)
-                            .recursive(true)
-                            .build()
-            );
-            for (Result<Item> r : results) {
-                Item item = r.get();
-                if (item.isDir()) continue;
-                String objectName = item.objectName();
-                String innerPath = objectName.substring(sourceObject.length());
-                String newObjectName = targetObject + innerPath;
-                minioClient.copyObject(CopyObjectArgs.builder()
-                        .bucket(bucket)
-                        .object(newObjectName)
-                        .source(CopySource.builder()
-                                .bucket(bucket)
-                                .object(objectName)
-                                .build())
-                        .build());
-                minioClient.removeObject(RemoveObjectArgs.builder()
-                        .bucket(bucket)
-                        .object(objectName)
-                        .build());
-            }
-        } else {
-            minioClient.copyObject(CopyObjectArgs.builder()
-                    .bucket(bucket)
-                    .object(targetObject)
-                    .source(CopySource.builder()
-                            .bucket(bucket)
-                            .object(sourceObject)
-                            .build())
-                    .build());
-            minioClient.removeObject(RemoveObjectArgs.builder()
-                    .bucket(bucket)
-                    .object(sourceObject)
-                    .build());
+        if (sourceRelative.endsWith("/") && targetRelative.startsWith(sourceRelative)) {
+            throw new InvalidPathException("Нельзя переместить или скопировать папку внутрь самой себя");
         }
-        return getResourceInfo(userId, targetObject);
+        if (fileIndexService.exists(userId, targetRelative)) {
+            throw new ResourceAlreadyExistsException("Ресурс с таким именем уже существует: " + targetRelative);
+        }
+        return new MovePaths(sourceRelative, targetRelative);
+    }
+
+    private record MovePaths(String source, String target) {
+    }
+
+    /**
+     * Метаданные файла для формирования ответа на скачивание.
+     *
+     * @param path относительный путь
+     * @param size размер в байтах
+     * @param etag ETag объекта без кавычек
+     * @param modifiedAt время изменения, если известно
+     * @param contentType MIME-тип, если известен
+     */
+    public record FileMetadata(String path, long size, String etag, Instant modifiedAt, String contentType) {
+    }
+
+    /**
+     * Возвращает метаданные файла из индекса.
+     *
+     * @param userId идентификатор пользователя
+     * @param relativePath относительный путь к файлу
+     * @return метаданные файла
+     * @throws InvalidPathException если путь некорректен или указывает на папку
+     * @throws ResourceNotFoundException если файл не найден
+     */
+    public FileMetadata getFileMetadata(Long userId, String relativePath) {
+        checkDownloadPath(relativePath);
+        FileEntry entry = fileIndexService.find(userId, relativePath)
+                .filter(e -> e.getType() == ResourceType.FILE)
+                .orElseThrow(() -> new ResourceNotFoundException("Файл не найден: " + relativePath));
+        return new FileMetadata(relativePath,
+                entry.getSize() != null ? entry.getSize() : 0,
+                entry.getEtag(),
+                entry.getModifiedAt(),
+                entry.getContentType());
     }
 
     /**
@@ -294,9 +1017,62 @@ public class FileStorageService {
      * @return InputStream для чтения файла
      * @throws InvalidPathException если путь некорректен или указывает на папку
      * @throws ResourceNotFoundException если файл не найден
-     * @throws Exception при ошибках MinIO
+     * @throws Exception при ошибках хранилища
      */
     public InputStream downloadResource(Long userId, String relativePath) throws Exception {
+        return downloadResource(userId, relativePath, null, null);
+    }
+
+    /**
+     * Скачивает диапазон байт файла. Из хранилища читается только этот диапазон.
+     * Дедуплицированные файлы читаются из общего объекта содержимого.
+     *
+     * @param userId идентификатор пользователя
+     * @param relativePath относительный путь к файлу
+     * @param offset смещение первого байта или {@code null} — с начала файла
+     * @param length количество байт или {@code null} — до конца файла
+     * @return InputStream для чтения диапазона
+     * @throws InvalidPathException если путь некорректен или указывает на папку
+     * @throws ResourceNotFoundException если файл не найден
+     * @throws Exception при ошибках хранилища
+     */
+    public InputStream downloadResource(Long userId, String relativePath, Long offset, Long length) throws Exception {
+        checkDownloadPath(relativePath);
+        String objectName = fileIndexService.find(userId, relativePath)
+                .map(FileEntry::getContentHash)
+                .map(ContentBlobService::blobKey)
+                .orElse(getUserRoot(userId) + relativePath);
+        try {
+            return storageBackend.get(objectName, offset, length);
+        } catch (ObjectNotFoundException e) {
+            throw new ResourceNotFoundException("Файл не найден: " + relativePath);
+        }
+    }
+
+    /**
+     * Возвращает файл на локальном диске, в котором хранится файл пользователя, если хранилище локальное
+     * ({@code storage.backend=local}). Такой файл можно отдать клиенту без чтения в приложение.
+     *
+     * @param userId идентификатор пользователя
+     * @param relativePath относительный путь к файлу
+     * @return путь к файлу или пустое значение, если хранилище не локальное
+     * @throws InvalidPathException если путь некорректен или указывает на папку
+     * @throws ResourceNotFoundException если файл не найден
+     */
+    public Optional<Path> localFile(Long userId, String relativePath) {
+        return storageBackend.localFile(resolveFileObject(userId, relativePath));
+    }
+
+    /**
+     * Проверяет, что файл хранится как ссылка на дедуплицированное содержимое и своего объекта в хранилище не имеет.
+     */
+    private boolean isContentReference(Long userId, String path) {
+        return fileIndexService.find(userId, path)
+                .map(FileEntry::getContentHash)
+                .isPresent();
+    }
+
+    private void checkDownloadPath(String relativePath) {
         checkUserAuthorization(relativePath);
         if (relativePath == null || relativePath.isBlank()) {
             throw new InvalidPathException("Путь не может быть пустым");
@@ -304,152 +1080,213 @@ public class FileStorageService {
         if (relativePath.endsWith("/")) {
             throw new InvalidPathException("Для скачивания папки используйте метод downloadFolderZip");
         }
-
-        String objectName = getUserRoot(userId) + relativePath;
-        try {
-            return minioClient.getObject(
-                    GetObjectArgs.builder()
-                            .bucket(bucket)
-                            .object(objectName)
-                            .build()
-            );
-        } catch (ErrorResponseException e) {
-            if ("NoSuchKey".equals(e.errorResponse().code())) {
-                throw new ResourceNotFoundException("Файл не найден: " + relativePath);
-            }
-            throw e;
-        }
     }
 
     /**
-     * Скачивает папку пользователя в виде ZIP-архива.
+     * Скачивает папку пользователя в виде ZIP-архива, записывая его напрямую в выходной поток.
+     * Состав архива берётся из индекса постранично, чтобы в него попадали и дедуплицированные файлы.
+     * Объекты загружаются из хранилища с упреждением через {@link FolderZipArchiver}, поэтому расход памяти
+     * ограничен настройками архиватора и не зависит от размера папки. {@link java.util.zip.ZipOutputStream}
+     * автоматически переходит на Zip64 для архивов больше 4 ГБ или с числом записей больше 65535.
      *
      * @param userId идентификатор пользователя
      * @param relativePath относительный путь к папке
-     * @return InputStream с ZIP-архивом папки
+     * @param out поток, в который записывается архив (поток не закрывается)
+     * @return статистика записи архива
      * @throws InvalidPathException если путь некорректен
      * @throws AccessDeniedException если путь не принадлежит пользователю
-     * @throws Exception при ошибках MinIO
+     * @throws Exception при ошибках хранилища или ввода-вывода
      */
-    public InputStream downloadFolderZip(Long userId, String relativePath) throws Exception {
+    public FolderZipArchiver.Stats downloadFolderZip(Long userId, String relativePath, OutputStream out) throws Exception {
         checkUserAuthorization(relativePath);
         if (relativePath == null || relativePath.isBlank()) {
             throw new InvalidPathException("Путь не может быть пустым");
         }
 
         String normalized = relativePath.endsWith("/") ? relativePath : relativePath + "/";
-        String prefix = getUserRoot(userId) + normalized;
-
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
-            Iterable<Result<Item>> items = minioClient.listObjects(
-                    ListObjectsArgs.builder()
-                            .bucket(bucket)
-                            .prefix(prefix)
-                            .recursive(true)
-                            .build()
-            );
-            for (Result<Item> res : items) {
-                Item item = res.get();
-                if (item.isDir()) continue;
-                try (InputStream is = minioClient.getObject(
-                        GetObjectArgs.builder()
-                                .bucket(bucket)
-                                .object(item.objectName())
-                                .build())) {
-                    String entryName = item.objectName().substring(prefix.length());
-                    zos.putNextEntry(new ZipEntry(entryName));
-                    byte[] buf = new byte[8192];
-                    int len;
-                    while ((len = is.read(buf)) > 0) {
-                        zos.write(buf, 0, len);
-                    }
-                    zos.closeEntry();
+        String userRoot = getUserRoot(userId);
+
+        Iterator<FileEntry> entries = new PageIterator<FileEntry>(maxPageSize, (last, page) ->
+                fileIndexService.listPage(userId, normalized, true, last != null ? last.getPath() : null, maxPageSize));
+        Iterator<FolderZipArchiver.Source> sources = new Iterator<>() {
+            private FolderZipArchiver.Source next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && entries.hasNext()) {
+                    FileEntry entry = entries.next();
+                    if (entry.getType() != ResourceType.FILE) continue;
+                    next = new FolderZipArchiver.Source(
+                            entry.getContentHash() != null
+                                    ? ContentBlobService.blobKey(entry.getContentHash())
+                                    : userRoot + entry.getPath(),
+                            entry.getPath().substring(normalized.length()),
+                            entry.getSize() != null ? entry.getSize() : 0,
+                            entry.getModifiedAt() != null ? entry.getModifiedAt().toEpochMilli() : -1);
                 }
+                return next != null;
             }
-        }
-        return new ByteArrayInputStream(baos.toByteArray());
+
+            @Override
+            public FolderZipArchiver.Source next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                FolderZipArchiver.Source current = next;
+                next = null;
+                return current;
+            }
+        };
+        FolderZipArchiver.Stats stats = folderZipArchiver.write(sources, out);
+        storageMetrics.recordTransfer(StorageMetrics.ZIP, stats.bytes());
+        return stats;
     }
 
     /**
-     * Получает содержимое папки пользователя.
+     * Получает содержимое папки пользователя из индекса метаданных через {@link DirectoryListingCache}.
      *
      * @param userId идентификатор пользователя
      * @param folderPath относительный путь к папке
      * @param recursive если true — возвращает содержимое рекурсивно
      * @return список DTO с информацией о файлах и папках
-     * @throws Exception при ошибках MinIO
      */
-    public List<FileResourceDto> listDirectory(Long userId, String folderPath, boolean recursive) throws Exception {
+    public List<FileResourceDto> listDirectory(Long userId, String folderPath, boolean recursive) {
         checkUserAuthorization(folderPath);
-        String userRoot = getUserRoot(userId);
+        String folder = folderPath != null ? folderPath : "";
+        if (folder.equals("/")) {
+            folder = "";
+        }
+        String directory = StoragePaths.toDirectory(folder);
+        List<FileResourceDto> listing = directoryListingCache.get(userId, directory, recursive, () -> {
+            List<FileResourceDto> result = new ArrayList<>();
+            for (FileEntry entry : fileIndexService.list(userId, directory, recursive)) {
+                result.add(FileIndexService.toDto(entry));
+            }
+            return result;
+        });
+        storageMetrics.recordListing(StorageMetrics.SOURCE_INDEX, listing.size());
+        return listing;
+    }
 
-        String fullPrefix = userRoot + (folderPath != null ? folderPath : "");
-        if (!fullPrefix.endsWith("/")) {
-            fullPrefix += "/";
-        }
-        List<FileResourceDto> result = new ArrayList<>();
-        Iterable<Result<Item>> items = minioClient.listObjects(
-                ListObjectsArgs.builder()
-                        .bucket(bucket)
-                        .prefix(fullPrefix)
-                        .recursive(recursive)
-                        .build()
-        );
-        for (Result<Item> r : items) {
-            Item item = r.get();
-            String objectName = item.objectName();
-            String relPath = objectName.substring(userRoot.length());
-            boolean isDir = item.isDir() || relPath.endsWith("/");
-            String normalized = isDir
-                    ? relPath.substring(0, relPath.length() - 1)
-                    : relPath;
-            int idx = normalized.lastIndexOf("/");
-            String path = idx >= 0
-                    ? normalized.substring(0, idx + 1)
-                    : "";
-            String name = idx >= 0
-                    ? normalized.substring(idx + 1)
-                    : normalized;
-            Long size = isDir ? null : item.size();
-            ResourceType type = isDir ? ResourceType.DIRECTORY : ResourceType.FILE;
-
-            result.add(new FileResourceDto(path, name, size, type));
+    /**
+     * Получает страницу содержимого папки. Записи упорядочены по пути; курсор — закодированный путь
+     * последней записи страницы, поэтому страницы не смещаются при добавлении и удалении файлов.
+     *
+     * @param userId идентификатор пользователя
+     * @param folderPath относительный путь к папке
+     * @param recursive если true — возвращает содержимое рекурсивно
+     * @param limit размер страницы (ограничивается {@code storage.listing.max-page-size})
+     * @param cursor курсор из предыдущего ответа или {@code null} для первой страницы
+     * @return страница и курсор следующей страницы
+     * @throws InvalidPathException если путь или курсор некорректны
+     */
+    public DirectoryPageDto listDirectoryPage(Long userId, String folderPath, boolean recursive,
+                                              int limit, String cursor) {
+        checkUserAuthorization(folderPath);
+        if (limit < 1) {
+            throw new InvalidPathException("Размер страницы должен быть положительным");
         }
+        String folder = folderPath == null || folderPath.equals("/") ? "" : folderPath;
+        int pageSize = Math.min(limit, maxPageSize);
+        List<FileEntry> entries = fileIndexService.listPage(userId, folder, recursive, decodeCursor(cursor), pageSize + 1);
+        boolean hasMore = entries.size() > pageSize;
+        List<FileEntry> page = hasMore ? entries.subList(0, pageSize) : entries;
+        List<FileResourceDto> items = new ArrayList<>(page.size());
+        for (FileEntry entry : page) {
+            items.add(FileIndexService.toDto(entry));
+        }
+        String nextCursor = hasMore ? encodeCursor(page.get(page.size() - 1).getPath()) : null;
+        storageMetrics.recordListing(StorageMetrics.SOURCE_INDEX, items.size());
+        return new DirectoryPageDto(items, nextCursor);
+    }
 
-        return result;
+    private static String encodeCursor(String path) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(path.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPathException("Некорректный курсор");
+        }
     }
 
     /**
-     * Ищет файлы и папки пользователя по запросу.
+     * Ищет файлы и папки пользователя по вхождению строки в имя.
+     * Результаты упорядочены по качеству совпадения: точное имя, начало имени, затем по сходству.
      *
      * @param userId идентификатор пользователя
      * @param query строка для поиска
+     * @param page номер страницы, начиная с 0
+     * @param size размер страницы (ограничивается {@code storage.search.max-results})
      * @return список DTO с найденными файлами и папками
-     * @throws Exception при ошибках MinIO
      */
-    public List<FileResourceDto> search(Long userId, String query) throws Exception {
-        String userRoot = getUserRoot(userId);
+    public List<FileResourceDto> search(Long userId, String query, int page, int size) {
+        if (page < 0 || size < 1) {
+            throw new InvalidPathException("Некорректные параметры страницы");
+        }
         List<FileResourceDto> resultsList = new ArrayList<>();
-        Iterable<Result<Item>> results = minioClient.listObjects(
-                ListObjectsArgs.builder()
-                        .bucket(bucket)
-                        .prefix(userRoot)
-                        .recursive(true)
-                        .build());
-        for (Result<Item> result : results) {
-            Item item = result.get();
-            if (item.objectName().toLowerCase().contains(query.toLowerCase())) {
-                String fullName = item.objectName();
-                int lastSlash = fullName.lastIndexOf('/');
-                String path = fullName.substring(0, lastSlash + 1);
-                String name = fullName.substring(lastSlash + 1);
-                resultsList.add(new FileResourceDto(path, name, item.size(), ResourceType.FILE));
-            }
+        for (FileEntry entry : fileIndexService.searchByName(userId, query, page, Math.min(size, maxSearchResults))) {
+            resultsList.add(FileIndexService.toDto(entry));
         }
         return resultsList;
     }
 
+    /**
+     * Лениво перечисляет содержимое папки для потоковой выдачи. Записи читаются из индекса страницами
+     * по {@code storage.listing.max-page-size} с keyset-пагинацией, поэтому расход памяти не зависит
+     * от размера папки, а первая страница доступна сразу.
+     *
+     * @param userId идентификатор пользователя
+     * @param folderPath относительный путь к папке
+     * @param recursive если true — перечисляет содержимое рекурсивно
+     * @return итератор DTO в порядке путей
+     */
+    public Iterator<FileResourceDto> streamDirectory(Long userId, String folderPath, boolean recursive) {
+        checkUserAuthorization(folderPath);
+        String folder = folderPath == null || folderPath.equals("/") ? "" : folderPath;
+        Iterator<FileEntry> entries = new PageIterator<>(maxPageSize, (last, page) ->
+                fileIndexService.listPage(userId, folder, recursive, last != null ? last.getPath() : null, maxPageSize));
+        return toDtos(entries);
+    }
+
+    /**
+     * Лениво перечисляет результаты поиска для потоковой выдачи в порядке ранжирования,
+     * не больше {@code storage.search.max-stream-results}. Страницы запрашиваются с keyset-пагинацией
+     * по рангу и пути последней выданной записи, а не через OFFSET.
+     *
+     * @param userId идентификатор пользователя
+     * @param query строка для поиска
+     * @return итератор DTO найденных файлов и папок
+     */
+    public Iterator<FileResourceDto> streamSearch(Long userId, String query) {
+        int pageSize = maxPageSize;
+        int maxPages = (maxStreamSearchResults + pageSize - 1) / pageSize;
+        Iterator<FileEntry> entries = new PageIterator<>(pageSize, (last, page) -> page < maxPages
+                ? fileIndexService.searchByNameAfter(userId, query,
+                        last != null ? fileIndexService.searchCursor(query, last) : null, pageSize)
+                : List.of());
+        return toDtos(entries);
+    }
+
+    private static Iterator<FileResourceDto> toDtos(Iterator<FileEntry> entries) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public FileResourceDto next() {
+                return FileIndexService.toDto(entries.next());
+            }
+        };
+    }
+
     /**
      * Создаёт новую пустую папку в облачном хранилище пользователя.
      *
@@ -457,7 +1294,7 @@ public class FileStorageService {
      * @param path относительный путь к новой папке
      * @throws AccessDeniedException если путь не принадлежит пользователю
      * @throws InvalidPathException если путь некорректен
-     * @throws Exception при ошибках MinIO
+     * @throws Exception при ошибках хранилища
      */
     public void createDirectory(Long userId, String path) throws Exception {
         checkUserAuthorization(path);
@@ -469,12 +1306,15 @@ public class FileStorageService {
         if (!objectName.startsWith(userRoot)) {
             throw new InvalidPathException("Невалидный путь");
         }
-        minioClient.putObject(
-                PutObjectArgs.builder()
-                        .bucket(bucket)
-                        .object(objectName)
-                        .stream(new ByteArrayInputStream(new byte[0]), 0, -1)
-                        .build()
-        );
+        storageBackend.put(objectName, new ByteArrayInputStream(new byte[0]), 0, null);
+        fileIndexService.recordDirectory(userId, path);
+    }
+
+    private Iterator<StorageBackend.ObjectInfo> listItems(String prefix) {
+        return storageMetrics.countListing(StorageMetrics.SOURCE_STORAGE, storageBackend.list(prefix));
+    }
+
+    private static Instant modifiedAt(StorageBackend.ObjectInfo info) {
+        return info.lastModified() != null ? info.lastModified() : Instant.now();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,197 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import com.baykin.cloud_storage.skydrive.dto.DeleteResultDto;
+import com.baykin.cloud_storage.skydrive.dto.ObjectFailureDto;
+import com.baykin.cloud_storage.skydrive.storage.StorageBackend;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Перемещение и копирование папок на стороне хранилища: объекты копируются пулом из {@code storage.move.parallelism}
+ * потоков, затем при перемещении исходные объекты удаляются пакетами через {@link BatchObjectRemover}.
+ * Данные копируются самим хранилищем и через приложение не проходят. Шаги идемпотентны,
+ * поэтому прерванную операцию можно продолжить или откатить.
+ */
+@Component
+public class FolderMoveEngine {
+
+    /**
+     * Как часто (в объектах) прогресс копирования сохраняется в журнал.
+     */
+    private static final int PROGRESS_STEP = 500;
+
+    private final StorageBackend storageBackend;
+    private final BatchObjectRemover batchObjectRemover;
+    private final StorageMetrics storageMetrics;
+    private final ExecutorService copyExecutor;
+    private final int parallelism;
+
+    public FolderMoveEngine(StorageBackend storageBackend,
+                            BatchObjectRemover batchObjectRemover,
+                            StorageMetrics storageMetrics,
+                            @Value("${storage.move.parallelism:8}") int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("storage.move.parallelism must be positive");
+        }
+        this.storageBackend = storageBackend;
+        this.batchObjectRemover = batchObjectRemover;
+        this.storageMetrics = storageMetrics;
+        this.parallelism = parallelism;
+        this.copyExecutor = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("folder-copy-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        copyExecutor.shutdownNow();
+    }
+
+    /**
+     * Копирует все объекты из {@code sourcePrefix} в {@code targetPrefix} с сохранением относительных путей.
+     * При первой ошибке оставшиеся копирования отменяются, а ошибка пробрасывается.
+     *
+     * @param sourcePrefix исходный префикс (полный ключ папки)
+     * @param targetPrefix целевой префикс (полный ключ папки)
+     * @param skipExisting пропускать объекты, уже скопированные ранее (при продолжении прерванного перемещения)
+     * @param progress получатель прогресса
+     * @throws Exception при ошибке копирования
+     */
+    public void copyAll(String sourcePrefix, String targetPrefix, boolean skipExisting, JobProgress progress) throws Exception {
+        Map<String, String> copied = skipExisting ? etagsUnder(targetPrefix) : Map.of();
+        Semaphore inFlight = new Semaphore(parallelism);
+        List<Future<?>> pending = new ArrayList<>();
+        BatchingProgress batching = new BatchingProgress(progress);
+        try {
+            Iterator<StorageBackend.ObjectInfo> items = listItems(sourcePrefix);
+            while (items.hasNext()) {
+                StorageBackend.ObjectInfo item = items.next();
+                String inner = item.key().substring(sourcePrefix.length());
+                if (Objects.equals(copied.get(inner), item.etag())) {
+                    batching.advance();
+                    continue;
+                }
+                inFlight.acquire();
+                pending.add(copyExecutor.submit(() -> {
+                    try {
+                        storageBackend.copy(item.key(), targetPrefix + inner, item.size());
+                        batching.advance();
+                        return null;
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+                awaitCompleted(pending);
+            }
+            for (Future<?> future : pending) {
+                await(future);
+            }
+            pending.clear();
+            batching.flush();
+        } finally {
+            pending.forEach(f -> f.cancel(true));
+        }
+    }
+
+    /**
+     * Удаляет исходные объекты после успешного копирования.
+     *
+     * @param sourcePrefix исходный префикс
+     * @param userRoot корневая папка пользователя для путей в ошибках
+     * @return результат пакетного удаления
+     * @throws Exception при ошибках хранилища
+     */
+    public DeleteResultDto removeSources(String sourcePrefix, String userRoot) throws Exception {
+        return batchObjectRemover.removeAll(objectNames(sourcePrefix, sourcePrefix), userRoot, JobProgress.NONE);
+    }
+
+    /**
+     * Откатывает незавершённое копирование: удаляет из целевой папки копии объектов, которые остались в исходной.
+     *
+     * @param sourcePrefix исходный префикс
+     * @param targetPrefix целевой префикс
+     * @param userRoot корневая папка пользователя для путей в ошибках
+     * @return результат пакетного удаления
+     * @throws Exception при ошибках хранилища
+     */
+    public DeleteResultDto rollback(String sourcePrefix, String targetPrefix, String userRoot) throws Exception {
+        return batchObjectRemover.removeAll(objectNames(sourcePrefix, targetPrefix), userRoot, JobProgress.NONE);
+    }
+
+    /**
+     * Ключи объектов под {@code sourcePrefix}, переписанные на префикс {@code keyPrefix}.
+     */
+    private Iterator<String> objectNames(String sourcePrefix, String keyPrefix) {
+        Stream<String> names = StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(listItems(sourcePrefix), Spliterator.ORDERED), false)
+                .map(item -> keyPrefix + item.key().substring(sourcePrefix.length()));
+        return names.iterator();
+    }
+
+    private Map<String, String> etagsUnder(String prefix) {
+        Map<String, String> etags = new HashMap<>();
+        Iterator<StorageBackend.ObjectInfo> items = listItems(prefix);
+        while (items.hasNext()) {
+            StorageBackend.ObjectInfo item = items.next();
+            etags.put(item.key().substring(prefix.length()), item.etag());
+        }
+        return etags;
+    }
+
+    private Iterator<StorageBackend.ObjectInfo> listItems(String prefix) {
+        return storageMetrics.countListing(StorageMetrics.SOURCE_STORAGE, storageBackend.list(prefix));
+    }
+
+    private static void awaitCompleted(List<Future<?>> pending) throws Exception {
+        Iterator<Future<?>> it = pending.iterator();
+        while (it.hasNext()) {
+            Future<?> future = it.next();
+            if (future.isDone()) {
+                await(future);
+                it.remove();
+            }
+        }
+    }
+
+    private static void await(Future<?> future) throws Exception {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Накапливает прогресс копирования и передаёт его порциями, чтобы не писать в журнал на каждый объект.
+     */
+    private static final class BatchingProgress {
+
+        private final JobProgress delegate;
+        private long pending;
+
+        BatchingProgress(JobProgress delegate) {
+            this.delegate = delegate;
+        }
+
+        synchronized void advance() {
+            if (++pending >= PROGRESS_STEP) {
+                flush();
+            }
+        }
+
+        synchronized void flush() {
+            if (pending > 0) {
+                delegate.advance(pending, List.<ObjectFailureDto>of());
+                pending = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import com.baykin.cloud_storage.skydrive.storage.StorageBackend;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Конвейерный архиватор папок: пока очередная запись пишется в ZIP, следующие объекты
+ * уже загружаются из хранилища параллельно. Порядок записей в архиве совпадает с порядком источников.
+ * <p>
+ * Объекты не больше {@code prefetch-buffer-bytes / prefetch-parallelism} читаются в память целиком,
+ * для более крупных заранее открывается только поток чтения. {@code prefetch-buffer-bytes} — общий бюджет
+ * всех одновременно записываемых архивов: память под объект берётся из общего семафора и возвращается,
+ * когда объект записан в архив. Если бюджет исчерпан, объект не ждёт его, а открывается потоком,
+ * поэтому объём буферизованных данных никогда не превышает {@code prefetch-buffer-bytes}
+ * независимо от числа параллельных скачиваний.
+ * <p>
+ * Если архив прерван (например, клиент закрыл соединение), уже выполняющиеся загрузки не прерываются:
+ * каждая сама закрывает открытый поток и возвращает память в бюджет, как только обнаруживает, что
+ * её результат больше не нужен.
+ */
+@Component
+public class FolderZipArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(FolderZipArchiver.class);
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Единица учёта бюджета буферов: семафор считает килобайты, чтобы бюджет больше 2 ГиБ помещался в int.
+     */
+    private static final int BUDGET_UNIT = 1024;
+
+    private final StorageBackend storageBackend;
+    private final ExecutorService prefetchExecutor;
+    private final int parallelism;
+    private final long maxPrefetchedObjectSize;
+    private final Semaphore bufferBudget;
+
+    public FolderZipArchiver(StorageBackend storageBackend,
+                             @Value("${storage.zip.prefetch-parallelism:8}") int parallelism,
+                             @Value("${storage.zip.prefetch-buffer-bytes:67108864}") long bufferBytes) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("storage.zip.prefetch-parallelism must be positive");
+        }
+        this.storageBackend = storageBackend;
+        this.parallelism = parallelism;
+        this.maxPrefetchedObjectSize = bufferBytes / parallelism;
+        this.bufferBudget = new Semaphore((int) Math.min(bufferBytes / BUDGET_UNIT, Integer.MAX_VALUE));
+        this.prefetchExecutor = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("zip-prefetch-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    /**
+     * Объект хранилища, который нужно положить в архив.
+     *
+     * @param objectName   ключ объекта в хранилище
+     * @param entryName    имя записи внутри архива
+     * @param size         размер объекта в байтах
+     * @param lastModified время изменения в миллисекундах или {@code -1}, если неизвестно
+     */
+    public record Source(String objectName, String entryName, long size, long lastModified) {
+    }
+
+    /**
+     * Итоги записи архива.
+     *
+     * @param entries       количество записей
+     * @param bytes         объём несжатых данных
+     * @param elapsedMillis время записи в миллисекундах
+     */
+    public record Stats(int entries, long bytes, long elapsedMillis) {
+
+        public long bytesPerSecond() {
+            return elapsedMillis > 0 ? bytes * 1000 / elapsedMillis : bytes;
+        }
+    }
+
+    /**
+     * Записывает объекты в ZIP-архив, заранее загружая до {@code prefetch-parallelism} следующих объектов.
+     *
+     * @param sources объекты в порядке записи в архив
+     * @param out поток, в который записывается архив (поток не закрывается)
+     * @return статистика записи
+     * @throws Exception при ошибках хранилища или ввода-вывода
+     */
+    public Stats write(Iterator<Source> sources, OutputStream out) throws Exception {
+        long started = System.nanoTime();
+        Deque<Prefetch> window = new ArrayDeque<>(parallelism);
+        int entries = 0;
+        long bytes = 0;
+        byte[] buf = new byte[COPY_BUFFER_SIZE];
+        try (ZipOutputStream zos = new ZipOutputStream(
+                new BufferedOutputStream(new NonClosingOutputStream(out), COPY_BUFFER_SIZE))) {
+            while (true) {
+                while (window.size() < parallelism && sources.hasNext()) {
+                    Prefetch prefetch = new Prefetch(sources.next());
+                    prefetchExecutor.execute(prefetch);
+                    window.addLast(prefetch);
+                }
+                Prefetch head = window.pollFirst();
+                if (head == null) {
+                    break;
+                }
+                try (InputStream is = head.await()) {
+                    ZipEntry entry = new ZipEntry(head.source().entryName());
+                    if (head.source().lastModified() >= 0) {
+                        entry.setTime(head.source().lastModified());
+                    }
+                    zos.putNextEntry(entry);
+                    int len;
+                    while ((len = is.read(buf)) > 0) {
+                        zos.write(buf, 0, len);
+                        bytes += len;
+                    }
+                    zos.closeEntry();
+                }
+                entries++;
+            }
+        } finally {
+            discard(window);
+        }
+        Stats stats = new Stats(entries, bytes, (System.nanoTime() - started) / 1_000_000);
+        log.info("ZIP archive written: {} entries, {} bytes in {} ms ({} bytes/s)",
+                stats.entries(), stats.bytes(), stats.elapsedMillis(), stats.bytesPerSecond());
+        return stats;
+    }
+
+    /**
+     * Открывает объект: небольшие объекты читаются в память целиком, если на них хватает общего бюджета,
+     * остальные отдаются потоком. Память возвращается в бюджет при закрытии потока.
+     */
+    private InputStream open(Source source) throws Exception {
+        InputStream is = storageBackend.get(source.objectName(), null, null);
+        int permits = (int) ((source.size() + BUDGET_UNIT - 1) / BUDGET_UNIT);
+        if (source.size() > maxPrefetchedObjectSize || !bufferBudget.tryAcquire(permits)) {
+            return is;
+        }
+        try (is) {
+            return new BudgetedInputStream(is.readAllBytes(), permits);
+        } catch (Exception | Error e) {
+            bufferBudget.release(permits);
+            throw e;
+        }
+    }
+
+    /**
+     * Отказывается от загрузок, не попавших в архив: завершённые закрываются сразу,
+     * незавершённые закроют свой результат сами.
+     */
+    private static void discard(Deque<Prefetch> window) {
+        for (Prefetch pending : window) {
+            pending.abandon();
+        }
+        window.clear();
+    }
+
+    private static void closeQuietly(InputStream is) {
+        try {
+            is.close();
+        } catch (IOException ignored) {
+            // поток уже не нужен
+        }
+    }
+
+    /**
+     * Загрузка одного объекта в пуле предзагрузки. Результат либо забирает архиватор,
+     * либо — если от загрузки отказались — закрывает та сторона, которая узнала об этом последней.
+     */
+    private final class Prefetch implements Runnable {
+
+        private final Source source;
+        private final CompletableFuture<InputStream> content = new CompletableFuture<>();
+        private boolean abandoned;
+
+        Prefetch(Source source) {
+            this.source = source;
+        }
+
+        Source source() {
+            return source;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (abandoned) {
+                    return;
+                }
+            }
+            InputStream is;
+            try {
+                is = open(source);
+            } catch (Throwable e) {
+                content.completeExceptionally(e);
+                return;
+            }
+            synchronized (this) {
+                if (!abandoned) {
+                    content.complete(is);
+                    return;
+                }
+            }
+            closeQuietly(is);
+        }
+
+        InputStream await() throws Exception {
+            try {
+                return content.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        void abandon() {
+            InputStream ready;
+            synchronized (this) {
+                abandoned = true;
+                ready = content.isDone() && !content.isCompletedExceptionally() ? content.join() : null;
+            }
+            if (ready != null) {
+                closeQuietly(ready);
+            }
+        }
+    }
+
+    /**
+     * Буферизованный объект, возвращающий занятую память в общий бюджет при закрытии.
+     */
+    private final class BudgetedInputStream extends ByteArrayInputStream {
+
+        private final int permits;
+        private boolean released;
+
+        BudgetedInputStream(byte[] data, int permits) {
+            super(data);
+            this.permits = permits;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            bufferBudget.release(permits);
+        }
+    }
+
+    /**
+     * Обёртка, не закрывающая исходный поток: закрытием выходного потока ответа управляет контейнер сервлетов.
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
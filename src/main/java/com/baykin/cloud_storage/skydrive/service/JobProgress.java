@@ -0,0 +1,26 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import com.baykin.cloud_storage.skydrive.dto.ObjectFailureDto;
+
+import java.util.List;
+
+/**
+ * Получатель сведений о ходе длительной операции. Может вызываться из нескольких потоков.
+ */
+@FunctionalInterface
+public interface JobProgress {
+
+    /**
+     * Прогресс никуда не передаётся.
+     */
+    JobProgress NONE = (processed, failures) -> {
+    };
+
+    /**
+     * Сообщает об обработке очередной порции объектов.
+     *
+     * @param processed количество обработанных объектов (включая неудачные)
+     * @param failures объекты, которые не удалось обработать
+     */
+    void advance(long processed, List<ObjectFailureDto> failures);
+}
@@ -0,0 +1,50 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+
+/**
+ * Итератор, который подгружает данные страницами по мере обхода.
+ * В памяти находится не больше одной страницы.
+ *
+ * @param <T> тип элементов
+ */
+final class PageIterator<T> implements Iterator<T> {
+
+    /**
+     * Загрузка страницы по последнему элементу предыдущей ({@code null} для первой) и номеру страницы.
+     */
+    private final BiFunction<T, Integer, List<T>> fetch;
+    private final int pageSize;
+    private Iterator<T> current = Collections.emptyIterator();
+    private T last;
+    private int pageIndex;
+    private boolean exhausted;
+
+    PageIterator(int pageSize, BiFunction<T, Integer, List<T>> fetch) {
+        this.pageSize = pageSize;
+        this.fetch = fetch;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!current.hasNext() && !exhausted) {
+            List<T> page = fetch.apply(last, pageIndex++);
+            exhausted = page.size() < pageSize;
+            current = page.iterator();
+        }
+        return current.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        last = current.next();
+        return last;
+    }
+}
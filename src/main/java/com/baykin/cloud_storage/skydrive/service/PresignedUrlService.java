@@ -0,0 +1,116 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import com.baykin.cloud_storage.skydrive.dto.PresignedUrlDto;
+import com.baykin.cloud_storage.skydrive.model.DirectUpload;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioClient;
+import io.minio.PostPolicy;
+import io.minio.http.Method;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ContentDisposition;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Выдаёт короткоживущие предподписанные ссылки, по которым клиент скачивает и загружает файлы
+ * напрямую в MinIO, минуя приложение. Пути проверяются так же, как при обычной загрузке и скачивании,
+ * а ссылки указывают только на объекты в корневой папке пользователя (или на общее содержимое
+ * дедуплицированного файла, к которому у пользователя есть доступ).
+ * <p>
+ * Загрузка идёт не по ссылке PUT, а формой POST с политикой: она допускает ровно один ключ —
+ * одноразовый временный объект вне папки пользователя — и ограничивает размер объявленным
+ * ({@code content-length-range}). Повторная загрузка по той же форме не может перезаписать файл,
+ * а неподтверждённые объекты удаляются по расписанию.
+ * Включается настройкой {@code storage.presign.enabled}.
+ */
+@Service
+@ConditionalOnProperty(prefix = "storage.presign", name = "enabled", havingValue = "true")
+public class PresignedUrlService {
+
+    /**
+     * Максимальный срок действия подписи S3 — 7 дней.
+     */
+    private static final Duration MAX_TTL = Duration.ofDays(7);
+
+    private final MinioClient presignMinioClient;
+    private final FileStorageService fileStorageService;
+    private final Duration ttl;
+    private final String publicUrl;
+
+    @Value("${minio.bucket-name}")
+    private String bucket;
+
+    public PresignedUrlService(@Qualifier("presignMinioClient") MinioClient presignMinioClient,
+                               FileStorageService fileStorageService,
+                               @Value("${storage.presign.ttl:15m}") Duration ttl,
+                               @Value("${minio.public-url:${minio.url}}") String publicUrl) {
+        if (ttl.isNegative() || ttl.isZero() || ttl.compareTo(MAX_TTL) > 0) {
+            throw new IllegalArgumentException("storage.presign.ttl must be between 1s and 7d");
+        }
+        this.presignMinioClient = presignMinioClient;
+        this.fileStorageService = fileStorageService;
+        this.ttl = ttl;
+        this.publicUrl = publicUrl.endsWith("/") ? publicUrl.substring(0, publicUrl.length() - 1) : publicUrl;
+    }
+
+    /**
+     * Создаёт ссылку на скачивание файла. Ответ MinIO содержит заголовок Content-Disposition с именем файла.
+     *
+     * @param userId идентификатор пользователя
+     * @param relativePath относительный путь к файлу
+     * @return ссылка для запроса GET
+     * @throws Exception при ошибках подписи
+     */
+    public PresignedUrlDto downloadUrl(Long userId, String relativePath) throws Exception {
+        String objectName = fileStorageService.resolveFileObject(userId, relativePath);
+        String disposition = ContentDisposition.attachment()
+                .filename(StoragePaths.nameOf(relativePath), StandardCharsets.UTF_8)
+                .build()
+                .toString();
+        return sign(relativePath, Method.GET, objectName, Map.of("response-content-disposition", disposition));
+    }
+
+    /**
+     * Создаёт форму загрузки файла. После загрузки клиент должен подтвердить её через
+     * {@link FileStorageService#completeDirectUpload}, иначе загруженный объект будет удалён.
+     *
+     * @param userId идентификатор пользователя
+     * @param relativePath относительный путь к папке
+     * @param filename имя файла
+     * @param size объявленный размер файла — больше загрузить нельзя
+     * @return адрес и поля формы для запроса POST
+     * @throws Exception при ошибках подписи
+     */
+    public PresignedUrlDto uploadUrl(Long userId, String relativePath, String filename, long size) throws Exception {
+        DirectUpload upload = fileStorageService.prepareDirectUpload(userId, relativePath, filename, size);
+        PostPolicy policy = new PostPolicy(bucket, upload.getExpiresAt().atZone(ZoneOffset.UTC));
+        policy.addEqualsCondition("key", upload.getObjectName());
+        policy.addStartsWithCondition("Content-Type", "");
+        policy.addContentLengthRangeCondition(0, size);
+        Map<String, String> fields = new HashMap<>(presignMinioClient.getPresignedPostFormData(policy));
+        fields.put("key", upload.getObjectName());
+        return new PresignedUrlDto(upload.getPath(), "POST", publicUrl + "/" + bucket, upload.getExpiresAt(),
+                upload.getId(), fields);
+    }
+
+    private PresignedUrlDto sign(String path, Method method, String objectName,
+                                 Map<String, String> queryParams) throws Exception {
+        Instant expiresAt = Instant.now().plus(ttl);
+        String url = presignMinioClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                .method(method)
+                .bucket(bucket)
+                .object(objectName)
+                .expiry((int) ttl.toSeconds())
+                .extraQueryParams(queryParams)
+                .build());
+        return new PresignedUrlDto(path, method.name(), url, expiresAt, null, null);
+    }
+}
@@ -0,0 +1,63 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import com.baykin.cloud_storage.skydrive.exception.QuotaExceededException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Поток, который прерывает чтение, как только прочитано больше разрешённого квотой объёма.
+ * Используется для загрузок, размер которых заранее неизвестен.
+ */
+class QuotaLimitedInputStream extends FilterInputStream {
+
+    private final long limit;
+    private long read;
+
+    /**
+     * @param in исходный поток
+     * @param limit максимальное количество байт
+     */
+    QuotaLimitedInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            count(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void count(long n) {
+        read += n;
+        if (read > limit) {
+            throw new QuotaExceededException("Превышена квота хранилища: файл больше оставшихся " + limit + " байт");
+        }
+    }
+}
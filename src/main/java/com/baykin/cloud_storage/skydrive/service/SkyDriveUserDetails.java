@@ -0,0 +1,27 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Аутентифицированный пользователь вместе с идентификатором из базы.
+ * Хранится в сессии, поэтому запросам к API не нужно искать идентификатор по имени.
+ */
+public class SkyDriveUserDetails extends User {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+
+    public SkyDriveUserDetails(Long id, String username, String password,
+                               Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, authorities);
+        this.id = id;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,320 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import com.baykin.cloud_storage.skydrive.dto.ObjectFailureDto;
+import com.baykin.cloud_storage.skydrive.dto.StorageJobDto;
+import com.baykin.cloud_storage.skydrive.exception.ResourceNotFoundException;
+import com.baykin.cloud_storage.skydrive.model.StorageJob;
+import com.baykin.cloud_storage.skydrive.model.StorageJobFailure;
+import com.baykin.cloud_storage.skydrive.model.StorageJobPhase;
+import com.baykin.cloud_storage.skydrive.model.StorageJobStatus;
+import com.baykin.cloud_storage.skydrive.model.StorageJobType;
+import com.baykin.cloud_storage.skydrive.repository.StorageJobFailureRepository;
+import com.baykin.cloud_storage.skydrive.repository.StorageJobRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Сервис фоновых операций с хранилищем: создаёт задания, выполняет их в отдельном пуле потоков
+ * и сохраняет прогресс и этап в Postgres. Журнал позволяет запросить состояние по идентификатору
+ * и продолжить прерванные задания после перезапуска.
+ * <p>
+ * Каждое незавершённое задание принадлежит экземпляру приложения, который периодически обновляет
+ * {@code heartbeat_at}. Если отметка старше {@code storage.jobs.lease}, владелец считается упавшим,
+ * и задание забирает другой экземпляр условным UPDATE — продолжить его может только один из них.
+ * Отметка обновляется только у заданий, которые стоят в очереди пула или выполняются в нём прямо сейчас:
+ * задание, работа над которым оборвалась, не удерживается живым экземпляром бесконечно.
+ */
+@Service
+public class StorageJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageJobService.class);
+
+    /**
+     * Сколько ошибок по отдельным объектам сохраняется для одного задания.
+     */
+    static final int MAX_STORED_FAILURES = 1000;
+
+    private static final List<StorageJobStatus> ACTIVE = List.of(StorageJobStatus.PENDING, StorageJobStatus.RUNNING);
+
+    private final StorageJobRepository storageJobRepository;
+    private final StorageJobFailureRepository storageJobFailureRepository;
+    private final ExecutorService jobExecutor;
+    private final Duration lease;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Set<UUID> live = ConcurrentHashMap.newKeySet();
+
+    public StorageJobService(StorageJobRepository storageJobRepository,
+                             StorageJobFailureRepository storageJobFailureRepository,
+                             @Value("${storage.jobs.threads:2}") int threads,
+                             @Value("${storage.jobs.lease:PT2M}") Duration lease) {
+        this.storageJobRepository = storageJobRepository;
+        this.storageJobFailureRepository = storageJobFailureRepository;
+        this.lease = lease;
+        this.jobExecutor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("storage-job-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdown();
+    }
+
+    /**
+     * Работа, выполняемая в рамках фонового задания.
+     */
+    @FunctionalInterface
+    public interface JobTask {
+        void run(UUID jobId, JobProgress progress) throws Exception;
+    }
+
+    /**
+     * Создаёт задание и запускает его в фоне.
+     *
+     * @param userId идентификатор пользователя
+     * @param type тип операции
+     * @param source исходный путь
+     * @param target целевой путь (если есть)
+     * @param total ожидаемое количество объектов
+     * @param task выполняемая работа
+     * @return DTO созданного задания
+     */
+    public StorageJobDto start(Long userId, StorageJobType type, String source, String target, long total, JobTask task) {
+        StorageJob job = create(userId, type, source, target, total, StorageJobStatus.PENDING);
+        submit(job.getId(), task, StorageJobStatus.COMPLETED);
+        return toDto(job, List.of());
+    }
+
+    /**
+     * Создаёт задание и выполняет его в текущем потоке. Используется для синхронных операций,
+     * которые всё равно должны попасть в журнал, чтобы прерванную операцию можно было продолжить.
+     *
+     * @param userId идентификатор пользователя
+     * @param type тип операции
+     * @param source исходный путь
+     * @param target целевой путь (если есть)
+     * @param total ожидаемое количество объектов
+     * @param task выполняемая работа
+     * @throws Exception исключение, с которым завершилась работа; задание при этом получает статус FAILED
+     *                   (как и при {@link Error})
+     */
+    public void execute(Long userId, StorageJobType type, String source, String target, long total,
+                        JobTask task) throws Exception {
+        UUID jobId = create(userId, type, source, target, total, StorageJobStatus.RUNNING).getId();
+        live.add(jobId);
+        try {
+            task.run(jobId, progressOf(jobId));
+            updateStatus(jobId, StorageJobStatus.COMPLETED, null);
+        } catch (Throwable e) {
+            fail(jobId, e);
+            throw e;
+        } finally {
+            live.remove(jobId);
+        }
+    }
+
+    /**
+     * Повторно запускает прерванное задание под тем же идентификатором. Счётчики прогресса обнуляются.
+     *
+     * @param job прерванное задание
+     * @param task выполняемая работа
+     * @param successStatus статус, который получит задание при успешном завершении
+     */
+    public void resume(StorageJob job, JobTask task, StorageJobStatus successStatus) {
+        storageJobRepository.resetProgress(job.getId(), Instant.now());
+        submit(job.getId(), task, successStatus);
+    }
+
+    /**
+     * Забирает незавершённые задания, владелец которых не обновлял отметку дольше {@code storage.jobs.lease}.
+     * Каждое задание забирается условным UPDATE, поэтому при одновременном вызове на нескольких
+     * экземплярах задание достаётся только одному из них.
+     *
+     * @return задания, которые теперь принадлежат этому экземпляру
+     */
+    public List<StorageJob> claimInterrupted() {
+        Instant now = Instant.now();
+        Instant staleBefore = now.minus(lease);
+        List<StorageJob> claimed = new ArrayList<>();
+        for (StorageJob job : storageJobRepository.findByStatusIn(ACTIVE)) {
+            boolean stale = job.getHeartbeatAt() == null || job.getHeartbeatAt().isBefore(staleBefore);
+            if (stale && storageJobRepository.claim(job.getId(), instanceId, ACTIVE, staleBefore, now) == 1) {
+                job.setOwner(instanceId);
+                job.setHeartbeatAt(now);
+                claimed.add(job);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Продлевает аренду заданий, которые ждут в очереди или выполняются в этом экземпляре.
+     */
+    @Scheduled(fixedDelayString = "${storage.jobs.heartbeat-interval:PT30S}")
+    public void heartbeat() {
+        List<UUID> ids = List.copyOf(live);
+        if (!ids.isEmpty()) {
+            storageJobRepository.heartbeat(ids, instanceId, ACTIVE, Instant.now());
+        }
+    }
+
+    /**
+     * Сохраняет текущий этап задания.
+     *
+     * @param jobId идентификатор задания или {@code null}, если операция выполняется синхронно
+     * @param phase этап
+     */
+    public void updatePhase(UUID jobId, StorageJobPhase phase) {
+        if (jobId != null) {
+            storageJobRepository.updatePhase(jobId, phase, Instant.now());
+        }
+    }
+
+    /**
+     * Возвращает последние задания пользователя.
+     *
+     * @param userId идентификатор пользователя
+     * @return до 50 последних заданий без списков ошибок
+     */
+    @Transactional(readOnly = true)
+    public List<StorageJobDto> list(Long userId) {
+        return storageJobRepository.findTop50ByUserIdOrderByCreatedAtDesc(userId).stream()
+                .map(job -> toDto(job, List.of()))
+                .toList();
+    }
+
+    /**
+     * Возвращает состояние задания пользователя.
+     *
+     * @param userId идентификатор пользователя
+     * @param jobId идентификатор задания
+     * @return DTO задания со списком ошибок
+     * @throws ResourceNotFoundException если задание не найдено
+     */
+    @Transactional(readOnly = true)
+    public StorageJobDto get(Long userId, UUID jobId) {
+        StorageJob job = storageJobRepository.findByIdAndUserId(jobId, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Задание не найдено: " + jobId));
+        List<ObjectFailureDto> failures = storageJobFailureRepository
+                .findByJobIdOrderByIdAsc(jobId, Limit.of(MAX_STORED_FAILURES)).stream()
+                .map(f -> new ObjectFailureDto(f.getPath(), f.getCode(), f.getMessage()))
+                .toList();
+        return toDto(job, failures);
+    }
+
+    private StorageJob create(Long userId, StorageJobType type, String source, String target, long total,
+                              StorageJobStatus status) {
+        Instant now = Instant.now();
+        return storageJobRepository.save(StorageJob.builder()
+                .userId(userId)
+                .type(type)
+                .status(status)
+                .sourcePath(source)
+                .targetPath(target)
+                .totalObjects(total)
+                .owner(instanceId)
+                .heartbeatAt(now)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+    }
+
+    private void submit(UUID jobId, JobTask task, StorageJobStatus successStatus) {
+        live.add(jobId);
+        try {
+            jobExecutor.execute(() -> run(jobId, task, successStatus));
+        } catch (RuntimeException e) {
+            live.remove(jobId);
+            fail(jobId, e);
+            throw e;
+        }
+    }
+
+    private void run(UUID jobId, JobTask task, StorageJobStatus successStatus) {
+        try {
+            updateStatus(jobId, StorageJobStatus.RUNNING, null);
+            task.run(jobId, progressOf(jobId));
+            updateStatus(jobId, successStatus, null);
+        } catch (Exception e) {
+            log.warn("Storage job {} failed", jobId, e);
+            fail(jobId, e);
+        } catch (Error e) {
+            log.error("Storage job {} failed", jobId, e);
+            fail(jobId, e);
+            throw e;
+        } finally {
+            live.remove(jobId);
+        }
+    }
+
+    /**
+     * Отмечает задание неудавшимся. Ошибка записи статуса не должна скрыть исходную ошибку:
+     * в худшем случае задание заберёт другой экземпляр, когда истечёт аренда.
+     */
+    private void fail(UUID jobId, Throwable cause) {
+        try {
+            updateStatus(jobId, StorageJobStatus.FAILED, truncate(String.valueOf(cause.getMessage())));
+        } catch (RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private JobProgress progressOf(UUID jobId) {
+        AtomicInteger stored = new AtomicInteger();
+        return (processed, failures) -> {
+            storageJobRepository.addProgress(jobId, processed, failures.size(), Instant.now());
+            List<StorageJobFailure> toStore = failures.stream()
+                    .filter(f -> stored.getAndIncrement() < MAX_STORED_FAILURES)
+                    .map(f -> StorageJobFailure.builder()
+                            .jobId(jobId)
+                            .path(f.getPath())
+                            .code(f.getCode())
+                            .message(truncate(f.getMessage()))
+                            .build())
+                    .toList();
+            storageJobFailureRepository.saveAll(toStore);
+        };
+    }
+
+    private void updateStatus(UUID jobId, StorageJobStatus status, String error) {
+        storageJobRepository.updateStatus(jobId, status, error, Instant.now());
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > 2048 ? message.substring(0, 2048) : message;
+    }
+
+    static StorageJobDto toDto(StorageJob job, List<ObjectFailureDto> failures) {
+        return new StorageJobDto(
+                job.getId(),
+                job.getType(),
+                job.getStatus(),
+                job.getPhase(),
+                job.getSourcePath(),
+                job.getTargetPath(),
+                job.getTotalObjects(),
+                job.getProcessedObjects(),
+                job.getFailedObjects(),
+                job.getError(),
+                job.getCreatedAt(),
+                job.getUpdatedAt(),
+                failures
+        );
+    }
+}
@@ -0,0 +1,97 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+
+/**
+ * Метрики хранилища: объём переданных данных ({@code storage.transfer.bytes} с тегом {@code direction};
+ * учитываются только успешно переданные данные, а {@link #SENDFILE} — данные, переданные контейнеру
+ * для отправки через sendfile, факт отправки которых приложению уже не виден)
+ * и количество объектов в листингах ({@code storage.listing.objects} с тегом {@code source}).
+ * Время запросов к MinIO (при {@code storage.backend=minio}) замеряется отдельно, в {@code minio.requests}.
+ */
+@Component
+public class StorageMetrics {
+
+    public static final String UPLOAD = "upload";
+    public static final String DOWNLOAD = "download";
+    public static final String ZIP = "zip";
+    public static final String SENDFILE = "sendfile";
+
+    public static final String SOURCE_STORAGE = "storage";
+    public static final String SOURCE_INDEX = "index";
+
+    private final MeterRegistry meterRegistry;
+
+    public StorageMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Учитывает переданные байты.
+     *
+     * @param direction направление: {@link #UPLOAD}, {@link #DOWNLOAD}, {@link #ZIP} или {@link #SENDFILE}
+     * @param bytes количество байт
+     */
+    public void recordTransfer(String direction, long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        Counter.builder("storage.transfer.bytes")
+                .description("Объём данных, переданных через приложение")
+                .baseUnit("bytes")
+                .tag("direction", direction)
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    /**
+     * Учитывает количество объектов в листинге.
+     *
+     * @param source источник листинга: {@link #SOURCE_STORAGE} или {@link #SOURCE_INDEX}
+     * @param count количество объектов
+     */
+    public void recordListing(String source, long count) {
+        DistributionSummary.builder("storage.listing.objects")
+                .description("Количество объектов в листинге")
+                .tag("source", source)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(count);
+    }
+
+    /**
+     * Оборачивает ленивый листинг: количество объектов записывается, когда обход доходит до конца.
+     *
+     * @param source источник листинга
+     * @param items итератор листинга
+     * @return итератор с теми же элементами
+     */
+    public <T> Iterator<T> countListing(String source, Iterator<T> items) {
+        return new Iterator<>() {
+            private long count;
+            private boolean recorded;
+
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = items.hasNext();
+                if (!hasNext && !recorded) {
+                    recorded = true;
+                    recordListing(source, count);
+                }
+                return hasNext;
+            }
+
+            @Override
+            public T next() {
+                T item = items.next();
+                count++;
+                return item;
+            }
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+/**
+ * Операции над относительными путями ресурсов. Путь папки всегда оканчивается на "/",
+ * корневая папка пользователя обозначается пустой строкой.
+ */
+public final class StoragePaths {
+
+    private StoragePaths() {
+    }
+
+    /**
+     * Приводит путь папки к виду с завершающим "/"; пустой путь остаётся пустым.
+     */
+    public static String toDirectory(String path) {
+        if (path == null || path.isEmpty()) {
+            return "";
+        }
+        return path.endsWith("/") ? path : path + "/";
+    }
+
+    /**
+     * Возвращает путь родительской папки, например "docs/" для "docs/a.txt" и "docs/sub/".
+     */
+    public static String parentOf(String path) {
+        String trimmed = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        int idx = trimmed.lastIndexOf('/');
+        return idx >= 0 ? trimmed.substring(0, idx + 1) : "";
+    }
+
+    /**
+     * Возвращает имя ресурса без пути и завершающего "/".
+     */
+    public static String nameOf(String path) {
+        String trimmed = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        int idx = trimmed.lastIndexOf('/');
+        return idx >= 0 ? trimmed.substring(idx + 1) : trimmed;
+    }
+
+    /**
+     * Экранирует спецсимволы LIKE и добавляет "%" для поиска по префиксу.
+     */
+    public static String likePrefix(String prefix) {
+        return escapeLike(prefix) + "%";
+    }
+
+    /**
+     * Экранирует спецсимволы LIKE символом "\".
+     */
+    public static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
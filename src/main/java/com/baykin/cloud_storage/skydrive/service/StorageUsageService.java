@@ -0,0 +1,185 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import com.baykin.cloud_storage.skydrive.dto.StorageUsageDto;
+import com.baykin.cloud_storage.skydrive.exception.QuotaExceededException;
+import com.baykin.cloud_storage.skydrive.model.UserStorageUsage;
+import com.baykin.cloud_storage.skydrive.repository.UserStorageUsageRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Учёт занятого пользователями места и проверка квот.
+ * Счётчики меняются инкрементально в тех же транзакциях, что и индекс метаданных,
+ * а при сверке индекса с хранилищем пересчитываются целиком.
+ * <p>
+ * Перед записью данных место резервируется условным UPDATE ({@link #reserve}): параллельные загрузки
+ * и копирования одного пользователя не могут вместе превысить квоту. Резерв снимается после того,
+ * как файл попал в индекс, или при ошибке.
+ */
+@Service
+public class StorageUsageService {
+
+    private final UserStorageUsageRepository usageRepository;
+
+    /**
+     * Квота по умолчанию в байтах; 0 — без ограничений.
+     */
+    @Value("${storage.quota.default-bytes:0}")
+    private long defaultQuotaBytes;
+
+    /**
+     * Через сколько резерв, который никто не обновлял и не снял, считается потерянным.
+     */
+    @Value("${storage.quota.reservation-ttl:PT24H}")
+    private Duration reservationTtl;
+
+    public StorageUsageService(UserStorageUsageRepository usageRepository) {
+        this.usageRepository = usageRepository;
+    }
+
+    /**
+     * Место, зарезервированное под одну операцию. {@link #close()} снимает резерв; повторный вызов ничего не делает.
+     */
+    public final class Reservation implements AutoCloseable {
+
+        private final Long userId;
+        private final long bytes;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Reservation(Long userId, long bytes) {
+            this.userId = userId;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            if (bytes > 0 && released.compareAndSet(false, true)) {
+                usageRepository.release(userId, bytes);
+            }
+        }
+    }
+
+    /**
+     * Атомарно резервирует место под данные, которые будут записаны.
+     * Резерв нужно закрыть после добавления файла в индекс или при ошибке.
+     *
+     * @param userId идентификатор пользователя
+     * @param bytes размер записываемых данных
+     * @return резерв
+     * @throws QuotaExceededException если данные вместе с занятым и зарезервированным местом не помещаются в квоту
+     */
+    public Reservation reserve(Long userId, long bytes) {
+        if (bytes <= 0) {
+            return new Reservation(userId, 0);
+        }
+        usageRepository.ensureExists(userId);
+        if (usageRepository.reserve(userId, bytes, defaultQuotaBytes) == 0) {
+            StorageUsageDto usage = getUsage(userId);
+            throw new QuotaExceededException("Превышена квота хранилища: занято " + usage.getUsedBytes()
+                    + " из " + usage.getQuotaBytes() + " байт, требуется ещё " + bytes);
+        }
+        return new Reservation(userId, bytes);
+    }
+
+    /**
+     * Изменяет счётчики пользователя.
+     *
+     * @param userId идентификатор пользователя
+     * @param bytes изменение занятого объёма в байтах
+     * @param objects изменение количества файлов
+     */
+    @Transactional
+    public void add(Long userId, long bytes, long objects) {
+        if (bytes != 0 || objects != 0) {
+            usageRepository.add(userId, bytes, objects);
+        }
+    }
+
+    /**
+     * Пересчитывает счётчики пользователя по индексу метаданных, исправляя накопившееся расхождение.
+     *
+     * @param userId идентификатор пользователя
+     */
+    @Transactional
+    public void recalculate(Long userId) {
+        usageRepository.recalculate(userId);
+    }
+
+    /**
+     * Периодически пересчитывает счётчики всех пользователей, исправляя расхождения
+     * после гонок параллельных загрузок одного и того же пути.
+     */
+    @Scheduled(cron = "${storage.quota.reconcile-cron:0 30 * * * *}")
+    @Transactional
+    public void recalculateAll() {
+        usageRepository.recalculateAll();
+        usageRepository.releaseStale(Instant.now().minus(reservationTtl));
+    }
+
+    /**
+     * Возвращает занятое пользователем место и его квоту.
+     *
+     * @param userId идентификатор пользователя
+     * @return DTO с использованием хранилища
+     */
+    @Transactional(readOnly = true)
+    public StorageUsageDto getUsage(Long userId) {
+        Optional<UserStorageUsage> usage = usageRepository.findById(userId);
+        long quota = usage.map(this::quotaOf).orElse(defaultQuotaBytes);
+        return new StorageUsageDto(
+                usage.map(UserStorageUsage::getUsedBytes).orElse(0L),
+                usage.map(UserStorageUsage::getObjectCount).orElse(0L),
+                quota > 0 ? quota : null
+        );
+    }
+
+    /**
+     * Проверяет, что после добавления {@code additionalBytes} пользователь не превысит квоту с учётом резервов.
+     * Проверка не атомарна и годится только для раннего отказа; место под запись берётся через {@link #reserve}.
+     *
+     * @param userId идентификатор пользователя
+     * @param additionalBytes размер добавляемых данных
+     * @throws QuotaExceededException если квота будет превышена
+     */
+    @Transactional(readOnly = true)
+    public void checkQuota(Long userId, long additionalBytes) {
+        StorageUsageDto usage = getUsage(userId);
+        if (usage.getQuotaBytes() == null) {
+            return;
+        }
+        if (usage.getUsedBytes() + reservedOf(userId) + additionalBytes > usage.getQuotaBytes()) {
+            throw new QuotaExceededException("Превышена квота хранилища: занято " + usage.getUsedBytes()
+                    + " из " + usage.getQuotaBytes() + " байт, требуется ещё " + additionalBytes);
+        }
+    }
+
+    /**
+     * Возвращает свободное в пределах квоты место.
+     *
+     * @param userId идентификатор пользователя
+     * @return количество байт или {@link Long#MAX_VALUE}, если квота не ограничена
+     */
+    @Transactional(readOnly = true)
+    public long getRemainingBytes(Long userId) {
+        StorageUsageDto usage = getUsage(userId);
+        if (usage.getQuotaBytes() == null) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, usage.getQuotaBytes() - usage.getUsedBytes() - reservedOf(userId));
+    }
+
+    private long reservedOf(Long userId) {
+        return usageRepository.findById(userId).map(UserStorageUsage::getReservedBytes).orElse(0L);
+    }
+
+    private long quotaOf(UserStorageUsage usage) {
+        return usage.getQuotaBytes() != null ? usage.getQuotaBytes() : defaultQuotaBytes;
+    }
+}
@@ -0,0 +1,84 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Исполнитель для параллельной загрузки нескольких файлов одного запроса.
+ * Один запрос одновременно выполняет не больше {@code storage.upload.batch-parallelism} загрузок.
+ * При {@code storage.upload.virtual-threads=true} загрузки идут в виртуальных потоках, если их поддерживает JVM;
+ * иначе используется пул из {@code batch-parallelism} потоков.
+ */
+@Component
+public class UploadBatchExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadBatchExecutor.class);
+
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    public UploadBatchExecutor(@Value("${storage.upload.batch-parallelism:8}") int parallelism,
+                               @Value("${storage.upload.virtual-threads:false}") boolean virtualThreads) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("storage.upload.batch-parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        this.executor = createExecutor(parallelism, virtualThreads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Запускает задачи, ограничивая число одновременно выполняющихся.
+     * Метод возвращается, когда последняя задача запущена; результаты идут в порядке задач.
+     *
+     * @param tasks задачи
+     * @return результаты задач в исходном порядке
+     * @throws InterruptedException если поток прерван в ожидании свободного слота
+     */
+    public <T> List<Future<T>> submitAll(List<Callable<T>> tasks) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(parallelism);
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                inFlight.acquire();
+                futures.add(executor.submit(() -> {
+                    try {
+                        return task.call();
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw e;
+        }
+        return futures;
+    }
+
+    /**
+     * Виртуальные потоки ищутся через reflection, так как проект собирается под Java 17.
+     */
+    private static ExecutorService createExecutor(int parallelism, boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Virtual threads are not available on this JVM, using a pool of {} threads", parallelism);
+            }
+        }
+        return Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("upload-"));
+    }
+}
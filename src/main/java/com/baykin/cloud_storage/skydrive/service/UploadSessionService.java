@@ -0,0 +1,233 @@
+package com.baykin.cloud_storage.skydrive.service;
+
+import com.baykin.cloud_storage.skydrive.dto.UploadPartDto;
+import com.baykin.cloud_storage.skydrive.dto.UploadSessionDto;
+import com.baykin.cloud_storage.skydrive.exception.InvalidUploadException;
+import com.baykin.cloud_storage.skydrive.exception.PayloadTooLargeException;
+import com.baykin.cloud_storage.skydrive.exception.QuotaExceededException;
+import com.baykin.cloud_storage.skydrive.exception.ResourceNotFoundException;
+import com.baykin.cloud_storage.skydrive.model.UploadSession;
+import com.baykin.cloud_storage.skydrive.model.UploadSessionPart;
+import com.baykin.cloud_storage.skydrive.repository.UploadSessionPartRepository;
+import com.baykin.cloud_storage.skydrive.repository.UploadSessionRepository;
+import com.baykin.cloud_storage.skydrive.storage.StorageBackend;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Сессии загрузки файла по частям. Каждая сессия — это загрузка по частям в хранилище,
+ * переданные части журналируются в Postgres, поэтому после обрыва клиент может узнать,
+ * какие части уже получены, и дослать остальные. Части одной сессии можно отправлять параллельно.
+ * Сессии без активности дольше {@code storage.upload.session-ttl} отменяются по расписанию.
+ */
+@Service
+public class UploadSessionService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadSessionService.class);
+
+    private final StorageBackend storageBackend;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadSessionPartRepository uploadSessionPartRepository;
+    private final StorageUsageService storageUsageService;
+    private final int maxChunkSize;
+    private final Duration sessionTtl;
+
+    public UploadSessionService(StorageBackend storageBackend,
+                                UploadSessionRepository uploadSessionRepository,
+                                UploadSessionPartRepository uploadSessionPartRepository,
+                                StorageUsageService storageUsageService,
+                                @Value("${storage.upload.max-chunk-size:67108864}") int maxChunkSize,
+                                @Value("${storage.upload.session-ttl:24h}") Duration sessionTtl) {
+        if (maxChunkSize < StorageBackend.MIN_PART_SIZE) {
+            throw new IllegalArgumentException("storage.upload.max-chunk-size must be at least " + StorageBackend.MIN_PART_SIZE);
+        }
+        this.storageBackend = storageBackend;
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.uploadSessionPartRepository = uploadSessionPartRepository;
+        this.storageUsageService = storageUsageService;
+        this.maxChunkSize = maxChunkSize;
+        this.sessionTtl = sessionTtl;
+    }
+
+    /**
+     * Результат завершения сессии.
+     *
+     * @param session завершённая сессия
+     * @param etag ETag собранного объекта
+     * @param size размер объекта в байтах
+     */
+    public record Completed(UploadSession session, String etag, long size) {
+    }
+
+    /**
+     * Начинает сессию загрузки.
+     *
+     * @param userId идентификатор пользователя
+     * @param path путь к файлу относительно корня пользователя
+     * @param objectName полный ключ объекта
+     * @param contentType MIME-тип
+     * @return DTO новой сессии
+     * @throws Exception при ошибках хранилища
+     */
+    public UploadSessionDto create(Long userId, String path, String objectName, String contentType) throws Exception {
+        String uploadId = storageBackend.createUpload(objectName, contentType);
+        Instant now = Instant.now();
+        UploadSession session = uploadSessionRepository.save(UploadSession.builder()
+                .userId(userId)
+                .path(path)
+                .objectName(objectName)
+                .uploadId(uploadId)
+                .contentType(contentType)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        return toDto(session, List.of());
+    }
+
+    /**
+     * Возвращает состояние сессии вместе со списком полученных частей.
+     *
+     * @param userId идентификатор пользователя
+     * @param sessionId идентификатор сессии
+     * @return DTO сессии
+     * @throws ResourceNotFoundException если сессия не найдена
+     */
+    public UploadSessionDto get(Long userId, UUID sessionId) {
+        UploadSession session = find(userId, sessionId);
+        return toDto(session, uploadSessionPartRepository.findBySessionIdOrderByPartNumberAsc(sessionId));
+    }
+
+    /**
+     * Передаёт часть файла в хранилище потоком, не читая её в память. Размер части берётся из
+     * заголовка Content-Length и проверяется до чтения тела: вместе с уже переданными частями
+     * всех сессий пользователя он должен помещаться в квоту.
+     * Повторная отправка части с тем же номером заменяет прежнюю.
+     *
+     * @param userId идентификатор пользователя
+     * @param sessionId идентификатор сессии
+     * @param partNumber номер части, от 1 до 10000
+     * @param content содержимое части
+     * @param size размер части из Content-Length или {@code -1}, если он не передан
+     * @return DTO принятой части
+     * @throws InvalidUploadException если номер части некорректен, часть пуста или размер не указан
+     * @throws PayloadTooLargeException если часть больше {@code storage.upload.max-chunk-size}
+     * @throws QuotaExceededException если переданные части не помещаются в квоту пользователя
+     * @throws Exception при ошибках хранилища или ввода-вывода
+     */
+    public UploadPartDto uploadPart(Long userId, UUID sessionId, int partNumber, InputStream content,
+                                    long size) throws Exception {
+        if (partNumber < 1 || partNumber > StorageBackend.MAX_PARTS) {
+            throw new InvalidUploadException("Номер части должен быть от 1 до " + StorageBackend.MAX_PARTS);
+        }
+        if (size < 0) {
+            throw new InvalidUploadException("Не указан размер части (Content-Length)");
+        }
+        if (size > maxChunkSize) {
+            throw new PayloadTooLargeException("Часть больше " + maxChunkSize + " байт");
+        }
+        if (size == 0) {
+            throw new InvalidUploadException("Пустая часть");
+        }
+        UploadSession session = find(userId, sessionId);
+        storageUsageService.checkQuota(userId,
+                uploadSessionPartRepository.sumStagedBytes(userId, sessionId, partNumber) + size);
+        String etag = StorageBackend.normalizeEtag(
+                storageBackend.uploadPart(session.getObjectName(), session.getUploadId(), partNumber, content, size));
+        uploadSessionPartRepository.upsert(sessionId, partNumber, etag, size);
+        uploadSessionRepository.touch(sessionId, Instant.now());
+        return new UploadPartDto(partNumber, size, etag);
+    }
+
+    /**
+     * Собирает объект из полученных частей и закрывает сессию.
+     *
+     * @param userId идентификатор пользователя
+     * @param sessionId идентификатор сессии
+     * @return завершённая сессия, ETag и размер объекта
+     * @throws InvalidUploadException если частей нет или какая-то часть, кроме последней, меньше 5 МиБ
+     * @throws Exception при ошибках хранилища
+     */
+    public Completed complete(Long userId, UUID sessionId) throws Exception {
+        UploadSession session = find(userId, sessionId);
+        List<UploadSessionPart> parts = uploadSessionPartRepository.findBySessionIdOrderByPartNumberAsc(sessionId);
+        if (parts.isEmpty()) {
+            throw new InvalidUploadException("Не передано ни одной части");
+        }
+        List<StorageBackend.UploadedPart> uploaded = new ArrayList<>(parts.size());
+        long size = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            UploadSessionPart part = parts.get(i);
+            if (i < parts.size() - 1 && part.getSize() < StorageBackend.MIN_PART_SIZE) {
+                throw new InvalidUploadException("Часть " + part.getPartNumber()
+                        + " меньше " + StorageBackend.MIN_PART_SIZE + " байт; меньше может быть только последняя часть");
+            }
+            uploaded.add(new StorageBackend.UploadedPart(part.getPartNumber(), part.getEtag()));
+            size += part.getSize();
+        }
+        StorageBackend.Written written = storageBackend.completeUpload(
+                session.getObjectName(), session.getUploadId(), uploaded);
+        uploadSessionRepository.delete(session);
+        return new Completed(session, written.etag(), size);
+    }
+
+    /**
+     * Отменяет сессию и удаляет уже полученные части.
+     *
+     * @param userId идентификатор пользователя
+     * @param sessionId идентификатор сессии
+     * @throws ResourceNotFoundException если сессия не найдена
+     * @throws Exception при ошибках хранилища
+     */
+    public void abort(Long userId, UUID sessionId) throws Exception {
+        abort(find(userId, sessionId));
+    }
+
+    /**
+     * Отменяет сессии, в которых не было активности дольше {@code storage.upload.session-ttl}.
+     */
+    @Scheduled(fixedDelayString = "${storage.upload.sweep-interval:PT15M}")
+    public void abortExpired() {
+        for (UploadSession session : uploadSessionRepository.findByUpdatedAtBefore(Instant.now().minus(sessionTtl))) {
+            try {
+                abort(session);
+                log.info("Upload session {} of user {} expired and was aborted", session.getId(), session.getUserId());
+            } catch (Exception e) {
+                log.warn("Failed to abort expired upload session {}", session.getId(), e);
+            }
+        }
+    }
+
+    private void abort(UploadSession session) throws Exception {
+        // уже отменённая или завершённая загрузка ошибкой не считается — остаётся убрать запись о сессии
+        storageBackend.abortUpload(session.getObjectName(), session.getUploadId());
+        uploadSessionRepository.delete(session);
+    }
+
+    private UploadSession find(Long userId, UUID sessionId) {
+        return uploadSessionRepository.findByIdAndUserId(sessionId, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Сессия загрузки не найдена: " + sessionId));
+    }
+
+    private UploadSessionDto toDto(UploadSession session, List<UploadSessionPart> parts) {
+        return new UploadSessionDto(
+                session.getId(),
+                session.getPath(),
+                maxChunkSize,
+                StorageBackend.MIN_PART_SIZE,
+                session.getUpdatedAt().plus(sessionTtl),
+                parts.stream()
+                        .map(p -> new UploadPartDto(p.getPartNumber(), p.getSize(), p.getEtag()))
+                        .toList()
+        );
+    }
+}
@@ -0,0 +1,287 @@
+package com.baykin.cloud_storage.skydrive.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Хранилище в памяти процесса для тестов и бенчмарков ({@code storage.backend=memory}): объекты лежат
+ * в {@link ConcurrentSkipListMap}, отсортированной по ключу, поэтому листинг по префиксу — это обход
+ * поддиапазона без блокировок. Содержимое теряется при остановке приложения, а размер объекта ограничен 2 ГиБ.
+ * <p>
+ * Чтобы приблизить поведение к сетевому хранилищу, каждая операция может ждать
+ * {@code storage.memory.latency} плюс случайную добавку до {@code storage.memory.latency-jitter}
+ * и завершаться {@link IOException} с вероятностью {@code storage.memory.failure-rate}.
+ * По умолчанию задержек и сбоев нет.
+ */
+@Component
+@ConditionalOnProperty(prefix = "storage", name = "backend", havingValue = "memory")
+public class InMemoryStorageBackend implements StorageBackend {
+
+    private record StoredObject(byte[] data, String etag, Instant lastModified, String contentType) {
+    }
+
+    private record Upload(String key, String contentType, ConcurrentSkipListMap<Integer, byte[]> parts) {
+    }
+
+    private final ConcurrentSkipListMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final double failureRate;
+
+    public InMemoryStorageBackend(@Value("${storage.memory.latency:0ms}") Duration latency,
+                                  @Value("${storage.memory.latency-jitter:0ms}") Duration latencyJitter,
+                                  @Value("${storage.memory.failure-rate:0}") double failureRate) {
+        if (latency.isNegative() || latencyJitter.isNegative()) {
+            throw new IllegalArgumentException("storage.memory.latency and latency-jitter must not be negative");
+        }
+        if (failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("storage.memory.failure-rate must be between 0 and 1");
+        }
+        this.latencyNanos = latency.toNanos();
+        this.jitterNanos = latencyJitter.toNanos();
+        this.failureRate = failureRate;
+    }
+
+    @Override
+    public void initialize() {
+    }
+
+    @Override
+    public Written put(String key, InputStream content, long size, String contentType) throws IOException {
+        simulate("put");
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Объект больше 2 ГиБ нельзя хранить в памяти: " + key);
+        }
+        byte[] data = content.readNBytes((int) size);
+        if (data.length != size) {
+            throw new IOException("Поток закончился после " + data.length + " байт из " + size);
+        }
+        return store(key, data, md5(data), contentType);
+    }
+
+    @Override
+    public Written putStream(String key, InputStream content, String contentType) throws IOException {
+        simulate("putStream");
+        byte[] data = content.readAllBytes();
+        return store(key, data, md5(data), contentType);
+    }
+
+    @Override
+    public InputStream get(String key, Long offset, Long length) throws IOException {
+        simulate("get");
+        StoredObject object = objects.get(key);
+        if (object == null) {
+            throw new ObjectNotFoundException(key);
+        }
+        int start = offset != null ? (int) Math.min(offset, object.data().length) : 0;
+        int count = object.data().length - start;
+        if (length != null) {
+            count = (int) Math.min(count, length);
+        }
+        return new ByteArrayInputStream(object.data(), start, count);
+    }
+
+    @Override
+    public Optional<ObjectInfo> stat(String key) throws IOException {
+        simulate("stat");
+        StoredObject object = objects.get(key);
+        return object != null ? Optional.of(info(key, object)) : Optional.empty();
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        simulate("delete");
+        objects.remove(key);
+    }
+
+    @Override
+    public List<DeleteError> deleteAll(List<String> keys) throws IOException {
+        simulate("deleteAll");
+        for (String key : keys) {
+            objects.remove(key);
+        }
+        return List.of();
+    }
+
+    /**
+     * Копия ссылается на тот же массив данных: объекты неизменяемы, запись всегда создаёт новый массив.
+     */
+    @Override
+    public void copy(String source, String target, long size) throws IOException {
+        simulate("copy");
+        StoredObject object = objects.get(source);
+        if (object == null) {
+            throw new ObjectNotFoundException(source);
+        }
+        objects.put(target, new StoredObject(object.data(), object.etag(), Instant.now(), object.contentType()));
+    }
+
+    /**
+     * Перечисляет объекты по возрастанию ключей. Итератор слабо согласован: изменения, сделанные
+     * во время обхода, могут попасть или не попасть в результат, но исключений не вызывают.
+     */
+    @Override
+    public Iterator<ObjectInfo> list(String prefix) {
+        try {
+            simulate("list");
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось получить список объектов: " + prefix, e);
+        }
+        Iterator<Map.Entry<String, StoredObject>> entries = objects.tailMap(prefix, true).entrySet().iterator();
+        return new Iterator<>() {
+            private Map.Entry<String, StoredObject> next;
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !done) {
+                    Map.Entry<String, StoredObject> entry = entries.hasNext() ? entries.next() : null;
+                    if (entry != null && entry.getKey().startsWith(prefix)) {
+                        next = entry;
+                    } else {
+                        done = true;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public ObjectInfo next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<String, StoredObject> entry = next;
+                next = null;
+                return info(entry.getKey(), entry.getValue());
+            }
+        };
+    }
+
+    @Override
+    public String createUpload(String key, String contentType) throws IOException {
+        simulate("createUpload");
+        String uploadId = UUID.randomUUID().toString();
+        uploads.put(uploadId, new Upload(key, contentType, new ConcurrentSkipListMap<>()));
+        return uploadId;
+    }
+
+    /**
+     * Сохраняет часть; ETag части — MD5 содержимого, как в S3.
+     */
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream content, long size) throws IOException {
+        simulate("uploadPart");
+        Upload upload = upload(key, uploadId);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Часть больше 2 ГиБ нельзя хранить в памяти: " + key);
+        }
+        byte[] data = content.readNBytes((int) size);
+        if (data.length != size) {
+            throw new IOException("Поток закончился после " + data.length + " байт из " + size);
+        }
+        upload.parts().put(partNumber, data);
+        return md5(data);
+    }
+
+    /**
+     * Склеивает части; ETag объекта вычисляется так же, как в S3: MD5 от MD5 частей и число частей.
+     */
+    @Override
+    public Written completeUpload(String key, String uploadId, List<UploadedPart> parts) throws IOException {
+        simulate("completeUpload");
+        Upload upload = upload(key, uploadId);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        MessageDigest partDigests = newMd5();
+        for (UploadedPart part : parts) {
+            byte[] partData = upload.parts().get(part.partNumber());
+            if (partData == null) {
+                throw new ObjectNotFoundException(key + " (часть " + part.partNumber() + ")");
+            }
+            data.writeBytes(partData);
+            partDigests.update(newMd5().digest(partData));
+        }
+        String etag = HexFormat.of().formatHex(partDigests.digest()) + "-" + parts.size();
+        Written written = store(key, data.toByteArray(), etag, upload.contentType());
+        uploads.remove(uploadId);
+        return written;
+    }
+
+    @Override
+    public void abortUpload(String key, String uploadId) throws IOException {
+        simulate("abortUpload");
+        uploads.remove(uploadId);
+    }
+
+    private Written store(String key, byte[] data, String etag, String contentType) {
+        objects.put(key, new StoredObject(data, etag, Instant.now(), contentType));
+        return new Written(etag, data.length);
+    }
+
+    private Upload upload(String key, String uploadId) {
+        Upload upload = uploads.get(uploadId);
+        if (upload == null || !upload.key().equals(key)) {
+            throw new ObjectNotFoundException(key + " (загрузка " + uploadId + ")");
+        }
+        return upload;
+    }
+
+    /**
+     * Выдерживает настроенную задержку и с заданной вероятностью имитирует сбой хранилища.
+     */
+    private void simulate(String operation) throws IOException {
+        long delay = latencyNanos;
+        if (jitterNanos > 0) {
+            delay += ThreadLocalRandom.current().nextLong(jitterNanos + 1);
+        }
+        if (delay > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Операция прервана: " + operation);
+            }
+        }
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            throw new IOException("Имитация сбоя хранилища: " + operation);
+        }
+    }
+
+    private static ObjectInfo info(String key, StoredObject object) {
+        return new ObjectInfo(key, object.data().length, object.etag(), object.lastModified(), object.contentType());
+    }
+
+    private static String md5(byte[] data) {
+        return HexFormat.of().formatHex(newMd5().digest(data));
+    }
+
+    private static MessageDigest newMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package com.baykin.cloud_storage.skydrive.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище в каталоге локальной файловой системы {@code storage.local.root} для установок на одном узле.
+ * Ключ объекта — путь относительно корня; маркер пустой папки хранится файлом {@value #FOLDER_MARKER}
+ * внутри неё, а каталоги без маркера и содержимого удаляются вместе с последним файлом, как префиксы в S3.
+ * <p>
+ * Данные пишутся во временный файл и публикуются атомарным {@link Files#move}, поэтому читатели
+ * никогда не видят частично записанный объект, а файлы после публикации не изменяются.
+ * Запись и сборка частей идут через {@link FileChannel#transferFrom}/{@link FileChannel#transferTo},
+ * копирование — через {@link Files#copy}, которые ядро выполняет без копирования в память приложения.
+ * ETag вычисляется по времени изменения и размеру файла, как у nginx.
+ * <p>
+ * В отличие от S3, файл и папка не могут иметь один и тот же путь: ключи {@code a} и {@code a/b} несовместимы.
+ */
+@Component
+@ConditionalOnProperty(prefix = "storage", name = "backend", havingValue = "local")
+public class LocalStorageBackend implements StorageBackend {
+
+    /**
+     * Имя файла-маркера папки; такое имя зарезервировано и не может быть ключом объекта.
+     */
+    static final String FOLDER_MARKER = ".skydrive-folder";
+
+    private static final String TEMP_DIR = ".tmp";
+    private static final String UPLOADS_DIR = ".uploads";
+
+    /**
+     * Сколько раз повторяется публикация файла, если его каталог удалили параллельно с записью.
+     */
+    private static final int PUBLISH_ATTEMPTS = 3;
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+
+    private final Path root;
+    private final Path tempDir;
+    private final Path uploadsDir;
+
+    public LocalStorageBackend(@Value("${storage.local.root:data/storage}") Path root) {
+        this.root = root.toAbsolutePath().normalize();
+        this.tempDir = this.root.resolve(TEMP_DIR);
+        this.uploadsDir = this.root.resolve(UPLOADS_DIR);
+    }
+
+    /**
+     * Создаёт корневой каталог и удаляет временные файлы, оставшиеся после аварийной остановки.
+     */
+    @Override
+    public void initialize() throws IOException {
+        Files.createDirectories(root);
+        if (Files.exists(tempDir)) {
+            deleteRecursively(tempDir);
+        }
+        Files.createDirectories(tempDir);
+        Files.createDirectories(uploadsDir);
+    }
+
+    @Override
+    public Written put(String key, InputStream content, long size, String contentType) throws IOException {
+        Path target = objectPath(key);
+        Path temp = newTempPath();
+        try {
+            long written = write(content, size, temp);
+            if (written != size) {
+                throw new IOException("Поток закончился после " + written + " байт из " + size);
+            }
+            return new Written(publish(temp, target), written);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public Written putStream(String key, InputStream content, String contentType) throws IOException {
+        Path target = objectPath(key);
+        Path temp = newTempPath();
+        try {
+            long written = write(content, -1, temp);
+            return new Written(publish(temp, target), written);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream get(String key, Long offset, Long length) throws IOException {
+        Path path = objectPath(key);
+        if (Files.isDirectory(path)) {
+            throw new ObjectNotFoundException(key);
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new ObjectNotFoundException(key);
+        }
+        try {
+            if (offset != null) {
+                channel.position(offset);
+            }
+            InputStream in = Channels.newInputStream(channel);
+            return length != null ? new RangeInputStream(in, length) : in;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<ObjectInfo> stat(String key) throws IOException {
+        Path path = objectPath(key);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+        if (!attributes.isRegularFile()) {
+            return Optional.empty();
+        }
+        String contentType = key.endsWith("/") ? null : Files.probeContentType(path);
+        return Optional.of(new ObjectInfo(key, attributes.size(), etag(attributes),
+                attributes.lastModifiedTime().toInstant(), contentType));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Path path = objectPath(key);
+        Files.deleteIfExists(path);
+        prune(path.getParent());
+    }
+
+    @Override
+    public List<DeleteError> deleteAll(List<String> keys) {
+        List<DeleteError> errors = new ArrayList<>();
+        for (String key : keys) {
+            try {
+                delete(key);
+            } catch (IOException | RuntimeException e) {
+                errors.add(new DeleteError(key, e.getClass().getSimpleName(), e.getMessage()));
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Копирует файл с сохранением времени изменения, поэтому ETag копии совпадает с ETag оригинала.
+     */
+    @Override
+    public void copy(String source, String target, long size) throws IOException {
+        Path from = objectPath(source);
+        Path to = objectPath(target);
+        if (!Files.isRegularFile(from)) {
+            throw new ObjectNotFoundException(source);
+        }
+        Path temp = newTempPath();
+        try {
+            Files.copy(from, temp, StandardCopyOption.COPY_ATTRIBUTES);
+            publish(temp, to);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Перечисляет объекты обходом каталога через {@link Files#walk}; порядок не определён.
+     * Файлы, удалённые во время обхода, пропускаются.
+     */
+    @Override
+    public Iterator<ObjectInfo> list(String prefix) {
+        int slash = prefix.lastIndexOf('/');
+        Path base = slash < 0 ? root : resolve(prefix.substring(0, slash + 1));
+        if (!Files.isDirectory(base)) {
+            return Collections.emptyIterator();
+        }
+        Stream<Path> paths;
+        try {
+            paths = Files.walk(base);
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось получить список объектов: " + prefix, e);
+        }
+        Iterator<ObjectInfo> objects = paths
+                .filter(path -> !isInternal(path))
+                .map(this::describe)
+                .flatMap(Optional::stream)
+                .filter(info -> info.key().startsWith(prefix))
+                .iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    if (objects.hasNext()) {
+                        return true;
+                    }
+                } catch (UncheckedIOException e) {
+                    paths.close();
+                    throw new IllegalStateException("Не удалось получить список объектов: " + prefix, e);
+                }
+                paths.close();
+                return false;
+            }
+
+            @Override
+            public ObjectInfo next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return objects.next();
+            }
+        };
+    }
+
+    @Override
+    public String createUpload(String key, String contentType) throws IOException {
+        objectPath(key);
+        String uploadId = UUID.randomUUID().toString();
+        Files.createDirectories(uploadsDir.resolve(uploadId));
+        return uploadId;
+    }
+
+    /**
+     * Сохраняет часть в каталоге загрузки; ETag части — MD5 содержимого, как в S3.
+     */
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream content, long size) throws Exception {
+        Path dir = uploadDir(uploadId);
+        if (!Files.isDirectory(dir)) {
+            throw new ObjectNotFoundException(key + " (загрузка " + uploadId + ")");
+        }
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        Path temp = newTempPath();
+        try {
+            long written = write(new DigestInputStream(content, md5), size, temp);
+            if (written != size) {
+                throw new IOException("Поток закончился после " + written + " байт из " + size);
+            }
+            Files.move(temp, dir.resolve(Integer.toString(partNumber)),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return HexFormat.of().formatHex(md5.digest());
+    }
+
+    @Override
+    public Written completeUpload(String key, String uploadId, List<UploadedPart> parts) throws IOException {
+        Path dir = uploadDir(uploadId);
+        Path target = objectPath(key);
+        Path temp = newTempPath();
+        try {
+            long size = 0;
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                for (UploadedPart part : parts) {
+                    Path partFile = dir.resolve(Integer.toString(part.partNumber()));
+                    try (FileChannel in = FileChannel.open(partFile, StandardOpenOption.READ)) {
+                        long partSize = in.size();
+                        for (long position = 0; position < partSize; ) {
+                            position += in.transferTo(position, partSize - position, out);
+                        }
+                        size += partSize;
+                    } catch (NoSuchFileException e) {
+                        throw new ObjectNotFoundException(key + " (часть " + part.partNumber() + ")");
+                    }
+                }
+            }
+            String etag = publish(temp, target);
+            deleteRecursively(dir);
+            return new Written(etag, size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void abortUpload(String key, String uploadId) throws IOException {
+        Path dir = uploadDir(uploadId);
+        if (Files.exists(dir)) {
+            deleteRecursively(dir);
+        }
+    }
+
+    @Override
+    public Optional<Path> localFile(String key) {
+        Path path = objectPath(key);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    /**
+     * Копирует поток в файл через {@link FileChannel#transferFrom}; если поток — {@link java.io.FileInputStream},
+     * данные копируются ядром между файлами.
+     *
+     * @param limit сколько байт прочитать или {@code -1} — до конца потока
+     * @return количество записанных байт
+     */
+    private static long write(InputStream content, long limit, Path temp) throws IOException {
+        // канал не закрывается: поток принадлежит вызывающему коду
+        ReadableByteChannel in = Channels.newChannel(content);
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long position = 0;
+            while (limit < 0 || position < limit) {
+                long chunk = limit < 0 ? TRANSFER_CHUNK : Math.min(TRANSFER_CHUNK, limit - position);
+                long transferred = out.transferFrom(in, position, chunk);
+                if (transferred == 0) {
+                    break;
+                }
+                position += transferred;
+            }
+            out.force(false);
+            return position;
+        }
+    }
+
+    /**
+     * Атомарно переносит готовый файл на место объекта, заменяя прежний.
+     *
+     * @return ETag опубликованного файла
+     */
+    private String publish(Path temp, Path target) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Files.createDirectories(target.getParent());
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                return etag(Files.readAttributes(target, BasicFileAttributes.class));
+            } catch (NoSuchFileException e) {
+                // каталог удалён параллельным удалением последнего файла в нём
+                if (attempt == PUBLISH_ATTEMPTS || !Files.exists(temp)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Удаляет опустевшие каталоги от {@code dir} вверх до корня. Каталог с маркером папки не пуст и остаётся.
+     */
+    private void prune(Path dir) throws IOException {
+        while (dir != null && dir.startsWith(root) && !dir.equals(root)) {
+            try {
+                Files.delete(dir);
+            } catch (DirectoryNotEmptyException e) {
+                return;
+            } catch (NoSuchFileException e) {
+                // уже удалён параллельно
+            }
+            dir = dir.getParent();
+        }
+    }
+
+    private Optional<ObjectInfo> describe(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return Optional.empty();
+            }
+            String key = keyOf(path);
+            return Optional.of(new ObjectInfo(key, attributes.size(), etag(attributes),
+                    attributes.lastModifiedTime().toInstant(), null));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String keyOf(Path path) {
+        boolean marker = path.getFileName().toString().equals(FOLDER_MARKER);
+        String relative = root.relativize(marker ? path.getParent() : path).toString()
+                .replace(path.getFileSystem().getSeparator(), "/");
+        return marker ? relative + "/" : relative;
+    }
+
+    /**
+     * Файл объекта: для маркера папки — файл {@value #FOLDER_MARKER} внутри неё.
+     */
+    private Path objectPath(String key) {
+        if (key.isEmpty() || key.equals("/")) {
+            throw new IllegalArgumentException("Пустой ключ объекта");
+        }
+        Path path = resolve(key);
+        return key.endsWith("/") ? path.resolve(FOLDER_MARKER) : path;
+    }
+
+    private Path resolve(String key) {
+        Path path = root.resolve(key.endsWith("/") ? key.substring(0, key.length() - 1) : key).normalize();
+        if (!path.startsWith(root) || isInternal(path)
+                || (!key.endsWith("/") && path.getFileName().toString().equals(FOLDER_MARKER))) {
+            throw new IllegalArgumentException("Недопустимый ключ объекта: " + key);
+        }
+        return path;
+    }
+
+    private boolean isInternal(Path path) {
+        return path.startsWith(tempDir) || path.startsWith(uploadsDir);
+    }
+
+    private Path uploadDir(String uploadId) {
+        return uploadsDir.resolve(UUID.fromString(uploadId).toString());
+    }
+
+    private Path newTempPath() {
+        return tempDir.resolve(UUID.randomUUID().toString());
+    }
+
+    private static String etag(BasicFileAttributes attributes) {
+        return Long.toHexString(attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS))
+                + "-" + Long.toHexString(attributes.size());
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Ограничивает поток заданным количеством байт.
+     */
+    private static final class RangeInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
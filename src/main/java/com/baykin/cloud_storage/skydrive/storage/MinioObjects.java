@@ -0,0 +1,67 @@
+package com.baykin.cloud_storage.skydrive.storage;
+
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Item;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Вспомогательные операции MinIO: ленивый листинг и ожидание асинхронных вызовов.
+ */
+final class MinioObjects {
+
+    private MinioObjects() {
+    }
+
+    /**
+     * Лениво перечисляет объекты MinIO с заданным префиксом.
+     *
+     * @param minioClient клиент MinIO
+     * @param bucket бакет
+     * @param prefix префикс ключей
+     * @param recursive если true — включая вложенные папки
+     * @return итератор объектов; ошибки MinIO оборачиваются в {@link IllegalStateException}
+     */
+    static Iterator<Item> list(MinioClient minioClient, String bucket, String prefix, boolean recursive) {
+        Iterator<Result<Item>> results = minioClient.listObjects(
+                ListObjectsArgs.builder()
+                        .bucket(bucket)
+                        .prefix(prefix)
+                        .recursive(recursive)
+                        .build()
+        ).iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return results.hasNext();
+            }
+
+            @Override
+            public Item next() {
+                try {
+                    return results.next().get();
+                } catch (Exception e) {
+                    throw new IllegalStateException("Не удалось получить список объектов: " + prefix, e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Дожидается результата асинхронной операции MinIO, пробрасывая исходное исключение.
+     */
+    static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.baykin.cloud_storage.skydrive.storage;
+
+import io.minio.*;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import io.minio.messages.Part;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Хранилище в бакете MinIO (S3). Копирование выполняется самим MinIO, потоки неизвестной длины
+ * загружаются через {@link StreamingObjectUploader}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "storage", name = "backend", havingValue = "minio", matchIfMissing = true)
+public class MinioStorageBackend implements StorageBackend {
+
+    /**
+     * Максимальный размер объекта для CopyObject; более крупные объекты копируются через ComposeObject
+     * частями (UploadPartCopy).
+     */
+    static final long MAX_COPY_OBJECT_SIZE = 5L * 1024 * 1024 * 1024;
+
+    private static final String NO_SUCH_KEY = "NoSuchKey";
+
+    private final MinioClient minioClient;
+    private final MultipartMinioClient multipartMinioClient;
+    private final StreamingObjectUploader streamingObjectUploader;
+    private final String bucket;
+
+    public MinioStorageBackend(MinioClient minioClient,
+                               MultipartMinioClient multipartMinioClient,
+                               @Value("${minio.bucket-name}") String bucket,
+                               @Value("${storage.upload.part-size:8388608}") int partSize,
+                               @Value("${storage.upload.parts-in-flight:2}") int partsInFlight) {
+        this.minioClient = minioClient;
+        this.multipartMinioClient = multipartMinioClient;
+        this.bucket = bucket;
+        this.streamingObjectUploader = new StreamingObjectUploader(multipartMinioClient, bucket, partSize, partsInFlight);
+    }
+
+    @Override
+    public void initialize() throws Exception {
+        boolean found = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucket).build());
+        if (!found) {
+            minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucket).build());
+        }
+    }
+
+    @Override
+    public Written put(String key, InputStream content, long size, String contentType) throws Exception {
+        PutObjectArgs.Builder args = PutObjectArgs.builder()
+                .bucket(bucket)
+                .object(key)
+                .stream(content, size, -1);
+        if (contentType != null) {
+            args.contentType(contentType);
+        }
+        return new Written(StorageBackend.normalizeEtag(minioClient.putObject(args.build()).etag()), size);
+    }
+
+    @Override
+    public Written putStream(String key, InputStream content, String contentType) throws Exception {
+        Written written = streamingObjectUploader.upload(key, contentType, content);
+        return new Written(StorageBackend.normalizeEtag(written.etag()), written.size());
+    }
+
+    @Override
+    public InputStream get(String key, Long offset, Long length) throws Exception {
+        try {
+            return minioClient.getObject(GetObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(key)
+                    .offset(offset)
+                    .length(length)
+                    .build());
+        } catch (ErrorResponseException e) {
+            if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
+                throw new ObjectNotFoundException(key);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<ObjectInfo> stat(String key) throws Exception {
+        try {
+            StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(key)
+                    .build());
+            return Optional.of(new ObjectInfo(key, stat.size(), StorageBackend.normalizeEtag(stat.etag()),
+                    stat.lastModified() != null ? stat.lastModified().toInstant() : null, stat.contentType()));
+        } catch (ErrorResponseException e) {
+            if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void delete(String key) throws Exception {
+        minioClient.removeObject(RemoveObjectArgs.builder()
+                .bucket(bucket)
+                .object(key)
+                .build());
+    }
+
+    /**
+     * Удаляет пакет одним запросом multi-object delete.
+     */
+    @Override
+    public List<DeleteError> deleteAll(List<String> keys) throws Exception {
+        List<DeleteObject> objects = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            objects.add(new DeleteObject(key));
+        }
+        List<DeleteError> errors = new ArrayList<>();
+        for (Result<io.minio.messages.DeleteError> result : minioClient.removeObjects(RemoveObjectsArgs.builder()
+                .bucket(bucket)
+                .objects(objects)
+                .build())) {
+            io.minio.messages.DeleteError error = result.get();
+            errors.add(new DeleteError(error.objectName(), error.code(), error.message()));
+        }
+        return errors;
+    }
+
+    @Override
+    public void copy(String source, String target, long size) throws Exception {
+        try {
+            if (size > MAX_COPY_OBJECT_SIZE) {
+                minioClient.composeObject(ComposeObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(target)
+                        .sources(List.of(ComposeSource.builder()
+                                .bucket(bucket)
+                                .object(source)
+                                .build()))
+                        .build());
+                return;
+            }
+            minioClient.copyObject(CopyObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(target)
+                    .source(CopySource.builder()
+                            .bucket(bucket)
+                            .object(source)
+                            .build())
+                    .build());
+        } catch (ErrorResponseException e) {
+            if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
+                throw new ObjectNotFoundException(source);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Iterator<ObjectInfo> list(String prefix) {
+        Iterator<Item> items = MinioObjects.list(minioClient, bucket, prefix, true);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return items.hasNext();
+            }
+
+            @Override
+            public ObjectInfo next() {
+                Item item = items.next();
+                return new ObjectInfo(item.objectName(), item.size(), StorageBackend.normalizeEtag(item.etag()),
+                        item.lastModified() != null ? item.lastModified().toInstant() : null, null);
+            }
+        };
+    }
+
+    @Override
+    public String createUpload(String key, String contentType) throws Exception {
+        return MinioObjects.await(multipartMinioClient.createUpload(bucket, key, contentType));
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream content, long size) throws Exception {
+        Part part = MinioObjects.await(multipartMinioClient.uploadPart(bucket, key, uploadId, partNumber, content, size));
+        return StorageBackend.normalizeEtag(part.etag());
+    }
+
+    @Override
+    public Written completeUpload(String key, String uploadId, List<UploadedPart> parts) throws Exception {
+        Part[] uploaded = new Part[parts.size()];
+        for (int i = 0; i < uploaded.length; i++) {
+            uploaded[i] = new Part(parts.get(i).partNumber(), parts.get(i).etag());
+        }
+        ObjectWriteResponse written = MinioObjects.await(multipartMinioClient.completeUpload(bucket, key, uploadId, uploaded));
+        return new Written(StorageBackend.normalizeEtag(written.etag()),
+                stat(key).map(ObjectInfo::size).orElse(0L));
+    }
+
+    @Override
+    public void abortUpload(String key, String uploadId) throws Exception {
+        try {
+            MinioObjects.await(multipartMinioClient.abortUpload(bucket, key, uploadId));
+        } catch (ErrorResponseException e) {
+            // загрузка уже отменена или завершена
+            if (!"NoSuchUpload".equals(e.errorResponse().code())) {
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.baykin.cloud_storage.skydrive.storage;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import io.minio.MinioAsyncClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.messages.Part;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Асинхронный клиент MinIO с доступом к низкоуровневым операциям multipart upload,
+ * которые в {@link MinioAsyncClient} не входят в публичный API.
+ */
+public class MultipartMinioClient extends MinioAsyncClient {
+
+    public MultipartMinioClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    /**
+     * Начинает multipart upload.
+     *
+     * @return идентификатор загрузки
+     */
+    public CompletableFuture<String> createUpload(String bucket, String objectName, String contentType) throws Exception {
+        Multimap<String, String> headers = HashMultimap.create();
+        if (contentType != null) {
+            headers.put("Content-Type", contentType);
+        }
+        return createMultipartUploadAsync(bucket, null, objectName, headers, null)
+                .thenApply(response -> response.result().uploadId());
+    }
+
+    /**
+     * Отправляет часть загрузки.
+     *
+     * @return ETag части
+     */
+    public CompletableFuture<Part> uploadPart(String bucket, String objectName, String uploadId,
+                                              int partNumber, byte[] data) throws Exception {
+        return uploadPartAsync(bucket, null, objectName, data, data.length, uploadId, partNumber, null, null)
+                .thenApply(response -> new Part(partNumber, response.etag()));
+    }
+
+    /**
+     * Отправляет часть загрузки из потока известной длины.
+     *
+     * @return ETag части
+     */
+    public CompletableFuture<Part> uploadPart(String bucket, String objectName, String uploadId,
+                                              int partNumber, InputStream content, long size) throws Exception {
+        BufferedInputStream data = content instanceof BufferedInputStream buffered ? buffered : new BufferedInputStream(content);
+        return uploadPartAsync(bucket, null, objectName, data, size, uploadId, partNumber, null, null)
+                .thenApply(response -> new Part(partNumber, response.etag()));
+    }
+
+    /**
+     * Собирает объект из отправленных частей.
+     */
+    public CompletableFuture<ObjectWriteResponse> completeUpload(String bucket, String objectName, String uploadId,
+                                                                 Part[] parts) throws Exception {
+        return completeMultipartUploadAsync(bucket, null, objectName, uploadId, parts, null, null);
+    }
+
+    /**
+     * Отменяет загрузку и освобождает уже сохранённые части.
+     */
+    public CompletableFuture<?> abortUpload(String bucket, String objectName, String uploadId) throws Exception {
+        return abortMultipartUploadAsync(bucket, null, objectName, uploadId, null, null);
+    }
+}
@@ -0,0 +1,11 @@
+package com.baykin.cloud_storage.skydrive.storage;
+
+/**
+ * Объект с указанным ключом отсутствует в хранилище.
+ */
+public class ObjectNotFoundException extends RuntimeException {
+
+    public ObjectNotFoundException(String key) {
+        super("Объект не найден: " + key);
+    }
+}
@@ -0,0 +1,226 @@
+package com.baykin.cloud_storage.skydrive.storage;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Хранилище содержимого файлов. Объекты адресуются ключами вида {@code user-1-files/docs/a.txt};
+ * ключ, оканчивающийся на "/", — маркер пустой папки. Реализация выбирается настройкой
+ * {@code storage.backend}: {@code minio} ({@link MinioStorageBackend}), {@code local}
+ * ({@link LocalStorageBackend}) или {@code memory} ({@link InMemoryStorageBackend}, для тестов и бенчмарков).
+ * <p>
+ * Ограничения на части загрузки ({@link #MIN_PART_SIZE}, {@link #MAX_PARTS}) взяты из S3 и действуют
+ * для всех реализаций, чтобы клиенты не зависели от выбранного хранилища.
+ */
+public interface StorageBackend {
+
+    /**
+     * Минимальный размер части загрузки (кроме последней).
+     */
+    int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    /**
+     * Максимальное число частей в одной загрузке.
+     */
+    int MAX_PARTS = 10_000;
+
+    /**
+     * Метаданные объекта.
+     *
+     * @param key          ключ объекта
+     * @param size         размер в байтах
+     * @param etag         ETag без кавычек
+     * @param lastModified время изменения, если известно
+     * @param contentType  MIME-тип, если известен
+     */
+    record ObjectInfo(String key, long size, String etag, Instant lastModified, String contentType) {
+    }
+
+    /**
+     * Результат записи объекта.
+     *
+     * @param etag ETag созданного объекта
+     * @param size количество записанных байт
+     */
+    record Written(String etag, long size) {
+    }
+
+    /**
+     * Полученная часть загрузки.
+     *
+     * @param partNumber номер части, начиная с 1
+     * @param etag       ETag части, возвращённый {@link #uploadPart}
+     */
+    record UploadedPart(int partNumber, String etag) {
+    }
+
+    /**
+     * Приводит ETag к виду без кавычек: S3 и MinIO возвращают его в кавычках, а в метаданных объектов,
+     * индексе файлов и частях загрузок он хранится без них.
+     *
+     * @param etag исходное значение или {@code null}
+     * @return ETag без кавычек
+     */
+    static String normalizeEtag(String etag) {
+        if (etag != null && etag.length() >= 2 && etag.startsWith("\"") && etag.endsWith("\"")) {
+            return etag.substring(1, etag.length() - 1);
+        }
+        return etag;
+    }
+
+    /**
+     * Ошибка удаления одного объекта в пакете.
+     *
+     * @param key     ключ объекта
+     * @param code    код ошибки
+     * @param message описание ошибки
+     */
+    record DeleteError(String key, String code, String message) {
+    }
+
+    /**
+     * Готовит хранилище к работе: создаёт бакет или корневой каталог.
+     *
+     * @throws Exception если хранилище недоступно
+     */
+    void initialize() throws Exception;
+
+    /**
+     * Записывает объект известного размера, заменяя существующий.
+     *
+     * @param key         ключ объекта
+     * @param content     данные (поток не закрывается)
+     * @param size        размер данных в байтах
+     * @param contentType MIME-тип или {@code null}
+     * @return ETag и размер объекта
+     * @throws Exception при ошибках хранилища или ввода-вывода
+     */
+    Written put(String key, InputStream content, long size, String contentType) throws Exception;
+
+    /**
+     * Записывает поток неизвестной длины, не сохраняя его целиком в памяти.
+     *
+     * @param key         ключ объекта
+     * @param content     данные; читаются до конца, но не закрываются
+     * @param contentType MIME-тип или {@code null}
+     * @return ETag и размер объекта
+     * @throws Exception при ошибках хранилища или ввода-вывода; частично записанный объект не остаётся
+     */
+    Written putStream(String key, InputStream content, String contentType) throws Exception;
+
+    /**
+     * Открывает объект целиком или диапазон байт.
+     *
+     * @param key    ключ объекта
+     * @param offset смещение первого байта или {@code null} — с начала
+     * @param length количество байт или {@code null} — до конца
+     * @return поток данных, который нужно закрыть
+     * @throws ObjectNotFoundException если объекта нет
+     * @throws Exception при ошибках хранилища
+     */
+    InputStream get(String key, Long offset, Long length) throws Exception;
+
+    /**
+     * Возвращает метаданные объекта.
+     *
+     * @param key ключ объекта
+     * @return метаданные или пустое значение, если объекта нет
+     * @throws Exception при ошибках хранилища
+     */
+    Optional<ObjectInfo> stat(String key) throws Exception;
+
+    /**
+     * Удаляет объект; отсутствие объекта ошибкой не считается.
+     *
+     * @param key ключ объекта
+     * @throws Exception при ошибках хранилища
+     */
+    void delete(String key) throws Exception;
+
+    /**
+     * Удаляет пакет объектов. Ошибки по отдельным ключам возвращаются, а не пробрасываются.
+     *
+     * @param keys ключи объектов, не больше 1000
+     * @return ошибки удаления; пустой список, если удалено всё
+     * @throws Exception если пакет не удалось обработать целиком
+     */
+    List<DeleteError> deleteAll(List<String> keys) throws Exception;
+
+    /**
+     * Копирует объект внутри хранилища, не передавая данные через приложение.
+     *
+     * @param source ключ исходного объекта
+     * @param target ключ копии
+     * @param size   размер исходного объекта
+     * @throws ObjectNotFoundException если исходного объекта нет
+     * @throws Exception при ошибках хранилища
+     */
+    void copy(String source, String target, long size) throws Exception;
+
+    /**
+     * Лениво и рекурсивно перечисляет объекты, ключи которых начинаются с {@code prefix}, в произвольном порядке.
+     *
+     * @param prefix префикс ключей
+     * @return итератор объектов; ошибки хранилища оборачиваются в {@link IllegalStateException}
+     */
+    Iterator<ObjectInfo> list(String prefix);
+
+    /**
+     * Начинает загрузку объекта по частям.
+     *
+     * @param key         ключ объекта
+     * @param contentType MIME-тип или {@code null}
+     * @return идентификатор загрузки
+     * @throws Exception при ошибках хранилища
+     */
+    String createUpload(String key, String contentType) throws Exception;
+
+    /**
+     * Сохраняет часть загрузки, читая её из потока без буферизации целиком в памяти.
+     * Повторная отправка части с тем же номером заменяет прежнюю.
+     *
+     * @param key        ключ объекта
+     * @param uploadId   идентификатор загрузки
+     * @param partNumber номер части, от 1 до {@link #MAX_PARTS}
+     * @param content    содержимое части (не закрывается)
+     * @param size       размер части; поток должен содержать ровно столько байт
+     * @return ETag части без кавычек
+     * @throws Exception при ошибках хранилища или если поток закончился раньше
+     */
+    String uploadPart(String key, String uploadId, int partNumber, InputStream content, long size) throws Exception;
+
+    /**
+     * Собирает объект из частей в порядке их номеров и закрывает загрузку.
+     *
+     * @param key      ключ объекта
+     * @param uploadId идентификатор загрузки
+     * @param parts    части по возрастанию номеров
+     * @return ETag и размер собранного объекта
+     * @throws Exception при ошибках хранилища
+     */
+    Written completeUpload(String key, String uploadId, List<UploadedPart> parts) throws Exception;
+
+    /**
+     * Отменяет загрузку и удаляет полученные части. Уже отменённая или завершённая загрузка ошибкой не считается.
+     *
+     * @param key      ключ объекта
+     * @param uploadId идентификатор загрузки
+     * @throws Exception при ошибках хранилища
+     */
+    void abortUpload(String key, String uploadId) throws Exception;
+
+    /**
+     * Файл на локальном диске, в котором хранится объект, если хранилище локальное.
+     * Такой файл можно отдать клиенту средствами сервера без чтения в приложение.
+     *
+     * @param key ключ объекта
+     * @return путь к файлу или пустое значение
+     */
+    default Optional<Path> localFile(String key) {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,107 @@
+package com.baykin.cloud_storage.skydrive.storage;
+
+import io.minio.ObjectWriteResponse;
+import io.minio.PutObjectArgs;
+import io.minio.messages.Part;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Загрузка потока неизвестной длины в MinIO без промежуточных файлов.
+ * Поток режется на части по {@code storage.upload.part-size} байт, которые отправляются через multipart upload.
+ * Пока до {@code storage.upload.parts-in-flight} частей передаются в MinIO, читается следующая,
+ * поэтому приём данных от клиента и запись в хранилище идут одновременно,
+ * а память ограничена {@code (parts-in-flight + 1) * part-size} на загрузку.
+ */
+class StreamingObjectUploader {
+
+    private final MultipartMinioClient minioClient;
+    private final String bucket;
+    private final int partSize;
+    private final int partsInFlight;
+
+    StreamingObjectUploader(MultipartMinioClient minioClient, String bucket, int partSize, int partsInFlight) {
+        if (partSize < StorageBackend.MIN_PART_SIZE) {
+            throw new IllegalArgumentException("storage.upload.part-size must be at least " + StorageBackend.MIN_PART_SIZE);
+        }
+        if (partsInFlight < 1) {
+            throw new IllegalArgumentException("storage.upload.parts-in-flight must be positive");
+        }
+        this.minioClient = minioClient;
+        this.bucket = bucket;
+        this.partSize = partSize;
+        this.partsInFlight = partsInFlight;
+    }
+
+    /**
+     * Записывает поток в объект. Поток читается до конца, но не закрывается.
+     * Данные, умещающиеся в одну часть, отправляются обычным PUT.
+     *
+     * @param objectName ключ объекта
+     * @param contentType MIME-тип
+     * @param in данные
+     * @return ETag и размер объекта
+     * @throws Exception при ошибках чтения или MinIO; начатая multipart-загрузка при этом отменяется
+     */
+    StorageBackend.Written upload(String objectName, String contentType, InputStream in) throws Exception {
+        byte[] first = in.readNBytes(partSize);
+        if (first.length < partSize) {
+            ObjectWriteResponse written = MinioObjects.await(minioClient.putObject(PutObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(objectName)
+                    .stream(new ByteArrayInputStream(first), first.length, -1)
+                    .contentType(contentType)
+                    .build()));
+            return new StorageBackend.Written(written.etag(), first.length);
+        }
+
+        String uploadId = MinioObjects.await(minioClient.createUpload(bucket, objectName, contentType));
+        Semaphore inFlight = new Semaphore(partsInFlight);
+        List<CompletableFuture<Part>> parts = new ArrayList<>();
+        AtomicReference<CompletableFuture<Part>> failed = new AtomicReference<>();
+        long size = 0;
+        try {
+            byte[] data = first;
+            while (data.length > 0) {
+                if (parts.size() == StorageBackend.MAX_PARTS) {
+                    throw new IllegalStateException("Файл превышает " + StorageBackend.MAX_PARTS + " частей по " + partSize + " байт");
+                }
+                inFlight.acquire();
+                CompletableFuture<Part> part = minioClient.uploadPart(bucket, objectName, uploadId, parts.size() + 1, data);
+                part.whenComplete((p, e) -> {
+                    if (e != null) {
+                        failed.compareAndSet(null, part);
+                    }
+                    inFlight.release();
+                });
+                parts.add(part);
+                size += data.length;
+                if (failed.get() != null) {
+                    // не дочитываем поток клиента, если часть уже не удалось отправить
+                    MinioObjects.await(failed.get());
+                }
+                data = in.readNBytes(partSize);
+            }
+            Part[] uploaded = new Part[parts.size()];
+            for (int i = 0; i < uploaded.length; i++) {
+                uploaded[i] = MinioObjects.await(parts.get(i));
+            }
+            ObjectWriteResponse written = MinioObjects.await(minioClient.completeUpload(bucket, objectName, uploadId, uploaded));
+            return new StorageBackend.Written(written.etag(), size);
+        } catch (Exception e) {
+            parts.forEach(p -> p.cancel(true));
+            try {
+                minioClient.abortUpload(bucket, objectName, uploadId).join();
+            } catch (Exception abortError) {
+                e.addSuppressed(abortError);
+            }
+            throw e;
+        }
+    }
+}
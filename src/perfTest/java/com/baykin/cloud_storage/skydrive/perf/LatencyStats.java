@@ -0,0 +1,68 @@
+package com.baykin.cloud_storage.skydrive.perf;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Накопление задержек операций нагрузочного теста и расчёт перцентилей.
+ */
+class LatencyStats {
+
+    private final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+
+    void record(String operation, long nanos, boolean success) {
+        recorders.computeIfAbsent(operation, k -> new Recorder()).add(nanos, success);
+    }
+
+    /**
+     * Итоги по каждой операции в алфавитном порядке.
+     *
+     * @param elapsedSeconds длительность фазы измерения
+     */
+    Map<String, Summary> summarize(double elapsedSeconds) {
+        Map<String, Summary> result = new TreeMap<>();
+        recorders.forEach((operation, recorder) -> result.put(operation, recorder.summarize(elapsedSeconds)));
+        return result;
+    }
+
+    /**
+     * Итоги одной операции; задержки в миллисекундах, пропускная способность — в операциях в секунду.
+     */
+    record Summary(long count, long errors, double throughput, double p50, double p95, double p99, double max) {
+    }
+
+    private static final class Recorder {
+
+        private long[] latencies = new long[1024];
+        private int size;
+        private long errors;
+
+        synchronized void add(long nanos, boolean success) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = nanos;
+            if (!success) {
+                errors++;
+            }
+        }
+
+        synchronized Summary summarize(double elapsedSeconds) {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return new Summary(size, errors, size / elapsedSeconds,
+                    percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                    size > 0 ? sorted[size - 1] / 1e6 : 0);
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / 1e6;
+        }
+    }
+}
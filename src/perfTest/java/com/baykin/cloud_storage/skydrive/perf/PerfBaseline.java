@@ -0,0 +1,79 @@
+package com.baykin.cloud_storage.skydrive.perf;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Сохранённые результаты нагрузочного теста, с которыми сравнивается текущий прогон.
+ * Хранятся p95, p99 и пропускная способность каждой операции.
+ */
+class PerfBaseline {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final Map<String, Entry> entries;
+
+    private PerfBaseline(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    record Entry(double p95, double p99, double throughput) {
+    }
+
+    static PerfBaseline load(Path file) throws IOException {
+        return new PerfBaseline(MAPPER.readValue(file.toFile(), new TypeReference<TreeMap<String, Entry>>() {
+        }));
+    }
+
+    static void save(Path file, Map<String, LatencyStats.Summary> results) throws IOException {
+        Map<String, Entry> entries = new TreeMap<>();
+        results.forEach((operation, summary) ->
+                entries.put(operation, new Entry(summary.p95(), summary.p99(), summary.throughput())));
+        Files.createDirectories(file.getParent());
+        MAPPER.writeValue(file.toFile(), entries);
+    }
+
+    static void writeReport(Path file, Map<String, LatencyStats.Summary> results) throws IOException {
+        Files.createDirectories(file.getParent());
+        MAPPER.writeValue(file.toFile(), results);
+    }
+
+    /**
+     * Сравнивает результаты с базовыми значениями.
+     * Операция, которой нет в базовом файле, тоже считается регрессией: базовые значения нужно перезаписать.
+     *
+     * @param tolerance допустимое ухудшение: 1.5 — задержка до полутора раз больше,
+     *                  пропускная способность до полутора раз меньше базовой
+     * @return описания регрессий; пустой список, если их нет
+     */
+    List<String> regressions(Map<String, LatencyStats.Summary> results, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        results.forEach((operation, summary) -> {
+            Entry baseline = entries.get(operation);
+            if (baseline == null) {
+                regressions.add(operation + ": no baseline, run with -PperfUpdateBaseline to record one");
+                return;
+            }
+            if (summary.p95() > baseline.p95() * tolerance) {
+                regressions.add(String.format("%s: p95 %.1f ms > baseline %.1f ms", operation, summary.p95(), baseline.p95()));
+            }
+            if (summary.p99() > baseline.p99() * tolerance) {
+                regressions.add(String.format("%s: p99 %.1f ms > baseline %.1f ms", operation, summary.p99(), baseline.p99()));
+            }
+            if (summary.throughput() * tolerance < baseline.throughput()) {
+                regressions.add(String.format("%s: throughput %.1f ops/s < baseline %.1f ops/s",
+                        operation, summary.throughput(), baseline.throughput()));
+            }
+        });
+        return regressions;
+    }
+}
@@ -0,0 +1,160 @@
+package com.baykin.cloud_storage.skydrive.perf;
+
+import com.baykin.cloud_storage.skydrive.SkyDriveApplication;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.MinIOContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Нагрузочный тест: приложение запускается целиком на Postgres, Redis и MinIO в контейнерах
+ * (или с хранилищем в памяти, чтобы отделить накладные расходы приложения от задержек хранилища),
+ * виртуальные пользователи параллельно ходят в HTTP API. По каждой операции считаются p50/p95/p99
+ * и пропускная способность; результаты пишутся в {@code perf.report} и сравниваются с {@code perf.baseline}.
+ * Без базового файла тест падает: сначала его нужно записать прогоном с perfUpdateBaseline.
+ * <p>
+ * Параметры (системные свойства, передаются через -P в perfTest):
+ * perfUsers — количество пользователей, perfDuration — длительность измерения (ISO-8601),
+ * perfTolerance — допустимое ухудшение относительно базовых значений, perfUpdateBaseline — записать
+ * результаты прогона как новые базовые значения вместо сравнения, perfBackend — хранилище ({@code minio}
+ * или {@code memory}), perfStorageLatency — задержка каждой операции хранилища в памяти (например, 5ms).
+ * Базовые значения снимаются и проверяются только для {@code minio}.
+ */
+@SpringBootTest(classes = SkyDriveApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.jpa.show-sql=false", "logging.level.root=WARN",
+                "logging.level.com.baykin.cloud_storage.skydrive.perf=INFO"})
+@Testcontainers
+class StorageLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageLoadTest.class);
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16");
+
+    @Container
+    @ServiceConnection(name = "redis")
+    static final GenericContainer<?> redis = new GenericContainer<>("redis:7").withExposedPorts(6379);
+
+    private static final String BACKEND = System.getProperty("perfBackend", "minio");
+
+    /**
+     * Запускается, только если выбрано хранилище {@code minio}.
+     */
+    static final MinIOContainer minio = new MinIOContainer("minio/minio:RELEASE.2024-12-18T13-15-44Z");
+
+    @DynamicPropertySource
+    static void storageProperties(DynamicPropertyRegistry registry) {
+        registry.add("storage.backend", () -> BACKEND);
+        if ("memory".equals(BACKEND)) {
+            registry.add("storage.memory.latency", () -> System.getProperty("perfStorageLatency", "0ms"));
+            return;
+        }
+        minio.start();
+        registry.add("minio.url", minio::getS3URL);
+        registry.add("minio.access-key", minio::getUserName);
+        registry.add("minio.secret-key", minio::getPassword);
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void mixedWorkload() throws Exception {
+        int users = Integer.getInteger("perfUsers", 16);
+        Duration duration = Duration.parse(System.getProperty("perfDuration", "PT1M"));
+        double tolerance = Double.parseDouble(System.getProperty("perfTolerance", "1.5"));
+        Path baselineFile = Path.of(System.getProperty("perf.baseline", "src/perfTest/resources/perf-baseline.json"));
+        Path reportFile = Path.of(System.getProperty("perf.report", "build/reports/perf/results.json"));
+
+        LatencyStats stats = new LatencyStats();
+        List<VirtualUser> virtualUsers = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            virtualUsers.add(new VirtualUser("http://localhost:" + port, i, stats));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(users);
+        try {
+            awaitAll(virtualUsers.stream().map(user -> executor.submit(() -> {
+                user.prepare();
+                return null;
+            })).toList());
+
+            long started = System.nanoTime();
+            long deadline = started + duration.toNanos();
+            awaitAll(virtualUsers.stream().map(user -> executor.submit(() -> {
+                user.run(deadline);
+                return null;
+            })).toList());
+            double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+
+            Map<String, LatencyStats.Summary> results = stats.summarize(elapsedSeconds);
+            String table = format(results, users, elapsedSeconds);
+            log.info("Load test results:\n{}", table);
+            PerfBaseline.writeReport(reportFile, results);
+            Files.writeString(reportFile.resolveSibling("results.txt"), table);
+            results.forEach((operation, summary) ->
+                    assertTrue(summary.errors() * 100 <= summary.count(),
+                            operation + ": more than 1% of requests failed (" + summary.errors() + "/" + summary.count() + ")"));
+
+            if (!"minio".equals(BACKEND)) {
+                // базовые значения сняты на MinIO, сравнивать с ними другое хранилище бессмысленно
+                return;
+            }
+            if (System.getProperty("perfUpdateBaseline") != null) {
+                PerfBaseline.save(baselineFile, results);
+                log.info("Baseline updated: {}", baselineFile);
+                return;
+            }
+            if (!Files.exists(baselineFile)) {
+                fail("No baseline at " + baselineFile + ", run with -PperfUpdateBaseline to record one");
+            }
+            PerfBaseline baseline = PerfBaseline.load(baselineFile);
+            List<String> regressions = baseline.regressions(results, tolerance);
+            assertTrue(regressions.isEmpty(), "Performance regressions:\n" + String.join("\n", regressions));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitAll(List<Future<Object>> futures) throws Exception {
+        for (Future<Object> future : futures) {
+            future.get();
+        }
+    }
+
+    /**
+     * Таблица результатов для журнала и {@code results.txt} рядом с {@code perf.report}.
+     */
+    private static String format(Map<String, LatencyStats.Summary> results, int users, double elapsedSeconds) {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%s storage, %d users, %.1f s%n", BACKEND, users, elapsedSeconds));
+        table.append(String.format("%-10s %8s %7s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "ops/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        results.forEach((operation, s) -> table.append(String.format("%-10s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                operation, s.count(), s.errors(), s.throughput(), s.p50(), s.p95(), s.p99(), s.max())));
+        return table.toString();
+    }
+}
@@ -0,0 +1,181 @@
+package com.baykin.cloud_storage.skydrive.perf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Виртуальный пользователь нагрузочного теста: свой аккаунт, своя сессия и своё дерево файлов.
+ * Операции выбираются случайно с весами, близкими к работе веб-клиента.
+ */
+class VirtualUser {
+
+    static final String UPLOAD = "upload";
+    static final String LIST = "list";
+    static final String SEARCH = "search";
+    static final String DOWNLOAD = "download";
+    static final String ZIP = "zip";
+    static final String MOVE = "move";
+
+    /**
+     * Файлы, которые пользователь загружает до начала измерений: по ним идут скачивания, поиск и архивы.
+     */
+    private static final int SEED_FILES = 20;
+    private static final int MAX_UPLOAD_SIZE = 512 * 1024;
+
+    private final String baseUrl;
+    private final String username;
+    private final LatencyStats stats;
+    private final Random random;
+    private final HttpClient client;
+    private final Deque<String> uploaded = new ArrayDeque<>();
+    private int sequence;
+
+    VirtualUser(String baseUrl, int index, LatencyStats stats) {
+        this.baseUrl = baseUrl;
+        this.username = "perf-" + index + "-" + UUID.randomUUID().toString().substring(0, 8);
+        this.stats = stats;
+        this.random = new Random(index);
+        this.client = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    /**
+     * Регистрирует пользователя и загружает начальный набор файлов. Эти запросы в статистику не попадают.
+     */
+    void prepare() throws Exception {
+        String credentials = "{\"username\":\"" + username + "\",\"password\":\"password\"}";
+        expect(send(HttpRequest.newBuilder(uri("/api/auth/sign-up"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(credentials))), 201);
+        expect(send(HttpRequest.newBuilder(uri("/api/auth/sign-in"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(credentials))), 200);
+        for (int i = 0; i < SEED_FILES; i++) {
+            expect(upload("perf/", "file-" + i + ".bin", randomContent(4 * 1024 + random.nextInt(MAX_UPLOAD_SIZE))), 201);
+        }
+    }
+
+    /**
+     * Выполняет операции до наступления {@code deadline} (значение {@link System#nanoTime()}).
+     */
+    void run(long deadline) {
+        while (System.nanoTime() < deadline) {
+            int roll = random.nextInt(100);
+            if (roll < 25) {
+                timed(UPLOAD, this::uploadNext);
+            } else if (roll < 50) {
+                timed(LIST, () -> send(get("/api/directory?path=" + encode("perf/"))));
+            } else if (roll < 65) {
+                timed(SEARCH, () -> send(get("/api/resource/search?query=" + encode("file-" + random.nextInt(SEED_FILES)))));
+            } else if (roll < 85) {
+                timed(DOWNLOAD, () -> send(get("/api/resource/download?path="
+                        + encode("perf/file-" + random.nextInt(SEED_FILES) + ".bin"))));
+            } else if (roll < 90) {
+                timed(ZIP, () -> send(get("/api/resource/download?path=" + encode("perf/"))));
+            } else if (!uploaded.isEmpty()) {
+                timed(MOVE, this::moveNext);
+            } else {
+                timed(UPLOAD, this::uploadNext);
+            }
+        }
+    }
+
+    private int uploadNext() throws Exception {
+        String name = "u-" + sequence++ + ".bin";
+        int status = upload("uploads/", name, randomContent(1 + random.nextInt(MAX_UPLOAD_SIZE)));
+        if (status == 201) {
+            uploaded.addLast("uploads/" + name);
+        }
+        return status;
+    }
+
+    /**
+     * Переименовывает один из ранее загруженных файлов.
+     */
+    private int moveNext() throws Exception {
+        String from = uploaded.pollFirst();
+        String to = from.replace(".bin", "-m.bin");
+        int status = send(get("/api/resource/move?from=" + encode(from) + "&to=" + encode(to)));
+        if (status == 200) {
+            uploaded.addLast(to);
+        }
+        return status;
+    }
+
+    private int upload(String path, String name, byte[] content) throws Exception {
+        String boundary = "----perf" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 256);
+        body.write(("--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"" + name + "\"\r\n" +
+                "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(content);
+        body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return send(HttpRequest.newBuilder(uri("/api/resource?path=" + encode(path)))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray())));
+    }
+
+    private void timed(String operation, Operation action) {
+        long started = System.nanoTime();
+        boolean success;
+        try {
+            int status = action.execute();
+            success = status >= 200 && status < 300;
+        } catch (Exception e) {
+            success = false;
+        }
+        stats.record(operation, System.nanoTime() - started, success);
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(uri(path)).GET();
+    }
+
+    /**
+     * Отправляет запрос и дочитывает тело ответа, чтобы в задержку входила передача данных.
+     */
+    private int send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        HttpResponse<Void> response = client.send(request.timeout(Duration.ofMinutes(2)).build(),
+                HttpResponse.BodyHandlers.discarding());
+        return response.statusCode();
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private byte[] randomContent(int size) {
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+        return content;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static void expect(int status, int expected) {
+        if (status != expected) {
+            throw new IllegalStateException("Unexpected status " + status + ", expected " + expected);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        int execute() throws Exception;
+    }
+}
@@ -2,26 +2,54 @@
 package com.baykin.cloud_storage.skydrive;
 
 import com.baykin.cloud_storage.skydrive.dto.AuthRequest;
+import com.baykin.cloud_storage.skydrive.model.ContentBlob;
+import com.baykin.cloud_storage.skydrive.model.StorageJob;
+import com.baykin.cloud_storage.skydrive.model.StorageJobPhase;
+import com.baykin.cloud_storage.skydrive.model.StorageJobStatus;
+import com.baykin.cloud_storage.skydrive.model.StorageJobType;
+import com.baykin.cloud_storage.skydrive.model.UserStorageUsage;
+import com.baykin.cloud_storage.skydrive.repository.ContentBlobRepository;
+import com.baykin.cloud_storage.skydrive.repository.StorageJobRepository;
 import com.baykin.cloud_storage.skydrive.repository.UserRepository;
+import com.baykin.cloud_storage.skydrive.repository.UserStorageUsageRepository;
+import com.baykin.cloud_storage.skydrive.service.ContentBlobService;
+import com.baykin.cloud_storage.skydrive.service.FileStorageService;
+import com.baykin.cloud_storage.skydrive.storage.StorageBackend;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
 
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@SpringBootTest
+@SpringBootTest(properties = "storage.backend=memory")
 @AutoConfigureMockMvc
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
 public class ResourceControllerIntegrationTest {
@@ -35,6 +63,18 @@ public class ResourceControllerIntegrationTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserStorageUsageRepository usageRepository;
+
+    @Autowired
+    private StorageJobRepository storageJobRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
     private final String username = "user";
     private final String password = "password";
 
@@ -159,4 +199,606 @@ public class ResourceControllerIntegrationTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].name").value("new.txt"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void indexStaysConsistentWithStorage() throws Exception {
+        upload("idx/", "a.txt", "aaaa");
+        upload("idx/sub/", "b.txt", "bb");
+        upload("idx/sub/", "c.txt", "c");
+
+        // Перемещение, копирование и удаление должны сохранять размеры папок и счётчик занятого места
+        mockMvc.perform(get("/api/resource/move")
+                        .param("from", "idx/sub/c.txt")
+                        .param("to", "idx/c.txt")
+                        .with(asUser()))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/resource/copy")
+                        .param("from", "idx/a.txt")
+                        .param("to", "idx/sub/a-copy.txt")
+                        .with(asUser()))
+                .andExpect(status().isCreated());
+        mockMvc.perform(delete("/api/resource")
+                        .param("path", "idx/sub/b.txt")
+                        .with(asUser()))
+                .andExpect(status().isNoContent());
+
+        // idx/: a.txt, c.txt, sub/, sub/a-copy.txt
+        mockMvc.perform(get("/api/resource")
+                        .param("path", "idx/")
+                        .with(asUser()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(9))
+                .andExpect(jsonPath("$.itemCount").value(4));
+        mockMvc.perform(get("/api/resource")
+                        .param("path", "idx/sub/")
+                        .with(asUser()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(4))
+                .andExpect(jsonPath("$.itemCount").value(1));
+        mockMvc.perform(get("/user/me")
+                        .with(asUser()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.usage.usedBytes").value(9))
+                .andExpect(jsonPath("$.usage.objects").value(3));
+
+        // Каждому файлу индекса соответствует объект в хранилище, а удалённые и перемещённые объекты убраны
+        String root = "user-" + userId() + "-files/";
+        JsonNode files = json(mockMvc.perform(get("/api/directory")
+                        .param("path", "idx/")
+                        .param("recursive", "true")
+                        .with(asUser()))
+                .andExpect(status().isOk()));
+        List<String> filePaths = new ArrayList<>();
+        for (JsonNode item : files) {
+            if ("FILE".equals(item.get("type").asText())) {
+                filePaths.add(item.get("path").asText() + item.get("name").asText());
+            }
+        }
+        assertThat(filePaths).containsExactlyInAnyOrder("idx/a.txt", "idx/c.txt", "idx/sub/a-copy.txt");
+        for (String path : filePaths) {
+            assertThat(storageBackend.stat(root + path)).as(path).isPresent();
+        }
+        assertThat(storageBackend.stat(root + "idx/sub/b.txt")).isEmpty();
+        assertThat(storageBackend.stat(root + "idx/sub/c.txt")).isEmpty();
+    }
+
+    @Test
+    void directoryPagesFollowKeysetCursor() throws Exception {
+        for (String name : List.of("b.txt", "d.txt", "f.txt", "h.txt", "j.txt")) {
+            upload("pages/", name, name);
+        }
+
+        JsonNode first = json(mockMvc.perform(get("/api/directory/page")
+                        .param("path", "pages/")
+                        .param("limit", "2")
+                        .with(asUser()))
+                .andExpect(status().isOk()));
+        List<String> names = new ArrayList<>(names(first.get("items")));
+        assertThat(names).containsExactly("b.txt", "d.txt");
+
+        // Файлы, добавленные до курсора, не сдвигают следующие страницы и не дают повторов
+        upload("pages/", "a.txt", "a");
+        upload("pages/", "c.txt", "c");
+        upload("pages/", "g.txt", "g");
+
+        String cursor = first.hasNonNull("nextCursor") ? first.get("nextCursor").asText() : null;
+        assertThat(cursor).isNotNull();
+        while (cursor != null) {
+            JsonNode page = json(mockMvc.perform(get("/api/directory/page")
+                            .param("path", "pages/")
+                            .param("limit", "2")
+                            .param("cursor", cursor)
+                            .with(asUser()))
+                    .andExpect(status().isOk()));
+            names.addAll(names(page.get("items")));
+            cursor = page.hasNonNull("nextCursor") ? page.get("nextCursor").asText() : null;
+        }
+        assertThat(names).containsExactly("b.txt", "d.txt", "f.txt", "g.txt", "h.txt", "j.txt");
+
+        mockMvc.perform(get("/api/directory/page")
+                        .param("path", "pages/")
+                        .param("limit", "2")
+                        .param("cursor", "%%%")
+                        .with(asUser()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void downloadServesRanges() throws Exception {
+        upload("range/", "digits.txt", "0123456789");
+        String path = "range/digits.txt";
+
+        String etag = mockMvc.perform(get("/api/resource/download")
+                        .param("path", path)
+                        .with(asUser()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(content().string("0123456789"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Один диапазон
+        mockMvc.perform(get("/api/resource/download")
+                        .param("path", path)
+                        .header(HttpHeaders.RANGE, "bytes=2-4")
+                        .with(asUser()))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-4/10"))
+                .andExpect(content().string("234"));
+
+        // Несколько диапазонов
+        mockMvc.perform(get("/api/resource/download")
+                        .param("path", path)
+                        .header(HttpHeaders.RANGE, "bytes=0-1,8-9")
+                        .with(asUser()))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().contentTypeCompatibleWith("multipart/byteranges"))
+                .andExpect(content().string(allOf(containsString("bytes 0-1/10"), containsString("bytes 8-9/10"))));
+
+        // If-Range с текущим ETag отдаёт диапазон, с устаревшим — весь файл
+        mockMvc.perform(get("/api/resource/download")
+                        .param("path", path)
+                        .header(HttpHeaders.RANGE, "bytes=7-")
+                        .header(HttpHeaders.IF_RANGE, etag)
+                        .with(asUser()))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("789"));
+        mockMvc.perform(get("/api/resource/download")
+                        .param("path", path)
+                        .header(HttpHeaders.RANGE, "bytes=7-")
+                        .header(HttpHeaders.IF_RANGE, "\"stale\"")
+                        .with(asUser()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("0123456789"));
+
+        // Диапазон за концом файла
+        mockMvc.perform(get("/api/resource/download")
+                        .param("path", path)
+                        .header(HttpHeaders.RANGE, "bytes=20-30")
+                        .with(asUser()))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+    }
+
+    @Test
+    void downloadAnswersNotModified() throws Exception {
+        upload("cond/", "digits.txt", "0123456789");
+        String path = "cond/digits.txt";
+
+        String etag = mockMvc.perform(get("/api/resource/download")
+                        .param("path", path)
+                        .with(asUser()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotBlank();
+
+        mockMvc.perform(get("/api/resource/download")
+                        .param("path", path)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .with(asUser()))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/resource/download")
+                        .param("path", path)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"stale\"")
+                        .with(asUser()))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/resource/download")
+                        .param("path", path)
+                        .header(HttpHeaders.IF_MODIFIED_SINCE, "Fri, 01 Jan 2100 00:00:00 GMT")
+                        .with(asUser()))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void chunkedUploadResumesAfterInterruption() throws Exception {
+        JsonNode session = json(mockMvc.perform(post("/api/uploads")
+                        .param("path", "chunks/")
+                        .param("name", "big.bin")
+                        .with(asUser()))
+                .andExpect(status().isCreated()));
+        String id = session.get("id").asText();
+        int partSize = session.get("minChunkSize").asInt();
+
+        byte[] head = new byte[partSize];
+        Arrays.fill(head, (byte) 'a');
+        byte[] tail = "tail".getBytes(StandardCharsets.UTF_8);
+
+        // Первая часть оборвалась: дошло только начало
+        mockMvc.perform(put("/api/uploads/{id}/chunks/{number}", id, 1)
+                        .content(Arrays.copyOf(head, 10))
+                        .with(asUser()))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/api/uploads/{id}/chunks/{number}", id, 2)
+                        .content(tail)
+                        .with(asUser()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(tail.length));
+        mockMvc.perform(post("/api/uploads/{id}/complete", id)
+                        .with(asUser()))
+                .andExpect(status().isBadRequest());
+
+        // Пустая часть и часть без тела отклоняются
+        mockMvc.perform(put("/api/uploads/{id}/chunks/{number}", id, 3)
+                        .with(asUser()))
+                .andExpect(status().isBadRequest());
+
+        // Клиент узнаёт полученные части и досылает первую целиком
+        mockMvc.perform(get("/api/uploads/{id}", id)
+                        .with(asUser()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.parts", hasSize(2)))
+                .andExpect(jsonPath("$.parts[0].size").value(10));
+        mockMvc.perform(put("/api/uploads/{id}/chunks/{number}", id, 1)
+                        .content(head)
+                        .with(asUser()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(partSize));
+
+        mockMvc.perform(post("/api/uploads/{id}/complete", id)
+                        .with(asUser()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.name").value("big.bin"))
+                .andExpect(jsonPath("$.size").value(partSize + tail.length));
+
+        mockMvc.perform(get("/api/resource/download")
+                        .param("path", "chunks/big.bin")
+                        .header(HttpHeaders.RANGE, "bytes=-5")
+                        .with(asUser()))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("atail"));
+        mockMvc.perform(get("/api/uploads/{id}", id)
+                        .with(asUser()))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void quotaRejectsUploadsAndCopies() throws Exception {
+        Long userId = userId();
+        usageRepository.ensureExists(userId);
+        UserStorageUsage usage = usageRepository.findById(userId).orElseThrow();
+        usage.setQuotaBytes(10L);
+        usageRepository.save(usage);
+
+        upload("quota/", "six.txt", "123456");
+
+        MockMultipartFile tooBig = new MockMultipartFile("file", "big.txt", "text/plain",
+                "12345".getBytes(StandardCharsets.UTF_8));
+        mockMvc.perform(multipart("/api/resource")
+                        .file(tooBig)
+                        .param("path", "quota/")
+                        .with(asUser()))
+                .andExpect(status().isInsufficientStorage());
+
+        // Пакет из нескольких файлов возвращает отчёт по каждому
+        MockMultipartFile small = new MockMultipartFile("file", "small.txt", "text/plain",
+                "12".getBytes(StandardCharsets.UTF_8));
+        mockMvc.perform(multipart("/api/resource")
+                        .file(small)
+                        .file(tooBig)
+                        .param("path", "quota/")
+                        .with(asUser()))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$[0].status").value(201))
+                .andExpect(jsonPath("$[1].status").value(507));
+
+        mockMvc.perform(post("/api/resource/copy")
+                        .param("from", "quota/six.txt")
+                        .param("to", "quota/six-copy.txt")
+                        .with(asUser()))
+                .andExpect(status().isInsufficientStorage());
+
+        String id = json(mockMvc.perform(post("/api/uploads")
+                        .param("path", "quota/")
+                        .param("name", "chunked.bin")
+                        .with(asUser()))
+                .andExpect(status().isCreated())).get("id").asText();
+        mockMvc.perform(put("/api/uploads/{id}/chunks/{number}", id, 1)
+                        .content(new byte[3])
+                        .with(asUser()))
+                .andExpect(status().isInsufficientStorage());
+
+        mockMvc.perform(get("/api/resource")
+                        .param("path", "quota/big.txt")
+                        .with(asUser()))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/resource")
+                        .param("path", "quota/six-copy.txt")
+                        .with(asUser()))
+                .andExpect(status().isNotFound());
+
+        // Отказы не оставляют ни занятого места, ни резервов
+        UserStorageUsage after = usageRepository.findById(userId).orElseThrow();
+        assertThat(after.getUsedBytes()).isEqualTo(8);
+        assertThat(after.getReservedBytes()).isZero();
+    }
+
+    @Test
+    void copyDuplicatesFilesAndFolders() throws Exception {
+        upload("src/", "x.txt", "copy");
+        upload("src/inner/", "y.txt", "nested");
+
+        mockMvc.perform(post("/api/resource/copy")
+                        .param("from", "src/x.txt")
+                        .param("to", "src/x-copy.txt")
+                        .with(asUser()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.name").value("x-copy.txt"));
+        mockMvc.perform(get("/api/resource/download")
+                        .param("path", "src/x-copy.txt")
+                        .with(asUser()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("copy"));
+
+        mockMvc.perform(post("/api/resource/copy")
+                        .param("from", "src/")
+                        .param("to", "dst/")
+                        .with(asUser()))
+                .andExpect(status().isCreated());
+        mockMvc.perform(get("/api/resource")
+                        .param("path", "dst/")
+                        .with(asUser()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(14))
+                .andExpect(jsonPath("$.itemCount").value(4));
+        mockMvc.perform(get("/api/resource/download")
+                        .param("path", "dst/inner/y.txt")
+                        .with(asUser()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("nested"));
+        mockMvc.perform(get("/api/resource")
+                        .param("path", "src/inner/y.txt")
+                        .with(asUser()))
+                .andExpect(status().isOk());
+
+        // Копия поверх существующего ресурса и папка в файл отклоняются
+        mockMvc.perform(post("/api/resource/copy")
+                        .param("from", "src/x.txt")
+                        .param("to", "dst/x.txt")
+                        .with(asUser()))
+                .andExpect(status().isConflict());
+        mockMvc.perform(post("/api/resource/copy")
+                        .param("from", "src/")
+                        .param("to", "file.txt")
+                        .with(asUser()))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/user/me")
+                        .with(asUser()))
+                .andExpect(jsonPath("$.usage.usedBytes").value(28));
+    }
+
+    @Test
+    void folderMoveIsJournaled() throws Exception {
+        upload("journal/", "a.txt", "a");
+        upload("journal/sub/", "b.txt", "b");
+
+        mockMvc.perform(get("/api/resource/move")
+                        .param("from", "journal/")
+                        .param("to", "journal-moved/")
+                        .with(asUser()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/jobs")
+                        .with(asUser()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].type").value("MOVE"))
+                .andExpect(jsonPath("$[0].status").value("COMPLETED"))
+                .andExpect(jsonPath("$[0].phase").value("DELETING"))
+                .andExpect(jsonPath("$[0].source").value("journal/"))
+                .andExpect(jsonPath("$[0].target").value("journal-moved/"));
+    }
+
+    @Test
+    void interruptedMoveIsResumed() throws Exception {
+        upload("resume/", "a.txt", "a");
+        upload("resume/", "b.txt", "b");
+        upload("resume/sub/", "c.txt", "c");
+        Long userId = userId();
+        String root = "user-" + userId + "-files/";
+
+        // Экземпляр упал на этапе копирования: один объект уже скопирован, аренда истекла
+        storageBackend.copy(root + "resume/a.txt", root + "resumed/a.txt", 1);
+        Instant crashedAt = Instant.now().minus(Duration.ofHours(1));
+        StorageJob job = storageJobRepository.save(StorageJob.builder()
+                .userId(userId)
+                .type(StorageJobType.MOVE)
+                .status(StorageJobStatus.RUNNING)
+                .phase(StorageJobPhase.COPYING)
+                .sourcePath("resume/")
+                .targetPath("resumed/")
+                .totalObjects(5)
+                .owner("crashed-instance")
+                .heartbeatAt(crashedAt)
+                .createdAt(crashedAt)
+                .updatedAt(crashedAt)
+                .build());
+
+        fileStorageService.resumeInterruptedJobs();
+        awaitJob(job.getId(), "COMPLETED");
+
+        mockMvc.perform(get("/api/resource")
+                        .param("path", "resumed/")
+                        .with(asUser()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(3))
+                .andExpect(jsonPath("$.itemCount").value(4));
+        mockMvc.perform(get("/api/resource/download")
+                        .param("path", "resumed/sub/c.txt")
+                        .with(asUser()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("c"));
+        mockMvc.perform(get("/api/resource")
+                        .param("path", "resume/")
+                        .with(asUser()))
+                .andExpect(status().isNotFound());
+        assertThat(storageBackend.stat(root + "resume/a.txt")).isEmpty();
+        assertThat(storageBackend.stat(root + "resume/sub/c.txt")).isEmpty();
+
+        // Задание с живым владельцем другой экземпляр не забирает
+        StorageJob owned = storageJobRepository.save(StorageJob.builder()
+                .userId(userId)
+                .type(StorageJobType.DELETE)
+                .status(StorageJobStatus.RUNNING)
+                .sourcePath("resumed/")
+                .totalObjects(5)
+                .owner("live-instance")
+                .heartbeatAt(Instant.now())
+                .createdAt(Instant.now())
+                .updatedAt(Instant.now())
+                .build());
+        fileStorageService.resumeInterruptedJobs();
+        assertThat(storageJobRepository.findById(owned.getId()).orElseThrow().getOwner()).isEqualTo("live-instance");
+        storageJobRepository.delete(owned);
+        mockMvc.perform(get("/api/resource")
+                        .param("path", "resumed/")
+                        .with(asUser()))
+                .andExpect(status().isOk());
+    }
+
+    @Nested
+    @TestPropertySource(properties = "storage.dedup.enabled=true")
+    class Deduplication {
+
+        @Autowired
+        private MockMvc dedupMvc;
+
+        @Autowired
+        private ContentBlobRepository contentBlobRepository;
+
+        @Autowired
+        private StorageBackend dedupBackend;
+
+        @Test
+        void identicalFilesShareOneBlob() throws Exception {
+            // Содержимое уникально для прогона: таблица content_blobs общая для всех тестов
+            byte[] content = ("dedup-" + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+            String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+
+            for (String dir : List.of("d1/", "d2/")) {
+                dedupMvc.perform(multipart("/api/resource")
+                                .file(new MockMultipartFile("file", "same.txt", "text/plain", content))
+                                .param("path", dir)
+                                .with(asUser()))
+                        .andExpect(status().isCreated());
+            }
+            assertThat(refCount(hash)).isEqualTo(2);
+            assertThat(dedupBackend.stat(ContentBlobService.blobKey(hash))).isPresent();
+            assertThat(dedupBackend.stat("user-" + userId() + "-files/d1/same.txt")).isEmpty();
+
+            dedupMvc.perform(post("/api/resource/copy")
+                            .param("from", "d1/same.txt")
+                            .param("to", "d1/copy.txt")
+                            .with(asUser()))
+                    .andExpect(status().isCreated());
+            assertThat(refCount(hash)).isEqualTo(3);
+
+            dedupMvc.perform(get("/api/resource/move")
+                            .param("from", "d2/")
+                            .param("to", "d3/")
+                            .with(asUser()))
+                    .andExpect(status().isOk());
+            assertThat(refCount(hash)).isEqualTo(3);
+
+            dedupMvc.perform(delete("/api/resource")
+                            .param("path", "d3/")
+                            .with(asUser()))
+                    .andExpect(status().isNoContent());
+            dedupMvc.perform(delete("/api/resource")
+                            .param("path", "d1/same.txt")
+                            .with(asUser()))
+                    .andExpect(status().isNoContent());
+            assertThat(refCount(hash)).isEqualTo(1);
+
+            dedupMvc.perform(get("/api/resource/download")
+                            .param("path", "d1/copy.txt")
+                            .with(asUser()))
+                    .andExpect(status().isOk())
+                    .andExpect(content().bytes(content));
+        }
+
+        private long refCount(String hash) {
+            return contentBlobRepository.findById(hash).map(ContentBlob::getRefCount).orElse(0L);
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = "storage.listing.max-page-size=2")
+    class StreamingSearch {
+
+        @Autowired
+        private MockMvc searchMvc;
+
+        @Test
+        void streamedSearchPagesWithoutDuplicates() throws Exception {
+            for (String name : List.of("report", "report-a.txt", "report-b.txt", "old-report.txt", "x-report.txt")) {
+                searchMvc.perform(multipart("/api/resource")
+                                .file(new MockMultipartFile("file", name, "text/plain",
+                                        name.getBytes(StandardCharsets.UTF_8)))
+                                .param("path", "s/")
+                                .with(asUser()))
+                        .andExpect(status().isCreated());
+            }
+
+            MvcResult result = searchMvc.perform(get("/api/resource/search")
+                            .param("query", "report")
+                            .accept(MediaType.APPLICATION_NDJSON)
+                            .with(asUser()))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            String body = searchMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+            List<String> found = new ArrayList<>();
+            for (String line : body.split("\n")) {
+                if (!line.isBlank()) {
+                    found.add(objectMapper.readTree(line).get("name").asText());
+                }
+            }
+            assertThat(found).hasSize(5).doesNotHaveDuplicates()
+                    .containsExactlyInAnyOrder("report", "report-a.txt", "report-b.txt",
+                            "old-report.txt", "x-report.txt");
+            assertThat(found.get(0)).isEqualTo("report");
+        }
+    }
+
+    private RequestPostProcessor asUser() {
+        return user(username).password(password).roles("USER");
+    }
+
+    private Long userId() {
+        return userRepository.findByUsername(username).orElseThrow().getId();
+    }
+
+    private void upload(String path, String name, String content) throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", name, "text/plain",
+                content.getBytes(StandardCharsets.UTF_8));
+        mockMvc.perform(multipart("/api/resource").file(file).param("path", path).with(asUser()))
+                .andExpect(status().isCreated());
+    }
+
+    private JsonNode json(ResultActions result) throws Exception {
+        return objectMapper.readTree(result.andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> names(JsonNode items) {
+        List<String> names = new ArrayList<>();
+        items.forEach(item -> names.add(item.get("name").asText()));
+        return names;
+    }
+
+    /**
+     * Ждёт, пока фоновое задание не получит ожидаемый статус.
+     */
+    private void awaitJob(UUID jobId, String expected) throws Exception {
+        Instant deadline = Instant.now().plusSeconds(30);
+        String status;
+        do {
+            Thread.sleep(100);
+            status = json(mockMvc.perform(get("/api/jobs/{id}", jobId).with(asUser()))
+                    .andExpect(status().isOk())).get("status").asText();
+        } while (!status.equals(expected) && !status.equals("FAILED") && Instant.now().isBefore(deadline));
+        assertThat(status).isEqualTo(expected);
+    }
+}
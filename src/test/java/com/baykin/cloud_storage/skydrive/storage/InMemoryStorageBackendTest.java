@@ -0,0 +1,65 @@
+package com.baykin.cloud_storage.skydrive.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryStorageBackendTest extends StorageBackendContractTest {
+
+    private InMemoryStorageBackend backend;
+
+    @BeforeEach
+    void setUp() {
+        backend = new InMemoryStorageBackend(Duration.ZERO, Duration.ZERO, 0);
+        backend.initialize();
+    }
+
+    @Override
+    protected StorageBackend backend() {
+        return backend;
+    }
+
+    @Test
+    void listReturnsKeysInAscendingOrder() throws Exception {
+        for (String key : List.of("p/c", "p/a", "p/b/", "q/a", "o/a")) {
+            backend.put(key, new ByteArrayInputStream(new byte[0]), 0, null);
+        }
+
+        List<String> keys = new ArrayList<>();
+        backend.list("p/").forEachRemaining(info -> keys.add(info.key()));
+
+        assertEquals(List.of("p/a", "p/b/", "p/c"), keys);
+    }
+
+    @Test
+    void injectedFailuresSurfaceAsStorageErrors() {
+        InMemoryStorageBackend failing = new InMemoryStorageBackend(Duration.ZERO, Duration.ZERO, 1);
+
+        assertThrows(IOException.class, () -> failing.stat("a.txt"));
+        assertThrows(IOException.class, () -> failing.put("a.txt", new ByteArrayInputStream(new byte[0]), 0, null));
+        assertThrows(IllegalStateException.class, () -> failing.list(""));
+    }
+
+    @Test
+    void injectedLatencyDelaysEachOperation() throws Exception {
+        InMemoryStorageBackend slow = new InMemoryStorageBackend(Duration.ofMillis(20), Duration.ZERO, 0);
+
+        long started = System.nanoTime();
+        slow.stat("a.txt");
+        slow.stat("a.txt");
+
+        assertTrue(System.nanoTime() - started >= Duration.ofMillis(40).toNanos());
+    }
+
+    @Test
+    void invalidFailureRateIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new InMemoryStorageBackend(Duration.ZERO, Duration.ZERO, 1.5));
+    }
+}
@@ -0,0 +1,54 @@
+package com.baykin.cloud_storage.skydrive.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalStorageBackendTest extends StorageBackendContractTest {
+
+    @TempDir
+    Path root;
+
+    private LocalStorageBackend backend;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        backend = new LocalStorageBackend(root);
+        backend.initialize();
+    }
+
+    @Override
+    protected StorageBackend backend() {
+        return backend;
+    }
+
+    @Test
+    void deletingLastObjectRemovesEmptyDirectories() throws Exception {
+        backend.put("user-1-files/docs/a.txt", new ByteArrayInputStream(new byte[]{1}), 1, null);
+
+        backend.delete("user-1-files/docs/a.txt");
+
+        assertFalse(Files.exists(root.resolve("user-1-files")));
+    }
+
+    @Test
+    void localFileResolvesObjectInsideRoot() throws Exception {
+        backend.put("user-1-files/a.txt", new ByteArrayInputStream(new byte[]{1}), 1, null);
+
+        assertEquals(root.resolve("user-1-files/a.txt").toAbsolutePath().normalize(),
+                backend.localFile("user-1-files/a.txt").orElseThrow());
+        assertTrue(backend.localFile("user-1-files/missing.txt").isEmpty());
+    }
+
+    @Test
+    void keysEscapingRootAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> backend.stat("../outside.txt"));
+        assertThrows(IllegalArgumentException.class, () -> backend.stat(".tmp/file"));
+    }
+}
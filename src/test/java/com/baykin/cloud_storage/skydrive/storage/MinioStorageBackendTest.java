@@ -0,0 +1,42 @@
+package com.baykin.cloud_storage.skydrive.storage;
+
+import io.minio.MinioAsyncClient;
+import io.minio.MinioClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.testcontainers.containers.MinIOContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.UUID;
+
+@Testcontainers
+class MinioStorageBackendTest extends StorageBackendContractTest {
+
+    @Container
+    static final MinIOContainer minio = new MinIOContainer("minio/minio:RELEASE.2024-12-18T13-15-44Z");
+
+    private MinioStorageBackend backend;
+
+    /**
+     * Каждый тест работает в своём бакете, чтобы начинать с пустого хранилища.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        MinioClient client = MinioClient.builder()
+                .endpoint(minio.getS3URL())
+                .credentials(minio.getUserName(), minio.getPassword())
+                .build();
+        MultipartMinioClient multipartClient = new MultipartMinioClient(MinioAsyncClient.builder()
+                .endpoint(minio.getS3URL())
+                .credentials(minio.getUserName(), minio.getPassword())
+                .build());
+        backend = new MinioStorageBackend(client, multipartClient, "test-" + UUID.randomUUID(),
+                StorageBackend.MIN_PART_SIZE, 2);
+        backend.initialize();
+    }
+
+    @Override
+    protected StorageBackend backend() {
+        return backend;
+    }
+}
@@ -0,0 +1,202 @@
+package com.baykin.cloud_storage.skydrive.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Общие требования к {@link StorageBackend}: каждая реализация наследует этот класс
+ * и должна проходить все его тесты без изменений.
+ */
+abstract class StorageBackendContractTest {
+
+    /**
+     * Инициализированное хранилище без объектов.
+     */
+    protected abstract StorageBackend backend();
+
+    @Test
+    void putThenGetReturnsContent() throws Exception {
+        StorageBackend.Written written = put("docs/a.txt", "hello world");
+
+        assertEquals(11, written.size());
+        assertNotNull(written.etag());
+        assertEquals("hello world", read("docs/a.txt", null, null));
+    }
+
+    @Test
+    void getReturnsRequestedRange() throws Exception {
+        put("docs/a.txt", "hello world");
+
+        assertEquals("lo wo", read("docs/a.txt", 3L, 5L));
+        assertEquals("world", read("docs/a.txt", 6L, null));
+    }
+
+    @Test
+    void putReplacesExistingObject() throws Exception {
+        put("docs/a.txt", "first");
+        put("docs/a.txt", "second");
+
+        assertEquals("second", read("docs/a.txt", null, null));
+        assertEquals(6, backend().stat("docs/a.txt").orElseThrow().size());
+    }
+
+    @Test
+    void statReturnsMetadata() throws Exception {
+        StorageBackend.Written written = put("docs/a.txt", "hello");
+
+        StorageBackend.ObjectInfo info = backend().stat("docs/a.txt").orElseThrow();
+        assertEquals("docs/a.txt", info.key());
+        assertEquals(5, info.size());
+        assertEquals(written.etag(), info.etag());
+        assertNotNull(info.lastModified());
+    }
+
+    @Test
+    void statOfMissingObjectIsEmpty() throws Exception {
+        assertTrue(backend().stat("missing.txt").isEmpty());
+    }
+
+    @Test
+    void getOfMissingObjectThrowsObjectNotFound() {
+        assertThrows(ObjectNotFoundException.class, () -> backend().get("missing.txt", null, null));
+    }
+
+    @Test
+    void deleteIsIdempotent() throws Exception {
+        put("docs/a.txt", "hello");
+
+        backend().delete("docs/a.txt");
+        backend().delete("docs/a.txt");
+
+        assertTrue(backend().stat("docs/a.txt").isEmpty());
+    }
+
+    @Test
+    void deleteAllRemovesEveryKey() throws Exception {
+        put("docs/a.txt", "a");
+        put("docs/b.txt", "b");
+        put("docs/c.txt", "c");
+
+        List<StorageBackend.DeleteError> errors = backend().deleteAll(List.of("docs/a.txt", "docs/b.txt", "missing.txt"));
+
+        assertTrue(errors.isEmpty());
+        assertEquals(Set.of("docs/c.txt"), keys("docs/"));
+    }
+
+    @Test
+    void copyPreservesContentAndEtag() throws Exception {
+        StorageBackend.Written written = put("docs/a.txt", "hello");
+
+        backend().copy("docs/a.txt", "backup/a.txt", written.size());
+
+        assertEquals("hello", read("backup/a.txt", null, null));
+        assertEquals(written.etag(), backend().stat("backup/a.txt").orElseThrow().etag());
+        assertEquals("hello", read("docs/a.txt", null, null));
+    }
+
+    @Test
+    void copyOfMissingObjectThrowsObjectNotFound() {
+        assertThrows(ObjectNotFoundException.class, () -> backend().copy("missing.txt", "copy.txt", 0));
+    }
+
+    @Test
+    void listReturnsObjectsAndFolderMarkersUnderPrefix() throws Exception {
+        put("user-1-files/a.txt", "a");
+        put("user-1-files/empty/", "");
+        put("user-1-files/docs/b.txt", "b");
+        put("user-10-files/c.txt", "c");
+
+        assertEquals(Set.of("user-1-files/a.txt", "user-1-files/empty/", "user-1-files/docs/b.txt"),
+                keys("user-1-files/"));
+        assertEquals(Set.of("user-1-files/docs/b.txt"), keys("user-1-files/docs/"));
+        assertEquals(Set.of(), keys("user-2-files/"));
+    }
+
+    @Test
+    void folderMarkerHasZeroSize() throws Exception {
+        put("user-1-files/empty/", "");
+
+        assertEquals(0, backend().stat("user-1-files/empty/").orElseThrow().size());
+    }
+
+    @Test
+    void putStreamWritesContentOfUnknownLength() throws Exception {
+        byte[] data = bytes(StorageBackend.MIN_PART_SIZE + 1234);
+
+        StorageBackend.Written written = backend().putStream("big.bin", new ByteArrayInputStream(data), null);
+
+        assertEquals(data.length, written.size());
+        assertEquals(written.etag(), backend().stat("big.bin").orElseThrow().etag());
+        try (InputStream in = backend().get("big.bin", null, null)) {
+            assertArrayEquals(data, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void multipartUploadAssemblesPartsInOrder() throws Exception {
+        byte[] first = bytes(StorageBackend.MIN_PART_SIZE);
+        byte[] second = "tail".getBytes(StandardCharsets.UTF_8);
+        String uploadId = backend().createUpload("big.bin", "application/octet-stream");
+
+        String secondEtag = backend().uploadPart("big.bin", uploadId, 2, new ByteArrayInputStream(second), second.length);
+        String firstEtag = backend().uploadPart("big.bin", uploadId, 1, new ByteArrayInputStream(first), first.length);
+        StorageBackend.Written written = backend().completeUpload("big.bin", uploadId, List.of(
+                new StorageBackend.UploadedPart(1, firstEtag),
+                new StorageBackend.UploadedPart(2, secondEtag)));
+
+        assertEquals(first.length + second.length, written.size());
+        try (InputStream in = backend().get("big.bin", null, null)) {
+            byte[] content = in.readAllBytes();
+            assertArrayEquals(first, Arrays.copyOf(content, first.length));
+            assertEquals("tail", new String(content, first.length, second.length, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void abortedUploadLeavesNoObjectAndCanBeAbortedAgain() throws Exception {
+        String uploadId = backend().createUpload("big.bin", null);
+        backend().uploadPart("big.bin", uploadId, 1, new ByteArrayInputStream(bytes(1024)), 1024);
+
+        backend().abortUpload("big.bin", uploadId);
+        backend().abortUpload("big.bin", uploadId);
+
+        assertTrue(backend().stat("big.bin").isEmpty());
+    }
+
+    private StorageBackend.Written put(String key, String content) throws Exception {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        return backend().put(key, new ByteArrayInputStream(data), data.length, "text/plain");
+    }
+
+    private String read(String key, Long offset, Long length) throws Exception {
+        try (InputStream in = backend().get(key, offset, length)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private Set<String> keys(String prefix) {
+        Set<String> keys = new HashSet<>();
+        for (Iterator<StorageBackend.ObjectInfo> it = backend().list(prefix); it.hasNext(); ) {
+            keys.add(it.next().key());
+        }
+        return keys;
+    }
+
+    private static byte[] bytes(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i % 251);
+        }
+        return data;
+    }
+}